@@ -13,10 +13,14 @@
  */
 package com.mysema.query;
 
+import java.util.ArrayList;
+
 import javax.annotation.Nullable;
 
 import com.google.common.base.Objects;
 import com.mysema.query.types.ExpressionUtils;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
 import com.mysema.query.types.Predicate;
 import com.mysema.query.types.Visitor;
 
@@ -42,6 +46,14 @@ public final class BooleanBuilder implements Predicate, Cloneable  {
     @Nullable
     private Predicate predicate;
 
+    // arguments of the flat and/or operation being built, collected so that appending
+    // doesn't copy the arguments of the previous operation
+    @Nullable
+    private ArrayList<Predicate> pending;
+
+    @Nullable
+    private Operator<Boolean> pendingOperator;
+
     /**
      * Create an empty BooleanBuilder
      */
@@ -58,13 +70,32 @@ public final class BooleanBuilder implements Predicate, Cloneable  {
 
     @Override
     public <R,C> R accept(Visitor<R,C> v, C context) {
-        if (predicate != null) {
-            return predicate.accept(v, context);
+        Predicate value = getValue();
+        if (value != null) {
+            return value.accept(v, context);
         } else {
             return null;
         }
     }
 
+    private BooleanBuilder append(Operator<Boolean> operator, @Nullable Predicate right) {
+        if (right != null) {
+            if (!hasValue()) {
+                predicate = right;
+            } else {
+                if (pendingOperator != operator) {
+                    Predicate left = getValue();
+                    pending = new ArrayList<Predicate>();
+                    pending.add(left);
+                    pendingOperator = operator;
+                }
+                pending.add(right);
+                predicate = null;
+            }
+        }
+        return this;
+    }
+
     /**
      * Create the insertion of this and the given predicate
      *
@@ -72,14 +103,7 @@ public final class BooleanBuilder implements Predicate, Cloneable  {
      * @return
      */
     public BooleanBuilder and(@Nullable Predicate right) {
-        if (right != null) {
-            if (predicate == null) {
-                predicate = right;
-            } else {
-                predicate = ExpressionUtils.and(predicate, right);
-            }
-        }
-        return this;
+        return append(Ops.AND, right);
     }
 
     /**
@@ -108,7 +132,11 @@ public final class BooleanBuilder implements Predicate, Cloneable  {
 
     @Override
     public BooleanBuilder clone() throws CloneNotSupportedException{
-        return (BooleanBuilder) super.clone();
+        BooleanBuilder clone = (BooleanBuilder) super.clone();
+        if (pending != null) {
+            clone.pending = new ArrayList<Predicate>(pending);
+        }
+        return clone;
     }
 
     @Override
@@ -116,7 +144,7 @@ public final class BooleanBuilder implements Predicate, Cloneable  {
         if (o == this) {
             return true;
         } else if (o instanceof BooleanBuilder) {
-            return Objects.equal(((BooleanBuilder)o).getValue(), predicate);
+            return Objects.equal(((BooleanBuilder)o).getValue(), getValue());
         } else {
             return false;
         }
@@ -124,12 +152,16 @@ public final class BooleanBuilder implements Predicate, Cloneable  {
 
     @Nullable
     public Predicate getValue() {
+        if (predicate == null && pending != null) {
+            predicate = pendingOperator == Ops.AND ? ExpressionUtils.allOf(pending) : ExpressionUtils.anyOf(pending);
+        }
         return predicate;
     }
 
     @Override
     public int hashCode() {
-        return predicate != null ? predicate.hashCode() : 0;
+        Predicate value = getValue();
+        return value != null ? value.hashCode() : 0;
     }
 
     /**
@@ -138,13 +170,15 @@ public final class BooleanBuilder implements Predicate, Cloneable  {
      * @return
      */
     public boolean hasValue() {
-        return predicate != null;
+        return predicate != null || pending != null;
     }
 
     @Override
     public BooleanBuilder not() {
-        if (predicate != null) {
-            predicate = predicate.not();
+        if (hasValue()) {
+            predicate = getValue().not();
+            pending = null;
+            pendingOperator = null;
         }
         return this;
     }
@@ -156,14 +190,7 @@ public final class BooleanBuilder implements Predicate, Cloneable  {
      * @return
      */
     public BooleanBuilder or(@Nullable Predicate right) {
-        if (right != null) {
-            if (predicate == null) {
-                predicate = right;
-            } else {
-                predicate = ExpressionUtils.or(predicate, right);
-            }
-        }
-        return this;
+        return append(Ops.OR, right);
     }
 
     /**
@@ -197,7 +224,8 @@ public final class BooleanBuilder implements Predicate, Cloneable  {
 
     @Override
     public String toString() {
-        return predicate != null ? predicate.toString() : super.toString();
+        Predicate value = getValue();
+        return value != null ? value.toString() : super.toString();
     }
 
 }
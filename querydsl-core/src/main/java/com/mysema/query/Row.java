@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query;
+
+import javax.annotation.Nullable;
+
+/**
+ * Row is a reusable view of the current row of a query result
+ *
+ * <p>The same instance is passed to the {@link RowCallback} for each row and is only valid during
+ * the callback. The primitive accessors avoid the boxing of the values where the backend
+ * supports it.</p>
+ *
+ * @author tiwe
+ *
+ */
+public interface Row {
+
+    /**
+     * Get the amount of columns
+     *
+     * @return
+     */
+    int size();
+
+    /**
+     * Get the value of the given column
+     *
+     * @param <T>
+     * @param index zero based column index
+     * @param type
+     * @return
+     */
+    @Nullable
+    <T> T get(int index, Class<T> type);
+
+    /**
+     * Get the value of the given numeric column as long, null values are returned as zero
+     *
+     * @param index zero based column index
+     * @return
+     */
+    long getLong(int index);
+
+    /**
+     * Get the value of the given numeric column as double, null values are returned as zero
+     *
+     * @param index zero based column index
+     * @return
+     */
+    double getDouble(int index);
+
+    /**
+     * Get whether the value of the given column is null
+     *
+     * @param index zero based column index
+     * @return
+     */
+    boolean isNull(int index);
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query;
+
+/**
+ * RowCallback is a callback for the row by row processing of query results
+ *
+ * <p>Usage example:</p>
+ * <pre>
+ * {@code
+ * final long[] total = new long[1];
+ * query.from(employee).forEachRow(new RowCallback() {
+ *     public void handle(Row row) {
+ *         total[0] += row.getLong(0);
+ *     }
+ * }, employee.salary);
+ * }
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+public interface RowCallback {
+
+    /**
+     * Handle the current row
+     *
+     * @param row reusable view of the current row
+     */
+    void handle(Row row);
+
+}
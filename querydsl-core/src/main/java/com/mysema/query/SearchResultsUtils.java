@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * SearchResultsUtils provides shared functionality for the listResults implementations of the
+ * query modules
+ *
+ * @author tiwe
+ *
+ */
+public final class SearchResultsUtils {
+
+    /**
+     * Get whether the page contains all results, so that the total count is the page size
+     *
+     * @param results results of the page
+     * @param modifiers modifiers of the page query
+     * @return true, if the total count doesn't need to be queried
+     */
+    public static boolean isComplete(List<?> results, QueryModifiers modifiers) {
+        Long limit = modifiers.getLimit(), offset = modifiers.getOffset();
+        return (offset == null || offset.longValue() == 0l)
+            && (limit == null || results.size() < limit.longValue());
+    }
+
+    /**
+     * Wait for the given count query
+     *
+     * <p>The count is cancelled if the waiting thread is interrupted, failures of the count are
+     * rethrown as is or wrapped into a {@link QueryException}.</p>
+     *
+     * @param count future of the count query
+     * @return total count
+     */
+    public static long getCount(Future<Long> count) {
+        try {
+            return count.get();
+        } catch (InterruptedException e) {
+            count.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new QueryException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException)cause : new QueryException(cause);
+        }
+    }
+
+    private SearchResultsUtils() {}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.support;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.PredicateOperation;
+import com.mysema.util.MathUtils;
+
+/**
+ * ConstantFolding evaluates arithmetic on numeric constants and boolean operations on boolean
+ * constants of an {@link Operation} tree
+ *
+ * <p>It is applied by {@link SerializerBase} to each operation before it is serialized, so
+ * <code>1 + 2</code> is serialized as <code>3</code> and <code>true and a = b</code> as
+ * <code>a = b</code>. The serializer passes a cache of the folded operations, so each operation
+ * of the tree is folded only once.</p>
+ *
+ * @author tiwe
+ *
+ */
+public final class ConstantFolding {
+
+    /**
+     * Fold the given operation
+     *
+     * @param operation
+     * @return the folded expression or null, if the operation can't be folded
+     */
+    @Nullable
+    public static Expression<?> fold(Operation<?> operation) {
+        return fold(operation, new IdentityHashMap<Operation<?>, Expression<?>>());
+    }
+
+    /**
+     * Fold the given operation, reusing and recording the results of the given cache
+     *
+     * @param operation
+     * @param cache folded operations by identity, operations which can't be folded are mapped to themselves
+     * @return the folded expression or null, if the operation can't be folded
+     */
+    @Nullable
+    public static Expression<?> fold(Operation<?> operation, Map<Operation<?>, Expression<?>> cache) {
+        Expression<?> folded = cache.get(operation);
+        if (folded == null) {
+            folded = doFold(operation, cache);
+            if (folded == null) {
+                folded = operation;
+            }
+            cache.put(operation, folded);
+        }
+        return folded != operation ? folded : null;
+    }
+
+    @Nullable
+    private static Expression<?> doFold(Operation<?> operation, Map<Operation<?>, Expression<?>> cache) {
+        Operator<?> operator = operation.getOperator();
+        List<Expression<?>> args = operation.getArgs();
+        if (operator == Ops.ADD || operator == Ops.SUB || operator == Ops.MULT || operator == Ops.DIV) {
+            Number first = number(args.get(0), cache);
+            Number second = first != null ? number(args.get(1), cache) : null;
+            if (second != null) {
+                Number result = arithmetic(operator, operation.getType(), first, second);
+                return result != null ? ConstantImpl.create(result) : null;
+            }
+        } else if (operator == Ops.NOT) {
+            Boolean value = bool(args.get(0), cache);
+            if (value != null) {
+                return ConstantImpl.create(!value.booleanValue());
+            }
+        } else if (operator == Ops.AND || operator == Ops.OR) {
+            // the neutral element is dropped, the absorbing one is the result
+            boolean absorbing = operator == Ops.OR;
+            List<Expression<?>> remaining = null;
+            for (int i = 0; i < args.size(); i++) {
+                Boolean value = bool(args.get(i), cache);
+                if (value == null) {
+                    if (remaining != null) {
+                        remaining.add(args.get(i));
+                    }
+                } else if (value.booleanValue() == absorbing) {
+                    return ConstantImpl.create(absorbing);
+                } else if (remaining == null) {
+                    remaining = new ArrayList<Expression<?>>(args.subList(0, i));
+                }
+            }
+            if (remaining == null) {
+                return null;
+            } else if (remaining.isEmpty()) {
+                return ConstantImpl.create(!absorbing);
+            } else if (remaining.size() == 1) {
+                Expression<?> other = remaining.get(0);
+                Expression<?> folded = other instanceof Operation ? fold((Operation<?>)other, cache) : null;
+                return folded != null ? folded : other;
+            } else {
+                return new PredicateOperation(absorbing ? Ops.OR : Ops.AND, ImmutableList.copyOf(remaining));
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Number number(Expression<?> expr, Map<Operation<?>, Expression<?>> cache) {
+        if (expr instanceof Operation) {
+            expr = fold((Operation<?>)expr, cache);
+        }
+        if (expr instanceof Constant && ((Constant<?>)expr).getConstant() instanceof Number) {
+            return (Number)((Constant<?>)expr).getConstant();
+        } else {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Boolean bool(Expression<?> expr, Map<Operation<?>, Expression<?>> cache) {
+        if (expr instanceof Operation) {
+            expr = fold((Operation<?>)expr, cache);
+        }
+        if (expr instanceof Constant && ((Constant<?>)expr).getConstant() instanceof Boolean) {
+            return (Boolean)((Constant<?>)expr).getConstant();
+        } else {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private static Number arithmetic(Operator<?> operator, Class<?> type, Number first, Number second) {
+        if (type.equals(Double.class) || type.equals(Float.class)) {
+            // same precision as the evaluation
+            double a = first.doubleValue(), b = second.doubleValue(), result;
+            if (operator == Ops.ADD) {
+                result = a + b;
+            } else if (operator == Ops.SUB) {
+                result = a - b;
+            } else if (operator == Ops.MULT) {
+                result = a * b;
+            } else {
+                result = a / b;
+            }
+            if (Double.isNaN(result) || Double.isInfinite(result)) {
+                return null;
+            }
+            return MathUtils.cast(result, (Class<Number>)type);
+        } else if (!isIntegral(type) && !type.equals(BigDecimal.class)) {
+            return null;
+        }
+        BigDecimal a, b, result;
+        try {
+            a = new BigDecimal(first.toString());
+            b = new BigDecimal(second.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (operator == Ops.ADD) {
+            result = a.add(b);
+        } else if (operator == Ops.SUB) {
+            result = a.subtract(b);
+        } else if (operator == Ops.MULT) {
+            result = a.multiply(b);
+        } else if (isIntegral(type) || b.signum() == 0) {
+            // integer division differs between the backends
+            return null;
+        } else {
+            try {
+                result = a.divide(b);
+            } catch (ArithmeticException e) {
+                // non-terminating
+                return null;
+            }
+        }
+        Number rv = MathUtils.cast(result, (Class<Number>)type);
+        if (isIntegral(type) && new BigDecimal(rv.toString()).compareTo(result) != 0) {
+            // overflow or fraction
+            return null;
+        }
+        return rv;
+    }
+
+    private static boolean isIntegral(Class<?> type) {
+        return type.equals(Integer.class) || type.equals(Long.class) || type.equals(Short.class)
+            || type.equals(Byte.class) || type.equals(BigInteger.class);
+    }
+
+    private ConstantFolding() {}
+
+}
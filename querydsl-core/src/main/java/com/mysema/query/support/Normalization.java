@@ -18,6 +18,12 @@ import java.math.RoundingMode;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Normalization folds arithmetic on numbers in serialized query strings
+ *
+ * @deprecated serializers fold constants on the expression level via {@link ConstantFolding}
+ */
+@Deprecated
 public final class Normalization {
 
     private static final String WS = "\\s*";
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.support;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.mysema.query.types.Constant;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.ExpressionUtils;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.template.BooleanTemplate;
+
+/**
+ * PredicateSimplifier rewrites filter conditions into a simpler equivalent form
+ *
+ * <ul>
+ *   <li>nested and / or operations are flattened and duplicate operands are removed</li>
+ *   <li>true and false constants are pruned or short-circuit the operation</li>
+ *   <li>equality comparisons of the same expression in an or are merged into an in</li>
+ *   <li>contradictions like <code>a and not a</code> or <code>x = 1 and x = 2</code> are
+ *   replaced with {@link BooleanTemplate#FALSE}, textual constants are not compared, since
+ *   their equality depends on the collation</li>
+ * </ul>
+ *
+ * <p>The result is meant for where, having and join conditions, since contradictions are only
+ * detected where an unknown result has the same effect as false. Serializers can apply it via
+ * {@link #simplify(Predicate)} before handling the condition.</p>
+ *
+ * @author tiwe
+ *
+ */
+public class PredicateSimplifier extends ReplaceVisitor {
+
+    /**
+     * Simplify the given filter condition
+     *
+     * @param predicate condition or null
+     * @return the simplified condition, {@link BooleanTemplate#FALSE} if the condition can't be
+     * satisfied or null, if the condition is always satisfied
+     */
+    @Nullable
+    public static Predicate simplify(@Nullable Predicate predicate) {
+        if (predicate == null) {
+            return null;
+        }
+        Predicate rv = (Predicate) predicate.accept(new PredicateSimplifier(), null);
+        return isTrue(rv) ? null : rv;
+    }
+
+    /**
+     * @param expr
+     * @return true, if the given expression is the true constant
+     */
+    public static boolean isTrue(@Nullable Expression<?> expr) {
+        return BooleanTemplate.TRUE.equals(expr)
+            || expr instanceof Constant && Boolean.TRUE.equals(((Constant<?>)expr).getConstant());
+    }
+
+    /**
+     * @param expr
+     * @return true, if the given expression is the false constant
+     */
+    public static boolean isFalse(@Nullable Expression<?> expr) {
+        return BooleanTemplate.FALSE.equals(expr)
+            || expr instanceof Constant && Boolean.FALSE.equals(((Constant<?>)expr).getConstant());
+    }
+
+    // true, while the visited expression is an operand of the filter's and / or tree
+    private boolean filter = true;
+
+    protected PredicateSimplifier() {}
+
+    @Override
+    public Expression<?> visit(Operation<?> expr, @Nullable Void context) {
+        Operator<?> operator = expr.getOperator();
+        boolean logical = operator == Ops.AND || operator == Ops.OR;
+        boolean oldFilter = filter;
+        filter = filter && logical;
+        Expression<?> rv;
+        try {
+            rv = super.visit(expr, context);
+        } finally {
+            filter = oldFilter;
+        }
+        if (!(rv instanceof Operation) || rv.getType() != Boolean.class) {
+            return rv;
+        } else if (logical) {
+            return simplify((Operation<?>)rv);
+        } else if (operator == Ops.NOT) {
+            Expression<?> arg = ((Operation<?>)rv).getArg(0);
+            if (isTrue(arg)) {
+                return BooleanTemplate.FALSE;
+            } else if (isFalse(arg)) {
+                return BooleanTemplate.TRUE;
+            } else if (arg instanceof Operation && ((Operation<?>)arg).getOperator() == Ops.NOT) {
+                return ((Operation<?>)arg).getArg(0);
+            }
+        }
+        return rv;
+    }
+
+    private Expression<?> simplify(Operation<?> operation) {
+        Operator<?> operator = operation.getOperator();
+        boolean and = operator == Ops.AND;
+        Set<Predicate> operands = new LinkedHashSet<Predicate>();
+        flatten(operator, operation, operands);
+        for (Predicate operand : new ArrayList<Predicate>(operands)) {
+            if (and ? isFalse(operand) : isTrue(operand)) {
+                return and ? BooleanTemplate.FALSE : BooleanTemplate.TRUE;
+            } else if (and ? isTrue(operand) : isFalse(operand)) {
+                operands.remove(operand);
+            }
+        }
+        if (and && filter && isContradiction(operands)) {
+            return BooleanTemplate.FALSE;
+        } else if (!and) {
+            operands = mergeEqualities(operands);
+        }
+        if (operands.isEmpty()) {
+            return and ? BooleanTemplate.TRUE : BooleanTemplate.FALSE;
+        } else if (and) {
+            return ExpressionUtils.allOf(operands);
+        } else {
+            return ExpressionUtils.anyOf(operands);
+        }
+    }
+
+    private static void flatten(Operator<?> operator, Expression<?> expr, Set<Predicate> operands) {
+        if (expr instanceof Operation && ((Operation<?>)expr).getOperator() == operator) {
+            for (Expression<?> arg : ((Operation<?>)expr).getArgs()) {
+                flatten(operator, arg, operands);
+            }
+        } else {
+            operands.add((Predicate)ExpressionUtils.extract(expr));
+        }
+    }
+
+    private static boolean isContradiction(Set<Predicate> operands) {
+        Map<Expression<?>, Object> values = new LinkedHashMap<Expression<?>, Object>();
+        for (Predicate operand : operands) {
+            if (operand instanceof Operation) {
+                Operation<?> operation = (Operation<?>)operand;
+                if (operation.getOperator() == Ops.NOT && operands.contains(operation.getArg(0))) {
+                    return true;
+                }
+                Object value = getEqualityConstant(operation);
+                if (value != null) {
+                    Object other = values.put(operation.getArg(0), value);
+                    if (other != null && isDistinct(other, value)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isDistinct(Object value, Object other) {
+        if (!value.getClass().equals(other.getClass())
+            || value instanceof String || value instanceof Character) {
+            // textual comparisons depend on the collation of the database
+            return false;
+        } else if (value instanceof Double || value instanceof Float) {
+            double d1 = ((Number)value).doubleValue(), d2 = ((Number)other).doubleValue();
+            return !Double.isNaN(d1) && !Double.isNaN(d2) && d1 != d2;
+        } else if (value instanceof Comparable) {
+            // compareTo ignores the scale of BigDecimal values
+            return ((Comparable<Object>)value).compareTo(other) != 0;
+        } else {
+            return !value.equals(other);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<Predicate> mergeEqualities(Set<Predicate> operands) {
+        Map<Expression<?>, Set<Object>> values = new LinkedHashMap<Expression<?>, Set<Object>>();
+        Map<Expression<?>, Integer> counts = new LinkedHashMap<Expression<?>, Integer>();
+        for (Predicate operand : operands) {
+            Collection<?> constants = getEqualityConstants(operand);
+            if (constants != null) {
+                Expression<?> left = ((Operation<?>)operand).getArg(0);
+                if (!values.containsKey(left)) {
+                    values.put(left, new LinkedHashSet<Object>());
+                    counts.put(left, 0);
+                }
+                values.get(left).addAll(constants);
+                counts.put(left, counts.get(left) + 1);
+            }
+        }
+        Set<Predicate> rv = new LinkedHashSet<Predicate>();
+        for (Predicate operand : operands) {
+            Expression<?> left = getEqualityConstants(operand) != null ? ((Operation<?>)operand).getArg(0) : null;
+            if (left == null || counts.get(left) == 1) {
+                rv.add(operand);
+            } else if (values.containsKey(left)) {
+                // the merged comparison takes the place of the first one
+                rv.add(ExpressionUtils.in((Expression<Object>)left, values.remove(left)));
+            }
+        }
+        return rv;
+    }
+
+    @Nullable
+    private static Object getEqualityConstant(Operation<?> operation) {
+        if (operation.getOperator() == Ops.EQ && operation.getArg(1) instanceof Constant) {
+            Object value = ((Constant<?>)operation.getArg(1)).getConstant();
+            if (value instanceof Number || value instanceof String || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Collection<?> getEqualityConstants(Predicate predicate) {
+        if (!(predicate instanceof Operation)) {
+            return null;
+        }
+        Operation<?> operation = (Operation<?>)predicate;
+        Object value = getEqualityConstant(operation);
+        if (value != null) {
+            List<Object> rv = new ArrayList<Object>(1);
+            rv.add(value);
+            return rv;
+        } else if (operation.getOperator() == Ops.IN && operation.getArg(1) instanceof Constant
+                && ((Constant<?>)operation.getArg(1)).getConstant() instanceof Collection) {
+            Collection<?> values = (Collection<?>)((Constant<?>)operation.getArg(1)).getConstant();
+            for (Object element : values) {
+                if (element == null) {
+                    return null;
+                }
+            }
+            return values;
+        } else {
+            return null;
+        }
+    }
+
+}
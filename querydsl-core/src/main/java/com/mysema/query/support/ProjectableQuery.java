@@ -24,6 +24,8 @@ import com.mysema.commons.lang.IteratorAdapter;
 import com.mysema.query.NonUniqueResultException;
 import com.mysema.query.Projectable;
 import com.mysema.query.ResultTransformer;
+import com.mysema.query.Row;
+import com.mysema.query.RowCallback;
 import com.mysema.query.Tuple;
 import com.mysema.query.types.Expression;
 
@@ -79,6 +81,26 @@ public abstract class ProjectableQuery<Q extends ProjectableQuery<Q>>
     public <T> T transform(ResultTransformer<T> transformer) {
         return transformer.transform(this);
     }
+
+    /**
+     * Pass the rows of the projection to the given callback, the {@link Row} instance is reused
+     * for all rows and is only valid during the callback
+     *
+     * @param callback row callback
+     * @param args projection
+     */
+    public void forEachRow(RowCallback callback, Expression<?>... args) {
+        TupleRow row = new TupleRow();
+        CloseableIterator<Tuple> it = iterate(args);
+        try {
+            while (it.hasNext()) {
+                row.setTuple(it.next());
+                callback.handle(row);
+            }
+        } finally {
+            it.close();
+        }
+    }
     
     @Nullable
     protected <T> T uniqueResult(CloseableIterator<T> it) {
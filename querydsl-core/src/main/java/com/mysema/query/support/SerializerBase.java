@@ -14,6 +14,7 @@
 package com.mysema.query.support;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,7 +42,9 @@ import com.mysema.query.types.Visitor;
  */
 public abstract class SerializerBase<S extends SerializerBase<S>> implements Visitor<Void,Void> {
 
-    private final StringBuilder builder = new StringBuilder(128);
+    private static final int DEFAULT_CAPACITY = 128;
+
+    private final StringBuilder builder;
            
     private String constantPrefix = "a";
 
@@ -51,6 +54,8 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
 
     private Map<Object,String> constantToLabel;
 
+    private Map<Operation<?>, Expression<?>> foldedOperations;
+
     @SuppressWarnings("unchecked")
     private final S self = (S) this;
 
@@ -63,8 +68,38 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
     private boolean strict = true;
     
     public SerializerBase(Templates templates) {
+        this(templates, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new serializer with a presized buffer
+     *
+     * @param templates
+     * @param capacity initial capacity of the buffer
+     */
+    public SerializerBase(Templates templates, int capacity) {
         this.templates = templates;
         this.escape = templates.getEscapeChar();
+        this.builder = new StringBuilder(capacity);
+    }
+
+    /**
+     * Clear the serialized content and the constant labels and restore the default settings,
+     * the capacity of the buffer is kept
+     */
+    public void reset() {
+        builder.setLength(0);
+        constantPrefix = "a";
+        paramPrefix = "p";
+        anonParamPrefix = "_";
+        normalize = true;
+        strict = true;
+        if (constantToLabel != null) {
+            constantToLabel.clear();
+        }
+        if (foldedOperations != null) {
+            foldedOperations.clear();
+        }
     }
     
     public final S prepend(final String str) {
@@ -92,6 +127,14 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
         }
         return constantToLabel;
     }
+
+    private Map<Operation<?>, Expression<?>> getFoldedOperations() {
+        if (foldedOperations == null) {
+            // the sub-trees of each operation are folded with it, so they are looked up when visited
+            foldedOperations = new IdentityHashMap<Operation<?>, Expression<?>>();
+        }
+        return foldedOperations;
+    }
     
     public int getLength() {
         return builder.length();
@@ -140,7 +183,14 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
     }
 
     protected void handleTemplate(final Template template, final List<?> args) {
-        for (final Template.Element element : template.getElements()) {
+        final List<Template.Element> elements = template.getElements();
+        for (int i = 0; i < elements.size(); i++) {
+            final int folded = fold(template, i, args);
+            if (folded > 0) {
+                i += folded - 1;
+                continue;
+            }
+            final Template.Element element = elements.get(i);
             final Object rv = element.convert(args);
             if (rv instanceof Expression) {                    
                 ((Expression)rv).accept(this, null);
@@ -152,6 +202,26 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
         }
     }
 
+    /**
+     * Append the folded form of the template elements starting at the given index
+     *
+     * @param template
+     * @param index element index
+     * @param args template arguments
+     * @return amount of folded elements
+     */
+    private int fold(final Template template, final int index, final List<?> args) {
+        final Template.Fold fold = normalize ? template.getFold(index) : null;
+        if (fold != null) {
+            final String result = fold.apply(args);
+            if (result != null) {
+                builder.append(result);
+                return fold.getLength();
+            }
+        }
+        return 0;
+    }
+
     public final boolean serialize(final QueryFlag.Position position, final Set<QueryFlag> flags) {
         boolean handled = false;
         for (final QueryFlag flag : flags) {
@@ -186,6 +256,11 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
         this.anonParamPrefix = prefix;
     }
     
+    /**
+     * Set whether constant arithmetic and boolean constants are folded, defaults to true
+     *
+     * @param normalize
+     */
     public void setNormalize(boolean normalize) {
         this.normalize = normalize;       
     }
@@ -196,11 +271,7 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
 
     @Override
     public String toString() {
-        if (normalize) {
-            return Normalization.normalize(builder.toString());    
-        } else {
-            return builder.toString();
-        }        
+        return builder.toString();
     }
 
     @Override
@@ -246,7 +317,16 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
 
     @Override
     public Void visit(Operation<?> expr, Void context) {
-        visitOperation(expr.getType(), expr.getOperator(), expr.getArgs());
+        final Expression<?> folded = normalize ? ConstantFolding.fold(expr, getFoldedOperations()) : null;
+        if (folded == null) {
+            visitOperation(expr.getType(), expr.getOperator(), expr.getArgs());
+        } else if (folded instanceof Operation && templates.getPrecedence(((Operation<?>) folded).getOperator())
+                > templates.getPrecedence(expr.getOperator())) {
+            // the caller chose the parentheses for the original operator
+            append("(").handle(folded).append(")");
+        } else {
+            handle(folded);
+        }
         return null;
     }
 
@@ -267,21 +347,28 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
     
     protected void visitOperation(Class<?> type, Operator<?> operator, final List<? extends Expression<?>> args) {
         final Template template = templates.getTemplate(operator);
-        if (template != null) {
-            final int precedence = templates.getPrecedence(operator);        
-            for (final Template.Element element : template.getElements()) {
+        if (template != null && args.size() > 2 && template.getSeparator() != null) {
+            // flat n-ary operation, rendered like the chain of binary operations
+            final int precedence = templates.getPrecedence(operator);
+            for (int i = 0; i < args.size(); i++) {
+                if (i > 0) {
+                    append(template.getSeparator());
+                }
+                handleArgument(precedence, args.get(i));
+            }
+        } else if (template != null) {
+            final int precedence = templates.getPrecedence(operator);
+            final List<Template.Element> elements = template.getElements();
+            for (int i = 0; i < elements.size(); i++) {
+                final int folded = fold(template, i, args);
+                if (folded > 0) {
+                    i += folded - 1;
+                    continue;
+                }
+                final Template.Element element = elements.get(i);
                 final Object rv = element.convert(args);
                 if (rv instanceof Expression) {
-                    final Expression<?> expr = (Expression<?>) rv;
-                    if (precedence > -1 && expr instanceof Operation) {
-                        if (precedence < templates.getPrecedence(((Operation<?>) expr).getOperator())) {
-                            append("(").handle(expr).append(")");
-                        } else {
-                            handle(expr);
-                        }
-                    } else {
-                        handle(expr);
-                    }
+                    handleArgument(precedence, (Expression<?>) rv);
                 } else if (element.isString()) {
                     append(rv.toString());
                 } else {
@@ -298,4 +385,13 @@ public abstract class SerializerBase<S extends SerializerBase<S>> implements Vis
         }        
     }
 
+    private void handleArgument(int precedence, Expression<?> expr) {
+        if (precedence > -1 && expr instanceof Operation
+            && precedence < templates.getPrecedence(((Operation<?>) expr).getOperator())) {
+            append("(").handle(expr).append(")");
+        } else {
+            handle(expr);
+        }
+    }
+
 }
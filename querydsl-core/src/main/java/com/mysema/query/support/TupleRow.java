@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.support;
+
+import javax.annotation.Nullable;
+
+import com.mysema.query.Row;
+import com.mysema.query.Tuple;
+
+/**
+ * TupleRow is a {@link Row} view of the current {@link Tuple} of an iteration
+ *
+ * @author tiwe
+ *
+ */
+final class TupleRow implements Row {
+
+    @Nullable
+    private Tuple tuple;
+
+    void setTuple(Tuple tuple) {
+        this.tuple = tuple;
+    }
+
+    @Override
+    public int size() {
+        return tuple.size();
+    }
+
+    @Override
+    public <T> T get(int index, Class<T> type) {
+        return tuple.get(index, type);
+    }
+
+    @Override
+    public long getLong(int index) {
+        Number number = tuple.get(index, Number.class);
+        return number != null ? number.longValue() : 0l;
+    }
+
+    @Override
+    public double getDouble(int index) {
+        Number number = tuple.get(index, Number.class);
+        return number != null ? number.doubleValue() : 0.0;
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        return tuple.get(index, Object.class) == null;
+    }
+
+}
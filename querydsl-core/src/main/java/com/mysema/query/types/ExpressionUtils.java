@@ -13,6 +13,7 @@
  */
 package com.mysema.query.types;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -60,13 +61,7 @@ public final class ExpressionUtils {
      */
     @Nullable
     public static Predicate allOf(Collection<Predicate> exprs) {
-        Predicate rv = null;
-        for (Predicate b : exprs) {
-            if (b != null) {
-                rv = rv == null ? b : ExpressionUtils.and(rv,b);
-            }
-        }
-        return rv;
+        return flatten(Ops.AND, exprs);
     }
 
     /**
@@ -77,18 +72,16 @@ public final class ExpressionUtils {
      */
     @Nullable
     public static Predicate allOf(Predicate... exprs) {
-        Predicate rv = null;
-        for (Predicate b : exprs) {
-            if (b != null) {
-                rv = rv == null ? b : ExpressionUtils.and(rv,b);
-            }
-        }
-        return rv;
+        return flatten(Ops.AND, Arrays.asList(exprs));
     }
 
     /**
      * Create the intersection of the given arguments
      *
+     * <p>The arguments of a left or right and operation are inlined, which copies them, so
+     * building a long and chain incrementally via this method takes quadratic time. Use
+     * {@link #allOf(Predicate...)} or {@link com.mysema.query.BooleanBuilder} for that.</p>
+     *
      * @param left
      * @param right
      * @return
@@ -101,7 +94,7 @@ public final class ExpressionUtils {
         } else if (right == null) {
             return left;
         } else {
-            return PredicateOperation.create(Ops.AND, left, right);
+            return flatten(Ops.AND, Arrays.asList(left, right));
         }
     }
 
@@ -114,13 +107,7 @@ public final class ExpressionUtils {
      */
     @Nullable
     public static Predicate anyOf(Collection<Predicate> exprs) {
-        Predicate rv = null;
-        for (Predicate b : exprs) {
-            if (b != null) {
-                rv = rv == null ? b : ExpressionUtils.or(rv,b);
-            }
-        }
-        return rv;
+        return flatten(Ops.OR, exprs);
     }
 
     /**
@@ -131,13 +118,40 @@ public final class ExpressionUtils {
      */
     @Nullable
     public static Predicate anyOf(Predicate... exprs) {
-        Predicate rv = null;
+        return flatten(Ops.OR, Arrays.asList(exprs));
+    }
+
+    /**
+     * Create a single n-ary operation of the given predicates, the arguments of nested operations
+     * with the same operator are inlined to avoid deep trees
+     *
+     * @param operator {@link Ops#AND} or {@link Ops#OR}
+     * @param exprs
+     * @return
+     */
+    @Nullable
+    private static Predicate flatten(Operator<Boolean> operator, Collection<Predicate> exprs) {
+        ImmutableList.Builder<Expression<?>> args = ImmutableList.builder();
+        Predicate first = null;
+        int count = 0;
         for (Predicate b : exprs) {
-            if (b != null) {
-                rv = rv == null ? b : ExpressionUtils.or(rv,b);
+            b = (Predicate) extract(b);
+            if (b == null) {
+                continue;
+            } else if (b instanceof Operation && ((Operation<?>)b).getOperator() == operator) {
+                args.addAll(((Operation<?>)b).getArgs());
+            } else {
+                args.add(b);
+            }
+            if (count++ == 0) {
+                first = b;
             }
         }
-        return rv;
+        if (count < 2) {
+            return first;
+        } else {
+            return new PredicateOperation(operator, args.build());
+        }
     }
 
     /**
@@ -392,6 +406,10 @@ public final class ExpressionUtils {
     /**
      * Create a left or right expression
      *
+     * <p>The arguments of a left or right or operation are inlined, which copies them, so
+     * building a long or chain incrementally via this method takes quadratic time. Use
+     * {@link #anyOf(Predicate...)} or {@link com.mysema.query.BooleanBuilder} for that.</p>
+     *
      * @param left
      * @param right
      * @return
@@ -404,7 +422,7 @@ public final class ExpressionUtils {
         } else if (right == null) {
             return left;
         } else {
-            return PredicateOperation.create(Ops.OR, left, right);
+            return flatten(Ops.OR, Arrays.asList(left, right));
         }
     }
 
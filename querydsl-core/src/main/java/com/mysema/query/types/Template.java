@@ -14,8 +14,12 @@
 package com.mysema.query.types;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.List;
+import java.util.regex.Matcher;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import com.google.common.base.Function;
@@ -62,6 +66,10 @@ public final class Template implements Serializable {
             return arg instanceof Constant ? arg.toString() : arg;
         }
 
+        public int getIndex() {
+            return index;
+        }
+
         @Override
         public boolean isString() {
             return true;
@@ -87,6 +95,10 @@ public final class Template implements Serializable {
             this.toString = "'" + text + "'";
         }
 
+        public String getText() {
+            return text;
+        }
+
         @Override
         public boolean isString() {
             return true;
@@ -125,6 +137,10 @@ public final class Template implements Serializable {
             return transformer.apply(args.get(index));
         }
 
+        public int getIndex() {
+            return index;
+        }
+
         @Override
         public boolean isString() {
             return false;
@@ -176,19 +192,225 @@ public final class Template implements Serializable {
 
     }
 
+    /**
+     * Fold is the arithmetic of the template text between an inlined constant and a number
+     * literal or another inlined constant, e.g. <code>{1s}+1</code> or <code>{2s}-{1s}</code>
+     *
+     * <p>If the operands are numeric constants, the covered elements are replaced with the
+     * result of the operation. Folds without a left operand drop the addition or subtraction of
+     * a zero constant, e.g. the <code>-{1s}</code> of <code>{2s}-{1s}</code>.</p>
+     */
+    @Immutable
+    public static final class Fold implements Serializable {
+
+        private static final long serialVersionUID = 5018442795342781275L;
+
+        private final int left, right;
+
+        private final char operator;
+
+        // kept as text, so that the fold is serialized as plain values
+        @Nullable
+        private final String literal;
+
+        @Nullable
+        private transient BigDecimal literalValue;
+
+        private final int length;
+
+        Fold(int left, char operator, int right, @Nullable String literal, int length) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+            this.literal = literal;
+            this.length = length;
+        }
+
+        /**
+         * Get the folded form of the covered elements
+         *
+         * @param args template arguments
+         * @return the result or null, if the operands are not numeric constants
+         */
+        @Nullable
+        public String apply(List<?> args) {
+            BigDecimal second = literal != null ? getLiteralValue() : toNumber(args.get(right));
+            if (left < 0) {
+                return second != null && second.signum() == 0 ? "" : null;
+            }
+            BigDecimal first = toNumber(args.get(left));
+            if (first == null || second == null) {
+                return null;
+            }
+            BigDecimal result;
+            switch (operator) {
+                case '+': result = first.add(second); break;
+                case '-': result = first.subtract(second); break;
+                case '*': result = first.multiply(second); break;
+                default:
+                    if (second.signum() == 0) {
+                        return null;
+                    }
+                    result = first.divide(second, 10, RoundingMode.HALF_UP);
+            }
+            return result.signum() == 0 ? "0" : result.stripTrailingZeros().toPlainString();
+        }
+
+        private BigDecimal getLiteralValue() {
+            if (literalValue == null) {
+                literalValue = new BigDecimal(literal);
+            }
+            return literalValue;
+        }
+
+        /**
+         * @return amount of covered elements
+         */
+        public int getLength() {
+            return length;
+        }
+
+        @Nullable
+        private static BigDecimal toNumber(Object arg) {
+            if (arg instanceof Constant) {
+                arg = ((Constant<?>)arg).getConstant();
+            }
+            if (arg instanceof Number) {
+                try {
+                    return new BigDecimal(arg.toString());
+                } catch (NumberFormatException e) {
+                    // NaN or infinite
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+
+    }
+
     private final ImmutableList<Element> elements;
 
     private final String template;
 
+    @Nullable
+    private final Fold[] folds;
+
+    @Nullable
+    private final String separator;
+
     Template(String template, ImmutableList<Element> elements) {
         this.template = template;
         this.elements = elements;
+        this.folds = createFolds(elements);
+        this.separator = createSeparator(elements);
+    }
+
+    @Nullable
+    private static String createSeparator(List<Element> elements) {
+        if (elements.size() == 3
+            && elements.get(0) instanceof ByIndex && ((ByIndex)elements.get(0)).getIndex() == 0
+            && elements.get(1) instanceof StaticText
+            && elements.get(2) instanceof ByIndex && ((ByIndex)elements.get(2)).getIndex() == 1) {
+            return ((StaticText)elements.get(1)).getText();
+        } else {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Fold[] createFolds(List<Element> elements) {
+        Fold[] folds = null;
+        for (int i = 0; i + 1 < elements.size(); i++) {
+            Fold fold = createFold(elements, i);
+            if (fold != null && isFoldable(elements, i, fold)) {
+                if (folds == null) {
+                    folds = new Fold[elements.size()];
+                }
+                folds[i] = fold;
+            }
+        }
+        return folds;
+    }
+
+    @Nullable
+    private static Fold createFold(List<Element> elements, int i) {
+        Element element = elements.get(i), next = elements.get(i + 1);
+        if (element instanceof AsString && next instanceof StaticText) {
+            // {1s}+1 or {2s}-{1s}
+            int left = ((AsString)element).getIndex();
+            String text = ((StaticText)next).getText();
+            Matcher m = TemplateFactory.ARITHMETIC.matcher(text);
+            if (m.matches() && m.group(4).isEmpty()) {
+                return new Fold(left, m.group(2).charAt(0), -1, m.group(3), 2);
+            } else if (isOperator(text, "+-*/") && i + 2 < elements.size()
+                    && elements.get(i + 2) instanceof AsString) {
+                int right = ((AsString)elements.get(i + 2)).getIndex();
+                return new Fold(left, text.trim().charAt(0), right, null, 3);
+            }
+        } else if (element instanceof StaticText && next instanceof AsString && i > 0) {
+            // -{1s}
+            String text = ((StaticText)element).getText();
+            if (isOperator(text, "+-")) {
+                return new Fold(-1, text.trim().charAt(0), ((AsString)next).getIndex(), null, 2);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isOperator(String text, String operators) {
+        String trimmed = text.trim();
+        return trimmed.length() == 1 && operators.indexOf(trimmed.charAt(0)) > -1;
+    }
+
+    private static boolean isFoldable(List<Element> elements, int index, Fold fold) {
+        // the surrounding operators may not bind stronger than the folded one
+        String before = index > 0 && elements.get(index - 1) instanceof StaticText
+                ? ((StaticText)elements.get(index - 1)).getText().trim() : "";
+        int after = index + fold.getLength();
+        String next = after < elements.size() && elements.get(after) instanceof StaticText
+                ? ((StaticText)elements.get(after)).getText().trim() : "";
+        if (fold.left < 0) {
+            // the left operand is kept
+            return !next.startsWith("*") && !next.startsWith("/");
+        } else if (index > 0 && !(elements.get(index - 1) instanceof StaticText)
+            || after < elements.size() && !(elements.get(after) instanceof StaticText)) {
+            return false;
+        } else if (before.endsWith("-") || before.endsWith("*") || before.endsWith("/")) {
+            return false;
+        } else if (fold.operator == '+' || fold.operator == '-') {
+            return !next.startsWith("*") && !next.startsWith("/");
+        } else {
+            return true;
+        }
     }
 
     public List<Element> getElements() {
         return elements;
     }
 
+    /**
+     * Get the fold starting at the given element
+     *
+     * @param index element index
+     * @return fold or null
+     */
+    @Nullable
+    public Fold getFold(int index) {
+        return folds != null ? folds[index] : null;
+    }
+
+    /**
+     * Get the separator of infix templates of the form <code>{0} and {1}</code>, which is
+     * used to render operations with more arguments than the template, e.g. flat conjunctions
+     *
+     * @return separator or null, if the template is not of that form
+     */
+    @Nullable
+    public String getSeparator() {
+        return separator;
+    }
+
     @Override
     public String toString() {
         return template;
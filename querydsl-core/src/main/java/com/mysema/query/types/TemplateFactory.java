@@ -35,6 +35,10 @@ public class TemplateFactory {
 
     private static final Constant<String> PERCENT = ConstantImpl.create("%");
 
+    // arithmetic with a number literal, e.g. the "+1" of "{1s}+1"
+    static final Pattern ARITHMETIC = Pattern.compile("(\\s*([+\\-*/])\\s*(\\d+(?:\\.\\d+)?))(?![\\d.])(.*)",
+            Pattern.DOTALL);
+
     private static final Pattern elementPattern = Pattern.compile("\\{"
             + "(%?%?)"
             + "(\\d+)"
@@ -173,9 +177,10 @@ public class TemplateFactory {
             Matcher m = elementPattern.matcher(template);
             final ImmutableList.Builder<Element> elements = ImmutableList.builder();
             int end = 0;
+            Element last = null;
             while (m.find()) {
                 if (m.start() > end) {
-                    elements.add(new Template.StaticText(template.substring(end, m.start())));
+                    addStaticText(elements, last, template.substring(end, m.start()));
                 }
                 String premodifiers = m.group(1).toLowerCase(Locale.ENGLISH);
                 int index = Integer.parseInt(m.group(2));
@@ -220,16 +225,17 @@ public class TemplateFactory {
                         break;
                 }
                 if (asString) {
-                    elements.add(new Template.AsString(index));
+                    last = new Template.AsString(index);
                 } else if (transformer != null) {
-                    elements.add(new Template.Transformed(index, transformer));
+                    last = new Template.Transformed(index, transformer);
                 } else {
-                    elements.add(new Template.ByIndex(index));
+                    last = new Template.ByIndex(index);
                 }
+                elements.add(last);
                 end = m.end();
             }
             if (end < template.length()) {
-                elements.add(new Template.StaticText(template.substring(end)));
+                addStaticText(elements, last, template.substring(end));
             }
             Template rv = new Template(template, elements.build());
             cache.put(template, rv);
@@ -237,6 +243,17 @@ public class TemplateFactory {
         }
     }
 
+    private void addStaticText(ImmutableList.Builder<Element> elements, Element last, String text) {
+        Matcher m = ARITHMETIC.matcher(text);
+        if (last instanceof Template.AsString && m.matches() && !m.group(4).isEmpty()) {
+            // arithmetic on inlined constants is kept apart for folding
+            elements.add(new Template.StaticText(m.group(1)));
+            elements.add(new Template.StaticText(m.group(4)));
+        } else {
+            elements.add(new Template.StaticText(text));
+        }
+    }
+
     public String escapeForLike(String str) {
         final StringBuilder rv = new StringBuilder(str.length() + 3);
         for (int i = 0; i < str.length(); i++) {
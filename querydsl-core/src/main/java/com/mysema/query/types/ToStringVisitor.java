@@ -51,7 +51,24 @@ public final class ToStringVisitor implements Visitor<String,Templates> {
     @Override
     public String visit(Operation<?> o, Templates templates) {
         final Template template = templates.getTemplate(o.getOperator());
-        if (template != null) {
+        if (template != null && o.getArgs().size() > 2 && template.getSeparator() != null) {
+            // flat n-ary operation, rendered like the chain of binary operations
+            final int precedence = templates.getPrecedence(o.getOperator());
+            final StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < o.getArgs().size(); i++) {
+                final Expression<?> arg = o.getArg(i);
+                if (i > 0) {
+                    builder.append(template.getSeparator());
+                }
+                if (precedence > -1 && arg instanceof Operation
+                    && precedence < templates.getPrecedence(((Operation<?>)arg).getOperator())) {
+                    builder.append("(").append(arg.accept(this, templates)).append(")");
+                } else {
+                    builder.append(arg.accept(this, templates));
+                }
+            }
+            return builder.toString();
+        } else if (template != null) {
             final int precedence = templates.getPrecedence(o.getOperator());
             final StringBuilder builder = new StringBuilder();
             for (Template.Element element : template.getElements()) {
@@ -32,6 +32,27 @@ public class BooleanBuilderTest {
 
     private final BooleanExpression second = BooleanConstant.FALSE;
 
+    @Test
+    public void Incremental_And_Or() {
+        BooleanPath a = new BooleanPath("a"), b = new BooleanPath("b"), c = new BooleanPath("c");
+        BooleanBuilder builder = new BooleanBuilder(a).and(b).and(c);
+        assertEquals(ExpressionUtils.allOf(a, b, c), builder.getValue());
+        builder.or(a).or(b);
+        assertEquals(ExpressionUtils.anyOf(ExpressionUtils.allOf(a, b, c), a, b), builder.getValue());
+        builder.and(c);
+        assertEquals("(a && b && c || a || b) && c", builder.toString());
+    }
+
+    @Test
+    public void Clone_Is_Independent() throws CloneNotSupportedException {
+        BooleanPath a = new BooleanPath("a"), b = new BooleanPath("b"), c = new BooleanPath("c");
+        BooleanBuilder builder = new BooleanBuilder(a).and(b);
+        BooleanBuilder clone = builder.clone();
+        builder.and(c);
+        assertEquals(ExpressionUtils.allOf(a, b), clone.getValue());
+        assertEquals(ExpressionUtils.allOf(a, b, c), builder.getValue());
+    }
+
     @Test
     public void Null_In_Constructor() {
         assertNull(new BooleanBuilder(null).getValue());
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Futures;
+
+public class SearchResultsUtilsTest {
+
+    private final List<Integer> results = Arrays.asList(1, 2, 3);
+
+    @Test
+    public void IsComplete() {
+        assertTrue(SearchResultsUtils.isComplete(results, new QueryModifiers(null, null)));
+        assertTrue(SearchResultsUtils.isComplete(results, new QueryModifiers(4l, 0l)));
+        assertFalse(SearchResultsUtils.isComplete(results, new QueryModifiers(3l, null)));
+        assertFalse(SearchResultsUtils.isComplete(results, new QueryModifiers(4l, 1l)));
+    }
+
+    @Test
+    public void GetCount() {
+        assertEquals(5l, SearchResultsUtils.getCount(Futures.immediateFuture(5l)));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void GetCount_Failure() {
+        SearchResultsUtils.getCount(Futures.<Long>immediateFailedFuture(new IllegalStateException()));
+    }
+
+}
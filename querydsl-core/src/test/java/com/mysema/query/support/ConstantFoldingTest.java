@@ -0,0 +1,150 @@
+package com.mysema.query.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.mysema.query.serialization.DummySerializer;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Operation;
+import com.mysema.query.types.Operator;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.PredicateOperation;
+import com.mysema.query.types.Templates;
+import com.mysema.query.types.expr.BooleanExpression;
+import com.mysema.query.types.expr.BooleanOperation;
+import com.mysema.query.types.expr.NumberExpression;
+import com.mysema.query.types.expr.NumberOperation;
+import com.mysema.query.types.path.NumberPath;
+import com.mysema.query.types.path.StringPath;
+import com.mysema.query.types.template.StringTemplate;
+
+public class ConstantFoldingTest {
+
+    private final NumberPath<Integer> num = new NumberPath<Integer>(Integer.class, "num");
+
+    private final StringPath str = new StringPath("str");
+
+    private static <T extends Number & Comparable<?>> NumberExpression<T> op(Class<T> type,
+            Operator<? super T> op, Expression<?> arg1, Expression<?> arg2) {
+        return NumberOperation.create(type, op, arg1, arg2);
+    }
+
+    private static Expression<?> flat(Operator<Boolean> operator, Expression<?>... args) {
+        return new PredicateOperation(operator, ImmutableList.copyOf(args));
+    }
+
+    private static Object fold(Expression<?> expr) {
+        Expression<?> folded = ConstantFolding.fold((Operation<?>)expr);
+        return folded != null ? folded.toString() : null;
+    }
+
+    private static String serialize(Expression<?> expr) {
+        DummySerializer serializer = new DummySerializer(Templates.DEFAULT);
+        serializer.handle(expr);
+        return serializer.toString();
+    }
+
+    @Test
+    public void Arithmetic() {
+        Expression<Integer> two = ConstantImpl.create(2);
+        assertEquals("5", fold(op(Integer.class, Ops.ADD, two, ConstantImpl.create(3))));
+        assertEquals("-1", fold(op(Integer.class, Ops.SUB, two, ConstantImpl.create(3))));
+        assertEquals("6", fold(op(Integer.class, Ops.MULT, two, ConstantImpl.create(3))));
+        assertEquals("2.5", fold(op(Double.class, Ops.DIV, ConstantImpl.create(5.0), two)));
+        assertEquals("9", fold(op(Integer.class, Ops.MULT, op(Integer.class, Ops.ADD, two, ConstantImpl.create(1)),
+                ConstantImpl.create(3))));
+    }
+
+    @Test
+    public void Arithmetic_Not_Folded() {
+        Expression<Integer> two = ConstantImpl.create(2);
+        assertNull(fold(op(Integer.class, Ops.ADD, num, two)));
+        assertNull(fold(op(Integer.class, Ops.DIV, ConstantImpl.create(5), two)));
+        assertNull(fold(op(Integer.class, Ops.ADD, ConstantImpl.create(Integer.MAX_VALUE), two)));
+        assertNull(fold(op(Double.class, Ops.DIV, ConstantImpl.create(5.0), ConstantImpl.create(0.0))));
+    }
+
+    @Test
+    public void Booleans() {
+        BooleanExpression predicate = num.eq(1);
+        BooleanExpression t = BooleanOperation.create(Ops.EQ, ConstantImpl.create(1), ConstantImpl.create(1)).not().not();
+        assertEquals("true", fold(BooleanOperation.create(Ops.NOT, ConstantImpl.create(false))));
+        assertEquals("num = 1", fold(BooleanOperation.create(Ops.AND, ConstantImpl.create(true), predicate)));
+        assertEquals("true", fold(BooleanOperation.create(Ops.OR, predicate, ConstantImpl.create(true))));
+        assertEquals("false", fold(BooleanOperation.create(Ops.AND, predicate, ConstantImpl.create(false))));
+        assertEquals("num = 1", fold(BooleanOperation.create(Ops.OR, ConstantImpl.create(false), predicate)));
+        assertNull(fold(t));
+    }
+
+    @Test
+    public void Flat_Booleans() {
+        Expression<?> t = ConstantImpl.create(true), f = ConstantImpl.create(false);
+        assertEquals("num = 1 && num = 2", fold(flat(Ops.AND, num.eq(1), t, num.eq(2))));
+        assertEquals("num = 1", fold(flat(Ops.OR, f, num.eq(1), f)));
+        assertEquals("false", fold(flat(Ops.AND, num.eq(1), num.eq(2), f)));
+        assertEquals("true", fold(flat(Ops.AND, t, t, t)));
+        assertNull(fold(flat(Ops.OR, num.eq(1), num.eq(2), num.eq(3))));
+    }
+
+    @Test
+    public void Cache() {
+        Map<Operation<?>, Expression<?>> cache = new IdentityHashMap<Operation<?>, Expression<?>>();
+        Operation<?> inner = (Operation<?>)op(Integer.class, Ops.ADD, ConstantImpl.create(2), ConstantImpl.create(1));
+        Operation<?> outer = (Operation<?>)op(Integer.class, Ops.MULT, inner, num);
+        assertNull(ConstantFolding.fold(outer, cache));
+        // the sub-trees are recorded, operations which can't be folded are mapped to themselves
+        assertEquals(2, cache.size());
+        assertEquals("3", cache.get(inner).toString());
+        assertSame(outer, cache.get(outer));
+        assertNull(ConstantFolding.fold(outer, cache));
+
+        // cached results are reused
+        Expression<Integer> five = ConstantImpl.create(5);
+        cache.put(inner, five);
+        assertSame(five, ConstantFolding.fold(inner, cache));
+    }
+
+    @Test
+    public void Serialization() {
+        assertEquals("num + a1", serialize(num.add(op(Integer.class, Ops.ADD, ConstantImpl.create(1),
+                ConstantImpl.create(2)))));
+        assertEquals("(num = a1 || num = a2) && num = a3", serialize(num.eq(1).or(num.eq(2))
+                .and(BooleanOperation.create(Ops.AND, ConstantImpl.create(true), num.eq(3)))));
+        assertEquals("num = a1 && (num = a2 || num = a3)", serialize(num.eq(1)
+                .and(BooleanOperation.create(Ops.AND, num.eq(2).or(num.eq(3)), ConstantImpl.create(true)))));
+    }
+
+    @Test
+    public void Templates() {
+        String template = "substring({0},{1s}+1,{2s}-{1s})";
+        assertEquals("substring(str,2,1)", serialize(StringTemplate.create(template, str, ConstantImpl.create(1),
+                ConstantImpl.create(2))));
+        assertEquals("substring(str,num+1,2-num)", serialize(StringTemplate.create(template, str, num,
+                ConstantImpl.create(2))));
+        assertEquals("locate(str,str,3)-1", serialize(StringTemplate.create("locate({0},{0},{1s}+1)-1", str,
+                ConstantImpl.create(2))));
+        assertEquals("x-2+1", serialize(StringTemplate.create("x-{0s}+1", ConstantImpl.create(2))));
+        assertEquals("2+1*x", serialize(StringTemplate.create("{0s}+1*x", ConstantImpl.create(2))));
+        assertEquals("substring(str,1,num)", serialize(StringTemplate.create(template, str, ConstantImpl.create(0),
+                num)));
+        assertEquals("num - a1", serialize(StringTemplate.create("{0s}-{1s}", num.subtract(1),
+                ConstantImpl.create(0))));
+    }
+
+    @Test
+    public void Not_Normalized() {
+        DummySerializer serializer = new DummySerializer(Templates.DEFAULT);
+        serializer.setNormalize(false);
+        serializer.handle(StringTemplate.create("substring({0},{1s}+1)", str, ConstantImpl.create(1)));
+        assertEquals("substring(str,1+1)", serializer.toString());
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.mysema.query.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import com.mysema.query.BooleanBuilder;
+import com.mysema.query.types.ExpressionUtils;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.path.NumberPath;
+import com.mysema.query.types.path.StringPath;
+import com.mysema.query.types.template.BooleanTemplate;
+
+public class PredicateSimplifierTest {
+
+    private final NumberPath<Integer> num = new NumberPath<Integer>(Integer.class, "num");
+
+    private final StringPath str = new StringPath("str");
+
+    private static String simplify(Predicate predicate) {
+        return String.valueOf(PredicateSimplifier.simplify(predicate));
+    }
+
+    @Test
+    public void Flatten_And_Deduplicate() {
+        BooleanBuilder builder = new BooleanBuilder();
+        builder.and(num.gt(1));
+        builder.and(new BooleanBuilder(str.isNotNull()).and(num.gt(1)));
+        builder.and(str.isNotNull());
+        assertEquals("num > 1 && str is not null", simplify(builder));
+    }
+
+    @Test
+    public void Constants() {
+        assertEquals("num > 1", simplify(ExpressionUtils.allOf(BooleanTemplate.TRUE, num.gt(1))));
+        assertEquals("num > 1", simplify(ExpressionUtils.anyOf(num.gt(1), BooleanTemplate.FALSE)));
+        assertEquals("false", simplify(ExpressionUtils.allOf(num.gt(1), BooleanTemplate.FALSE)));
+        assertNull(PredicateSimplifier.simplify(ExpressionUtils.anyOf(num.gt(1), BooleanTemplate.TRUE)));
+        assertNull(PredicateSimplifier.simplify(BooleanTemplate.FALSE.not()));
+        assertEquals("num > 1", simplify(num.gt(1).not().not()));
+    }
+
+    @Test
+    public void Merge_Equalities() {
+        assertEquals("num in [1, 2, 3] || str = a", simplify(ExpressionUtils.anyOf(
+                num.eq(1), num.eq(2), str.eq("a"), num.in(2, 3))));
+        assertEquals("num = 1 || str = a", simplify(num.eq(1).or(str.eq("a"))));
+        assertEquals("num = 1", simplify(num.eq(1).or(num.eq(1))));
+    }
+
+    @Test
+    public void Contradictions() {
+        assertEquals("false", simplify(num.eq(1).and(str.isNull()).and(num.eq(2))));
+        assertEquals("false", simplify(num.gt(1).and(num.gt(1).not())));
+        assertEquals("num = 1", simplify(num.eq(1).and(ExpressionUtils.eqConst(num, 1))));
+        // not in filter position, unknown differs from false
+        assertEquals("!(num = 1 && num = 2)", simplify(num.eq(1).and(num.eq(2)).not()));
+        // different types
+        assertEquals("num = 1 && num = 1", simplify(num.eq(1).and(ExpressionUtils.eqConst((NumberPath) num, 1L))));
+    }
+
+    @Test
+    public void Contradictions_Numeric() {
+        NumberPath<BigDecimal> dec = new NumberPath<BigDecimal>(BigDecimal.class, "dec");
+        NumberPath<Double> dbl = new NumberPath<Double>(Double.class, "dbl");
+        assertEquals("dec = 1.0 && dec = 1", simplify(dec.eq(new BigDecimal("1.0")).and(dec.eq(BigDecimal.ONE))));
+        assertEquals("false", simplify(dec.eq(new BigDecimal("1.0")).and(dec.eq(BigDecimal.TEN))));
+        assertEquals("dbl = 0.0 && dbl = -0.0", simplify(dbl.eq(0.0).and(dbl.eq(-0.0))));
+        assertEquals("false", simplify(dbl.eq(0.0).and(dbl.eq(1.0))));
+    }
+
+    @Test
+    public void Contradictions_Strings() {
+        // equality of strings depends on the collation
+        assertEquals("str = a && str = A", simplify(str.eq("a").and(str.eq("A"))));
+        assertEquals("str = a && str = a ", simplify(str.eq("a").and(str.eq("a "))));
+    }
+
+    @Test
+    public void Unchanged() {
+        Predicate predicate = num.eq(1).and(str.startsWith("a"));
+        assertEquals(predicate, PredicateSimplifier.simplify(predicate));
+    }
+
+}
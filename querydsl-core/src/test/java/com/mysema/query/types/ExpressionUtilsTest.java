@@ -124,6 +124,28 @@ public class ExpressionUtilsTest {
         return ExpressionUtils.regexToLike(expr).toString();
     }
     
+    @Test
+    public void AllOf() {
+        Predicate predicate = ExpressionUtils.allOf(str.isNull(), str2.isNull(), str.eq(str2));
+        assertEquals(3, ((Operation<?>)predicate).getArgs().size());
+        assertEquals("str is null && str2 is null && str = str2", predicate.toString());
+    }
+
+    @Test
+    public void AnyOf_Nested() {
+        Predicate predicate = ExpressionUtils.and(
+                ExpressionUtils.anyOf(str.isNull(), str2.isNull(), str.eq(str2)), str.isNotNull());
+        assertEquals("(str is null || str2 is null || str = str2) && str is not null", predicate.toString());
+    }
+
+    @Test
+    public void And_Flattens() {
+        Predicate predicate = ExpressionUtils.and(ExpressionUtils.and(str.isNull(), str2.isNull()),
+                ExpressionUtils.and(str.eq(str2), str.isNotNull()));
+        assertEquals(4, ((Operation<?>)predicate).getArgs().size());
+        assertEquals(Ops.AND, ((Operation<?>)predicate).getOperator());
+    }
+
     @Test
     public void Count() {
         assertEquals("count(str)", ExpressionUtils.count(str).toString());
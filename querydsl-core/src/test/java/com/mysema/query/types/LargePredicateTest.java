@@ -0,0 +1,119 @@
+package com.mysema.query.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.mysema.query.BooleanBuilder;
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.serialization.DummySerializer;
+import com.mysema.query.types.path.NumberPath;
+import com.mysema.testutil.Benchmark;
+import com.mysema.testutil.Runner;
+
+public class LargePredicateTest {
+
+    private static final int SIZE = 5000;
+
+    private final NumberPath<Integer> id = new NumberPath<Integer>(Integer.class, "id");
+
+    private List<Predicate> predicates(int size) {
+        List<Predicate> predicates = new ArrayList<Predicate>(size);
+        for (int i = 0; i < size; i++) {
+            predicates.add(id.eq(i));
+        }
+        return predicates;
+    }
+
+    private void assertFlat(Operator<?> operator, Predicate predicate) {
+        Operation<?> operation = (Operation<?>) predicate;
+        assertEquals(operator, operation.getOperator());
+        assertEquals(SIZE, operation.getArgs().size());
+        for (Expression<?> arg : operation.getArgs()) {
+            assertEquals(Ops.EQ, ((Operation<?>)arg).getOperator());
+        }
+    }
+
+    private void visit(Predicate predicate) {
+        predicate.hashCode();
+        assertTrue(predicate.toString().startsWith("id = 0"));
+        DummySerializer serializer = new DummySerializer(Templates.DEFAULT);
+        serializer.handle(predicate);
+        assertTrue(serializer.toString().endsWith("id = a" + SIZE));
+        Set<Expression<?>> known = new HashSet<Expression<?>>();
+        known.add(id);
+        predicate.accept(ValidatingVisitor.DEFAULT, known);
+    }
+
+    @Test
+    public void AnyOf() {
+        Predicate predicate = ExpressionUtils.anyOf(predicates(SIZE));
+        assertFlat(Ops.OR, predicate);
+        visit(predicate);
+    }
+
+    @Test
+    public void AllOf() {
+        Predicate predicate = ExpressionUtils.allOf(predicates(SIZE));
+        assertFlat(Ops.AND, predicate);
+        visit(predicate);
+    }
+
+    @Test
+    public void BooleanBuilder() {
+        BooleanBuilder builder = new BooleanBuilder();
+        for (Predicate predicate : predicates(SIZE)) {
+            builder.or(predicate);
+        }
+        assertFlat(Ops.OR, builder.getValue());
+        visit(builder);
+    }
+
+    @Test
+    public void Where() {
+        QueryMetadata metadata = new DefaultQueryMetadata().noValidate();
+        for (Predicate predicate : predicates(SIZE)) {
+            metadata.addWhere(predicate);
+        }
+        assertFlat(Ops.AND, metadata.getWhere());
+        visit(metadata.getWhere());
+    }
+
+    @Test
+    @Ignore
+    public void Performance() throws Exception {
+        // the runner executes a million iterations, so smaller predicates are used
+        final List<Predicate> predicates = predicates(100);
+        Runner.run("LargePredicateTest anyOf", new Benchmark() {
+            @Override
+            public void run(int times) throws Exception {
+                for (int i = 0; i < times; i++) {
+                    Predicate predicate = ExpressionUtils.anyOf(predicates);
+                    new DummySerializer(Templates.DEFAULT).handle(predicate);
+                    predicate.hashCode();
+                }
+            }
+        });
+        Runner.run("LargePredicateTest BooleanBuilder", new Benchmark() {
+            @Override
+            public void run(int times) throws Exception {
+                for (int i = 0; i < times; i++) {
+                    BooleanBuilder builder = new BooleanBuilder();
+                    for (Predicate predicate : predicates) {
+                        builder.or(predicate);
+                    }
+                    new DummySerializer(Templates.DEFAULT).handle(builder);
+                }
+            }
+        });
+    }
+
+}
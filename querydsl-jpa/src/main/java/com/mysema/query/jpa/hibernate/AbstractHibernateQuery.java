@@ -242,13 +242,21 @@ public abstract class AbstractHibernateQuery<Q extends AbstractHibernateQuery<Q>
     public <RT> SearchResults<RT> listResults(Expression<RT> expr) {
         queryMixin.addProjection(expr);
         Query countQuery = createQuery(null, true);
-        long total = (Long) countQuery.uniqueResult();
         try{
+            QueryModifiers modifiers = getMetadata().getModifiers();
+            Query query = createQuery(modifiers, false);
+            @SuppressWarnings("unchecked")
+            List<RT> list = query.list();
+            long total;
+            Long limit = modifiers.getLimit(), offset = modifiers.getOffset();
+            if ((offset == null || offset.longValue() == 0l)
+                && (limit == null || list.size() < limit.longValue())) {
+                // the page contains all results
+                total = list.size();
+            } else {
+                total = (Long) countQuery.uniqueResult();
+            }
             if (total > 0) {
-                QueryModifiers modifiers = getMetadata().getModifiers();
-                Query query = createQuery(modifiers, false);
-                @SuppressWarnings("unchecked")
-                List<RT> list = query.list();
                 return new SearchResults<RT>(list, modifiers, total);
             } else {
                 return SearchResults.emptyResults();
@@ -16,6 +16,8 @@ package com.mysema.query.jpa.impl;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import javax.annotation.Nullable;
 import javax.persistence.EntityManager;
@@ -28,12 +30,14 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.mysema.commons.lang.CloseableIterator;
 import com.mysema.query.DefaultQueryMetadata;
 import com.mysema.query.NonUniqueResultException;
 import com.mysema.query.QueryMetadata;
 import com.mysema.query.QueryModifiers;
 import com.mysema.query.SearchResults;
+import com.mysema.query.SearchResultsUtils;
 import com.mysema.query.Tuple;
 import com.mysema.query.jpa.JPAQueryBase;
 import com.mysema.query.jpa.JPQLSerializer;
@@ -69,6 +73,12 @@ public abstract class AbstractJPAQuery<Q extends AbstractJPAQuery<Q>> extends JP
     @Nullable
     protected FactoryExpression<?> projection;
 
+    @Nullable
+    protected EntityManager countEntityManager;
+
+    @Nullable
+    protected Executor countExecutor;
+
     public AbstractJPAQuery(EntityManager em) {
         this(em, JPAProvider.getTemplates(em), new DefaultQueryMetadata());
     }
@@ -254,21 +264,62 @@ public abstract class AbstractJPAQuery<Q extends AbstractJPAQuery<Q>> extends JP
     @Override
     public <RT> SearchResults<RT> listResults(Expression<RT> expr) {
         queryMixin.addProjection(expr);
-        Query countQuery = createQuery(null, true);
-        long total = (Long) countQuery.getSingleResult();
-        if (total > 0) {
+        ListenableFutureTask<Long> countTask = null;
+        Query countQuery = null;
+        if (countEntityManager != null) {
+            final Q clone = clone(countEntityManager);
+            countTask = ListenableFutureTask.create(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return clone.count();
+                }
+            });
+            countExecutor.execute(countTask);
+        } else {
+            countQuery = createQuery(null, true);
+        }
+        try {
             QueryModifiers modifiers = getMetadata().getModifiers();
             Query query = createQuery(modifiers, false);
             @SuppressWarnings("unchecked")
             List<RT> list = (List<RT>) getResultList(query);
+            long total;
+            if (SearchResultsUtils.isComplete(list, modifiers)) {
+                // the page contains all results
+                if (countTask != null) {
+                    countTask.cancel(true);
+                }
+                total = list.size();
+            } else if (countTask != null) {
+                total = SearchResultsUtils.getCount(countTask);
+            } else {
+                total = (Long) countQuery.getSingleResult();
+            }
+            if (total > 0) {
+                return new SearchResults<RT>(list, modifiers, total);
+            } else {
+                return SearchResults.emptyResults();
+            }
+        } finally {
             reset();
-            return new SearchResults<RT>(list, modifiers, total);
-        } else {
-            reset();
-            return SearchResults.emptyResults();
         }
     }
 
+    /**
+     * Set the EntityManager and the executor for the count query of listResults. With a count
+     * EntityManager the count and the page query are executed concurrently.
+     *
+     * @param entityManager EntityManager for the count query or null to count sequentially
+     * @param executor executor of the count query
+     */
+    public void setConcurrentCount(@Nullable EntityManager entityManager, @Nullable Executor executor) {
+        if (entityManager != null && executor == null) {
+            throw new IllegalArgumentException("executor is required for concurrent counts");
+        }
+        this.countEntityManager = entityManager;
+        this.countExecutor = executor;
+    }
+
     protected void logQuery(String queryString) {
         if (logger.isDebugEnabled()) {
             logger.debug(queryString.replace('\n', ' '));
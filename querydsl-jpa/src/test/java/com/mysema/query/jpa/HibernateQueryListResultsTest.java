@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.junit.Test;
+
+import com.mysema.query.SearchResults;
+import com.mysema.query.jpa.domain.QCat;
+import com.mysema.query.jpa.hibernate.HibernateQuery;
+
+public class HibernateQueryListResultsTest {
+
+    private static final String PAGE_QUERY = "select cat.name\nfrom Cat cat";
+
+    private static final String COUNT_QUERY = "select count(cat.name)\nfrom Cat cat";
+
+    private final QCat cat = new QCat("cat");
+
+    private static Query pageQuery(String... names) {
+        Query query = createNiceMock(Query.class);
+        expect(query.list()).andReturn(Arrays.asList(names));
+        replay(query);
+        return query;
+    }
+
+    @Test
+    public void Complete_Page_Skips_Count() {
+        // the count query is created, but not executed
+        Query countQuery = createMock(Query.class);
+        Session session = createNiceMock(Session.class);
+        expect(session.createQuery(PAGE_QUERY)).andReturn(pageQuery("Bob"));
+        expect(session.createQuery(COUNT_QUERY)).andReturn(countQuery);
+        replay(countQuery, session);
+
+        SearchResults<String> results = new HibernateQuery(session, JPQLTemplates.DEFAULT)
+            .from(cat).limit(2).listResults(cat.name);
+        assertEquals(Arrays.asList("Bob"), results.getResults());
+        assertEquals(1l, results.getTotal());
+        verify(countQuery, session);
+    }
+
+    @Test
+    public void Count() {
+        Query countQuery = createNiceMock(Query.class);
+        expect(countQuery.uniqueResult()).andReturn(5l);
+        Session session = createNiceMock(Session.class);
+        expect(session.createQuery(PAGE_QUERY)).andReturn(pageQuery("Bob", "Kate"));
+        expect(session.createQuery(COUNT_QUERY)).andReturn(countQuery);
+        replay(countQuery, session);
+
+        SearchResults<String> results = new HibernateQuery(session, JPQLTemplates.DEFAULT)
+            .from(cat).limit(2).listResults(cat.name);
+        assertEquals(Arrays.asList("Bob", "Kate"), results.getResults());
+        assertEquals(5l, results.getTotal());
+        verify(countQuery, session);
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.jpa;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+
+import org.junit.Test;
+
+import com.mysema.query.SearchResults;
+import com.mysema.query.jpa.domain.QCat;
+import com.mysema.query.jpa.impl.JPAQuery;
+
+public class JPAQueryListResultsTest {
+
+    private static final String PAGE_QUERY = "select cat.name\nfrom Cat cat";
+
+    private static final String COUNT_QUERY = "select count(cat.name)\nfrom Cat cat";
+
+    private final QCat cat = new QCat("cat");
+
+    private final List<Thread> threads = new ArrayList<Thread>();
+
+    private final Executor threadExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            Thread thread = new Thread(command);
+            threads.add(thread);
+            thread.start();
+        }
+    };
+
+    private static Query pageQuery(String... names) {
+        Query query = createNiceMock(Query.class);
+        expect(query.getResultList()).andReturn(Arrays.asList(names));
+        replay(query);
+        return query;
+    }
+
+    private static Query countQuery(long count) {
+        Query query = createNiceMock(Query.class);
+        expect(query.getSingleResult()).andReturn(count);
+        replay(query);
+        return query;
+    }
+
+    private static EntityManager countEntityManager() {
+        // the templates of the count query are detected from the EntityManager
+        EntityManagerFactory factory = createMock(EntityManagerFactory.class);
+        expect(factory.getProperties()).andReturn(Collections.<String, Object>emptyMap());
+        EntityManager em = createMock(EntityManager.class);
+        expect(em.getDelegate()).andReturn(em).anyTimes();
+        expect(em.getEntityManagerFactory()).andReturn(factory);
+        replay(factory);
+        return em;
+    }
+
+    @Test
+    public void Complete_Page_Skips_Count() {
+        // the count query is created, but not executed
+        Query countQuery = createMock(Query.class);
+        EntityManager em = createNiceMock(EntityManager.class);
+        expect(em.createQuery(PAGE_QUERY)).andReturn(pageQuery("Bob"));
+        expect(em.createQuery(COUNT_QUERY)).andReturn(countQuery);
+        replay(countQuery, em);
+
+        SearchResults<String> results = new JPAQuery(em, JPQLTemplates.DEFAULT)
+            .from(cat).limit(2).listResults(cat.name);
+        assertEquals(Arrays.asList("Bob"), results.getResults());
+        assertEquals(1l, results.getTotal());
+        verify(countQuery, em);
+    }
+
+    @Test
+    public void Sequential_Count() {
+        EntityManager em = createNiceMock(EntityManager.class);
+        expect(em.createQuery(PAGE_QUERY)).andReturn(pageQuery("Bob", "Kate"));
+        expect(em.createQuery(COUNT_QUERY)).andReturn(countQuery(5l));
+        replay(em);
+
+        SearchResults<String> results = new JPAQuery(em, JPQLTemplates.DEFAULT)
+            .from(cat).limit(2).listResults(cat.name);
+        assertEquals(Arrays.asList("Bob", "Kate"), results.getResults());
+        assertEquals(5l, results.getTotal());
+        verify(em);
+    }
+
+    @Test
+    public void Concurrent_Count() throws InterruptedException {
+        EntityManager em = createMock(EntityManager.class);
+        expect(em.createQuery(PAGE_QUERY)).andReturn(pageQuery("Bob", "Kate"));
+        EntityManager countEm = countEntityManager();
+        expect(countEm.createQuery(COUNT_QUERY)).andReturn(countQuery(5l));
+        replay(em, countEm);
+
+        JPAQuery query = new JPAQuery(em, JPQLTemplates.DEFAULT).from(cat).limit(2);
+        query.setConcurrentCount(countEm, threadExecutor);
+        SearchResults<String> results = query.listResults(cat.name);
+        assertEquals(Arrays.asList("Bob", "Kate"), results.getResults());
+        assertEquals(5l, results.getTotal());
+        // the count is executed in its own thread on the count EntityManager
+        assertEquals(1, threads.size());
+        threads.get(0).join();
+        verify(em, countEm);
+    }
+
+    @Test
+    public void Concurrent_Count_Cancelled_For_Complete_Page() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        EntityManager em = createMock(EntityManager.class);
+        expect(em.createQuery(PAGE_QUERY)).andReturn(pageQuery("Bob"));
+        EntityManager countEm = countEntityManager();
+        replay(em, countEm);
+
+        JPAQuery query = new JPAQuery(em, JPQLTemplates.DEFAULT).from(cat).limit(2);
+        query.setConcurrentCount(countEm, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+        SearchResults<String> results = query.listResults(cat.name);
+        assertEquals(1l, results.getTotal());
+        // the count was submitted before the page query, but isn't needed
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        verify(em, countEm);
+    }
+
+}
@@ -72,9 +72,9 @@ public class LuceneSerializer {
     private Query toQuery(Operation<?> operation, QueryMetadata metadata) {
         Operator<?> op = operation.getOperator();
         if (op == Ops.OR) {
-            return toTwoHandSidedQuery(operation, Occur.SHOULD, metadata);
+            return toBooleanQuery(operation.getArgs(), Occur.SHOULD, metadata);
         } else if (op == Ops.AND) {
-            return toTwoHandSidedQuery(operation, Occur.MUST, metadata);
+            return toBooleanQuery(operation.getArgs(), Occur.MUST, metadata);
         } else if (op == Ops.NOT) {
             BooleanQuery bq = new BooleanQuery();
             bq.add(new BooleanClause(toQuery(operation.getArg(0), metadata), Occur.MUST_NOT));
@@ -120,12 +120,21 @@ public class LuceneSerializer {
         throw new UnsupportedOperationException("Illegal operation " + operation);
     }
 
-    private Query toTwoHandSidedQuery(Operation<?> operation, Occur occur, QueryMetadata metadata) {
-        Query lhs = toQuery(operation.getArg(0), metadata);
-        Query rhs = toQuery(operation.getArg(1), metadata);
+    private Query toBooleanQuery(List<Expression<?>> args, Occur occur, QueryMetadata metadata) {
         BooleanQuery bq = new BooleanQuery();
-        bq.add(createBooleanClause(lhs, occur));
-        bq.add(createBooleanClause(rhs, occur));
+        int maxClauses = BooleanQuery.getMaxClauseCount();
+        if (args.size() > maxClauses) {
+            // large flat and / or operations are nested to stay within the clause limit
+            int size = (args.size() + maxClauses - 1) / maxClauses;
+            for (int i = 0; i < args.size(); i += size) {
+                List<Expression<?>> part = args.subList(i, Math.min(i + size, args.size()));
+                bq.add(new BooleanClause(toBooleanQuery(part, occur, metadata), occur));
+            }
+        } else {
+            for (Expression<?> arg : args) {
+                bq.add(createBooleanClause(toQuery(arg, metadata), occur));
+            }
+        }
         return bq;
     }
 
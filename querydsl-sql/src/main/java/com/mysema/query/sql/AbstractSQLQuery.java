@@ -20,11 +20,23 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.commons.lang.EmptyCloseableIterator;
 import com.mysema.query.*;
+import com.mysema.query.sql.types.Type;
+import com.mysema.query.support.PredicateSimplifier;
 import com.mysema.query.support.QueryMixin;
 import com.mysema.query.types.*;
 import com.mysema.util.ResultSetAdapter;
@@ -51,6 +63,20 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
 
     protected boolean useLiterals;
 
+    protected boolean streaming;
+
+    protected int fetchSize;
+
+    protected long queryTimeout;
+
+    @Nullable
+    protected Connection countConnection;
+
+    @Nullable
+    protected Executor countExecutor;
+
+    protected boolean cacheable;
+
     private boolean getLastCell;
 
     private Object lastCell;
@@ -64,6 +90,7 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
         this.conn = conn;
         this.listeners = new SQLListeners(configuration.getListeners());
         this.useLiterals = configuration.getUseLiterals();
+        this.queryTimeout = configuration.getQueryTimeout();
     }
 
     /**
@@ -75,6 +102,22 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
 
     @Override
     public long count() {
+        if (isCached()) {
+            return cached("count", null, new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return uncachedCount();
+                }
+            });
+        } else {
+            return uncachedCount();
+        }
+    }
+
+    private long uncachedCount() {
+        if (isProvablyEmpty(false)) {
+            return 0;
+        }
         try {
             return unsafeCount();
         } catch (SQLException e) {
@@ -97,14 +140,70 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
     }
 
     protected SQLSerializer createSerializer() {
-        SQLSerializer serializer = new SQLSerializer(configuration);
+        SQLSerializerPool pool = configuration.getSerializerPool();
+        SQLSerializer serializer = pool != null ? pool.acquire(false) : new SQLSerializer(configuration);
         serializer.setUseLiterals(useLiterals);
         return serializer;
     }
 
-    @Nullable
-    private <T> T get(ResultSet rs, Expression<?> expr, int i, Class<T> type) throws SQLException {
-        return configuration.get(rs, expr instanceof Path ? (Path<?>)expr : null, i, type);
+    private SQLPlan release(SQLPlan plan, SQLSerializer... serializers) {
+        SQLSerializerPool pool = configuration.getSerializerPool();
+        if (pool != null) {
+            for (SQLSerializer serializer : serializers) {
+                pool.release(serializer);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Get the rendered form of the query, using the plan cache of the configuration if
+     * one is set
+     *
+     * @param forCountRow
+     * @return
+     */
+    protected SQLPlan plan(boolean forCountRow) {
+        SQLPlanCache cache = configuration.getPlanCache();
+        if (cache == null || useLiterals) {
+            SQLSerializer serializer = serialize(forCountRow);
+            return release(new SQLPlan(serializer), serializer);
+        }
+        QueryShape shape = QueryShape.of(getClass(), queryMixin.getMetadata(), union, unionAll, forCountRow);
+        Optional<SQLPlan> cached = cache.get(shape.getKey());
+        if (cached != null) {
+            if (cached.isPresent()) {
+                return cached.get().bind(shape.getConstants());
+            } else {
+                SQLSerializer serializer = serialize(forCountRow);
+                return release(new SQLPlan(serializer), serializer);
+            }
+        }
+        SQLSerializer serializer = serialize(forCountRow);
+        SQLPlan template;
+        try {
+            SQLSerializer probe = serialize(shape.getMetadata(), shape.getUnion(), forCountRow);
+            template = SQLPlan.createTemplate(serializer, probe);
+            release(template, probe);
+        } catch (RuntimeException e) {
+            // rendering depends on the constant values
+            logger.debug("Unable to cache " + serializer, e);
+            template = null;
+        }
+        cache.put(shape.getKey(), template);
+        return release(new SQLPlan(serializer), serializer);
+    }
+
+    private Type<?> getType(Expression<?> expr) {
+        return configuration.getType(expr instanceof Path ? (Path<?>)expr : null, expr.getType());
+    }
+
+    private Type<?>[] getTypes(List<Expression<?>> exprs) {
+        Type<?>[] types = new Type<?>[exprs.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = getType(exprs.get(i));
+        }
+        return types;
     }
 
     private void set(PreparedStatement stmt, Path<?> path, int i, Object value) throws SQLException{
@@ -119,7 +218,7 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
      * @return the newly started context
      */
     protected SQLListenerContextImpl startContext(Connection connection, QueryMetadata metadata) {
-        SQLListenerContextImpl context = new SQLListenerContextImpl(metadata, connection);
+        SQLListenerContextImpl context = listeners.createContext(metadata, connection, null);
         listeners.start(context);
         return context;
     }
@@ -158,8 +257,8 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
         SQLListenerContextImpl context = startContext(conn, queryMixin.getMetadata());
 
         listeners.preRender(context);
-        SQLSerializer serializer = serialize(false);
-        String queryString = serializer.toString();
+        SQLPlan plan = plan(false);
+        String queryString = plan.getSQL();
         if (logger.isDebugEnabled()) {
             logger.debug("query : {}", queryString);
         }
@@ -168,11 +267,11 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
 
         listeners.notifyQuery(queryMixin.getMetadata());
 
-        List<Object> constants = serializer.getConstants();
+        List<Object> constants = plan.getConstants();
         try {
             listeners.prePrepare(context);
-            final PreparedStatement stmt = conn.prepareStatement(queryString);
-            setParameters(stmt, constants, serializer.getConstantPaths(), getMetadata().getParams());
+            final PreparedStatement stmt = prepareStatement(queryString, false);
+            setParameters(stmt, constants, plan.getConstantPaths(), getMetadata().getParams());
             context.addPreparedStatement(stmt);
             listeners.prepared(context);
 
@@ -203,6 +302,32 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
         return configuration;
     }
 
+    @Override
+    public void forEachRow(RowCallback callback, Expression<?>... args) {
+        List<Expression<?>> columns = new ArrayList<Expression<?>>(args.length);
+        for (Expression<?> arg : args) {
+            if (arg instanceof FactoryExpression) {
+                columns.addAll(((FactoryExpression<?>)arg).getArgs());
+            } else {
+                columns.add(arg);
+            }
+        }
+        Type<?>[] types = getTypes(columns);
+        ResultSet rs = getResults(args);
+        try {
+            try {
+                ResultSetRow row = new ResultSetRow(configuration, rs, types);
+                while (row.next()) {
+                    callback.handle(row);
+                }
+            } finally {
+                rs.close();
+            }
+        } catch (SQLException e) {
+            throw configuration.translate(e);
+        }
+    }
+
     @Override
     public <RT> CloseableIterator<RT> iterate(Expression<RT> expr) {
         expr = queryMixin.addProjection(expr);
@@ -211,11 +336,16 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
 
     @SuppressWarnings("unchecked")
     private <RT> CloseableIterator<RT> iterateSingle(QueryMetadata metadata, @Nullable final Expression<RT> expr) {
+        if (isProvablyEmpty(true)) {
+            reset();
+            return new EmptyCloseableIterator<RT>();
+        }
         SQLListenerContextImpl context = startContext(conn, queryMixin.getMetadata());
+        long start = System.currentTimeMillis();
 
         listeners.preRender(context);
-        SQLSerializer serializer = serialize(false);
-        final String queryString = serializer.toString();
+        SQLPlan plan = plan(false);
+        final String queryString = plan.getSQL();
         if (logger.isDebugEnabled()) {
             logger.debug("query : {}", queryString);
         }
@@ -224,11 +354,16 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
 
 
         listeners.notifyQuery(queryMixin.getMetadata());
-        List<Object> constants = serializer.getConstants();
+        List<Object> constants = plan.getConstants();
+        boolean endStreaming = false;
+        CloseableIterator<RT> rv = null;
         try {
+            if (streaming) {
+                endStreaming = configuration.getTemplates().beginStreaming(conn);
+            }
             listeners.prePrepare(context);
-            final PreparedStatement stmt = conn.prepareStatement(queryString);
-            setParameters(stmt, constants, serializer.getConstantPaths(), metadata.getParams());
+            final PreparedStatement stmt = prepareStatement(queryString, streaming);
+            setParameters(stmt, constants, plan.getConstantPaths(), metadata.getParams());
             context.addPreparedStatement(stmt);
             listeners.prepared(context);
 
@@ -236,25 +371,29 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
             final ResultSet rs = stmt.executeQuery();
             listeners.executed(context);
 
+            SQLResultIterator<RT> iterator;
             if (expr == null) {
-                return new SQLResultIterator<RT>(configuration, stmt, rs) {
+                iterator = new SQLResultIterator<RT>(configuration, stmt, rs) {
                     @Override
                     public RT produceNext(ResultSet rs) throws Exception {
                         return (RT) rs.getObject(1);
                     }
                 };
             } else if (expr instanceof FactoryExpression) {
-                return new SQLResultIterator<RT>(configuration, stmt, rs) {
+                final FactoryExpression<RT> fe = (FactoryExpression<RT>) expr;
+                final Type<?>[] types = getTypes(fe.getArgs());
+                iterator = new SQLResultIterator<RT>(configuration, stmt, rs) {
                     @Override
                     public RT produceNext(ResultSet rs) throws Exception {
-                        return newInstance((FactoryExpression<RT>) expr, rs, 0);
+                        return newInstance(fe, types, rs, 0);
                     }
                 };
             } else if (expr.getType().isArray()) {
-                return new SQLResultIterator<RT>(configuration, stmt, rs) {
+                final int columns = rs.getMetaData().getColumnCount();
+                iterator = new SQLResultIterator<RT>(configuration, stmt, rs) {
                     @Override
                     public RT produceNext(ResultSet rs) throws Exception {
-                        Object[] rv = new Object[rs.getMetaData().getColumnCount()];
+                        Object[] rv = new Object[columns];
                         for (int i = 0; i < rv.length; i++) {
                             rv[i] = rs.getObject(i+1);
                         }
@@ -262,32 +401,67 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
                     }
                 };
             } else {
-                return new SQLResultIterator<RT>(configuration, stmt, rs) {
+                final Type<?> type = getType(expr);
+                iterator = new SQLResultIterator<RT>(configuration, stmt, rs) {
                     @Override
                     public RT produceNext(ResultSet rs) throws Exception {
-                        return get(rs, expr, 1, expr.getType());
+                        return (RT) type.getValue(rs, 1);
                     }
                 };
             }
+            if (queryTimeout > 0) {
+                // the deadline applies also to fetching the rows
+                iterator.setWatchdog(SQLWatchdog.schedule(stmt,
+                        queryTimeout - (System.currentTimeMillis() - start)));
+            }
+            iterator.setCancelOnClose(streaming || fetchSize > 0);
+            rv = endStreaming ? new StreamingIterator<RT>(iterator) : iterator;
+            return rv;
 
         } catch (SQLException e) {
             onException(context, e);
             throw configuration.translate(queryString, constants, e);
         } finally {
+            if (endStreaming && rv == null) {
+                // failed before the iterator which restores the connection was created
+                try {
+                    configuration.getTemplates().endStreaming(conn);
+                } catch (SQLException e2) {
+                    logger.error("Caught " + e2.getClass().getName(), e2);
+                }
+            }
             endContext(context);
             reset();
         }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public <RT> List<RT> list(Expression<RT> expr) {
+    public <RT> List<RT> list(final Expression<RT> expr) {
+        if (isCached()) {
+            List<RT> results = cached("list", expr, new Callable<List<RT>>() {
+                @Override
+                public List<RT> call() {
+                    return Collections.unmodifiableList(uncachedList(expr));
+                }
+            });
+            return new ArrayList<RT>(results);
+        } else {
+            return uncachedList(expr);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <RT> List<RT> uncachedList(Expression<RT> expr) {
         expr = queryMixin.addProjection(expr);
+        if (isProvablyEmpty(true)) {
+            reset();
+            return new ArrayList<RT>();
+        }
         SQLListenerContextImpl context = startContext(conn, queryMixin.getMetadata());
 
         listeners.preRender(context);
-        SQLSerializer serializer = serialize(false);
-        final String queryString = serializer.toString();
+        SQLPlan plan = plan(false);
+        final String queryString = plan.getSQL();
         if (logger.isDebugEnabled()) {
             logger.debug("query : {}", queryString);
         }
@@ -295,12 +469,12 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
         listeners.rendered(context);
 
         listeners.notifyQuery(queryMixin.getMetadata());
-        List<Object> constants = serializer.getConstants();
+        List<Object> constants = plan.getConstants();
         try {
             listeners.prePrepare(context);
-            final PreparedStatement stmt = conn.prepareStatement(queryString);
+            final PreparedStatement stmt = prepareStatement(queryString, false);
             try {
-                setParameters(stmt, constants, serializer.getConstantPaths(), queryMixin.getMetadata().getParams());
+                setParameters(stmt, constants, plan.getConstantPaths(), queryMixin.getMetadata().getParams());
                 context.addPreparedStatement(stmt);
                 listeners.prepared(context);
 
@@ -312,16 +486,18 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
                     final List<RT> rv = new ArrayList<RT>();
                     if (expr instanceof FactoryExpression) {
                         FactoryExpression<RT> fe = (FactoryExpression<RT>)expr;
+                        Type<?>[] types = getTypes(fe.getArgs());
                         while (rs.next()) {
                             if (getLastCell) {
                                 lastCell = rs.getObject(fe.getArgs().size() + 1);
                                 getLastCell = false;
                             }
-                            rv.add(newInstance(fe, rs, 0));
+                            rv.add(newInstance(fe, types, rs, 0));
                         }
                     }  else if (expr.getType().isArray()) {
+                        int columns = rs.getMetaData().getColumnCount();
                         while (rs.next()) {
-                            Object[] row = new Object[rs.getMetaData().getColumnCount()];
+                            Object[] row = new Object[columns];
                             if (getLastCell) {
                                 lastCell = rs.getObject(row.length);
                                 getLastCell = false;
@@ -332,14 +508,16 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
                             rv.add((RT)row);
                         }
                     } else {
+                        Type<?> type = getType(expr);
                         while (rs.next()) {
                             if (getLastCell) {
                                 lastCell = rs.getObject(2);
                                 getLastCell = false;
                             }
-                            rv.add(get(rs, expr, 1, expr.getType()));
+                            rv.add((RT) type.getValue(rs, 1));
                         }
                     }
+                    context.setData(SQLListenerContext.ROW_COUNT, rv.size());
                     return rv;
                 } catch (IllegalAccessException e) {
                     onException(context, e);
@@ -368,37 +546,60 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
         }
     }
 
+    @SuppressWarnings("unchecked")
     @Override
-    public <RT> SearchResults<RT> listResults(Expression<RT> expr) {
-        QueryModifiers originalModifiers = queryMixin.getMetadata().getModifiers();
+    public <RT> SearchResults<RT> listResults(final Expression<RT> expr) {
+        final QueryModifiers originalModifiers = queryMixin.getMetadata().getModifiers();
         try {
-            if (configuration.getTemplates().isCountViaAnalytics()) {
-                List<RT> results;
-                try {
-                    queryMixin.addFlag(rowCountFlag);
-                    getLastCell = true;
-                    results = list(expr);
-                } finally {
-                    queryMixin.removeFlag(rowCountFlag);
+            if (configuration.getTemplates().isCountViaAnalytics() && isCached()) {
+                // the total is read from the rows, so it is cached together with them
+                SearchResults<RT> results = cached("listResults", expr, new Callable<SearchResults<RT>>() {
+                    @Override
+                    public SearchResults<RT> call() {
+                        SearchResults<RT> rv = listResultsViaAnalytics(expr, originalModifiers);
+                        return new SearchResults<RT>(Collections.unmodifiableList(rv.getResults()),
+                                originalModifiers, rv.getTotal());
+                    }
+                });
+                return new SearchResults<RT>(new ArrayList<RT>(results.getResults()), originalModifiers,
+                        results.getTotal());
+
+            } else if (configuration.getTemplates().isCountViaAnalytics()) {
+                return listResultsViaAnalytics(expr, originalModifiers);
+
+            } else {
+                ListenableFuture<Long> count = null;
+                if (countConnection != null) {
+                    queryMixin.addProjection(expr);
+                    final Q countQuery = clone(countConnection);
+                    count = SQLAsyncTask.submit(countExecutor, countQuery.listeners, new Callable<Long>() {
+                        @Override
+                        public Long call() {
+                            return countQuery.count();
+                        }
+                    });
+                    queryMixin.getMetadata().clearProjection();
                 }
+                Map<ParamExpression<?>, Object> params = getMetadata().getParams();
+                List<RT> results = list(expr);
                 long total;
-                if (!results.isEmpty()) {
-                    if (lastCell instanceof Number) {
-                        total = ((Number)lastCell).longValue();
-                    } else {
-                        throw new IllegalStateException("Unsupported lastCell instance " + lastCell);
+                if (SearchResultsUtils.isComplete(results, originalModifiers)) {
+                    if (count != null) {
+                        count.cancel(true);
                     }
+                    total = results.size();
+                } else if (count != null) {
+                    total = SearchResultsUtils.getCount(count);
                 } else {
+                    // list resets the projection and the params
+                    queryMixin.addProjection(expr);
+                    for (Map.Entry<ParamExpression<?>, Object> entry : params.entrySet()) {
+                        getMetadata().setParam((ParamExpression)entry.getKey(), entry.getValue());
+                    }
                     total = count();
                 }
-                return new SearchResults<RT>(results, originalModifiers, total);
-
-            } else {
-                queryMixin.addProjection(expr);
-                long total = count();
                 if (total > 0) {
-                    queryMixin.getMetadata().clearProjection();
-                    return new SearchResults<RT>(list(expr), originalModifiers, total);
+                    return new SearchResults<RT>(results, originalModifiers, total);
                 } else {
                     return SearchResults.emptyResults();
                 }
@@ -410,11 +611,76 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
         }
     }
 
-    private <RT> RT newInstance(FactoryExpression<RT> c, ResultSet rs, int offset)
+    private <RT> SearchResults<RT> listResultsViaAnalytics(Expression<RT> expr, QueryModifiers modifiers) {
+        List<RT> results;
+        try {
+            queryMixin.addFlag(rowCountFlag);
+            getLastCell = true;
+            results = uncachedList(expr);
+        } finally {
+            queryMixin.removeFlag(rowCountFlag);
+        }
+        long total;
+        if (!results.isEmpty()) {
+            if (lastCell instanceof Number) {
+                total = ((Number)lastCell).longValue();
+            } else {
+                throw new IllegalStateException("Unsupported lastCell instance " + lastCell);
+            }
+        } else if (SearchResultsUtils.isComplete(results, modifiers)) {
+            total = 0;
+        } else {
+            total = count();
+        }
+        return new SearchResults<RT>(results, modifiers, total);
+    }
+
+    private boolean isCached() {
+        return cacheable && configuration.getResultCache() != null;
+    }
+
+    /**
+     * Get the result from the result cache or load it
+     *
+     * @param kind kind of the execution
+     * @param expr projection or null for counts
+     * @param loader loader of the result
+     * @return result
+     */
+    @Nullable
+    private <T> T cached(String kind, @Nullable Expression<?> expr, Callable<T> loader) {
+        QueryMetadata metadata = queryMixin.getMetadata();
+        if (expr != null) {
+            queryMixin.addProjection(expr);
+        }
+        SQLPlan plan = plan(expr == null);
+        Object key = Arrays.asList(kind, plan.getSQL(), plan.getConstants(), metadata.getParams(),
+                metadata.getProjection());
+        Set<SchemaAndTable> tables = new HashSet<SchemaAndTable>();
+        for (RelationalPath<?> path : RelationalPathExtractor.extract(metadata)) {
+            tables.add(path.getSchemaAndTable());
+        }
+        if (union != null) {
+            for (RelationalPath<?> path : RelationalPathExtractor.extract(union)) {
+                tables.add(path.getSchemaAndTable());
+            }
+        }
+        if (expr != null) {
+            metadata.clearProjection();
+        }
+        T result = configuration.getResultCache().get(key, tables, loader);
+        if (expr != null) {
+            // as after an uncached execution
+            reset();
+        }
+        return result;
+    }
+
+    private <RT> RT newInstance(FactoryExpression<RT> c, Type<?>[] types, ResultSet rs, int offset)
         throws InstantiationException, IllegalAccessException, InvocationTargetException, SQLException{
-        Object[] args = new Object[c.getArgs().size()];
+        Object[] args = new Object[types.length];
         for (int i = 0; i < args.length; i++) {
-            args[i] = get(rs, c.getArgs().get(i), offset + i + 1, c.getArgs().get(i).getType());
+            args[i] = types[i].getValue(rs, offset + i + 1);
         }
         return c.newInstance(args);
     }
@@ -423,6 +689,105 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
         queryMixin.getMetadata().reset();
     }
 
+    /**
+     * Get whether the filters of the query can't be satisfied, so that it doesn't need to be
+     * executed
+     *
+     * @param rows true, if rows are fetched, false for the count
+     * @return
+     */
+    private boolean isProvablyEmpty(boolean rows) {
+        if (!configuration.getSimplifyPredicates() || union != null) {
+            return false;
+        }
+        QueryMetadata metadata = queryMixin.getMetadata();
+        if (metadata.getHaving() != null
+            && PredicateSimplifier.isFalse(PredicateSimplifier.simplify(metadata.getHaving()))) {
+            return true;
+        } else if (metadata.getWhere() == null
+            || !PredicateSimplifier.isFalse(PredicateSimplifier.simplify(metadata.getWhere()))) {
+            return false;
+        } else if (!rows || !metadata.getGroupBy().isEmpty()) {
+            return true;
+        } else {
+            // aggregates without grouping return a row also for no matches
+            return !mayAggregate(metadata.getProjection());
+        }
+    }
+
+    private static boolean mayAggregate(List<? extends Expression<?>> projection) {
+        for (Expression<?> expr : projection) {
+            if (expr instanceof FactoryExpression) {
+                if (mayAggregate(((FactoryExpression<?>)expr).getArgs())) {
+                    return true;
+                }
+            } else if (!(expr instanceof Path) && !(expr instanceof Constant)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private PreparedStatement prepareStatement(String queryString, boolean stream) throws SQLException {
+        PreparedStatement stmt;
+        if (stream) {
+            stmt = configuration.getTemplates().prepareStreaming(conn, queryString, fetchSize);
+        } else {
+            stmt = conn.prepareStatement(queryString);
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+        }
+        SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
+        return stmt;
+    }
+
+    /**
+     * Restores the connection state after the streamed results have been closed
+     */
+    private final class StreamingIterator<RT> implements CloseableIterator<RT> {
+
+        private final CloseableIterator<RT> iterator;
+
+        private boolean closed;
+
+        StreamingIterator(CloseableIterator<RT> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public RT next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            iterator.remove();
+        }
+
+        @Override
+        public void close() {
+            try {
+                iterator.close();
+            } finally {
+                if (!closed) {
+                    closed = true;
+                    try {
+                        configuration.getTemplates().endStreaming(conn);
+                    } catch (SQLException e) {
+                        throw configuration.translate(e);
+                    }
+                }
+            }
+        }
+
+    }
+
     protected void setParameters(PreparedStatement stmt, List<?> objects, List<Path<?>> constantPaths,
             Map<ParamExpression<?>, ?> params) {
         if (objects.size() != constantPaths.size()) {
@@ -446,11 +811,19 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
     }
 
     @Override
-    public <RT> RT uniqueResult(Expression<RT> expr) {
+    public <RT> RT uniqueResult(final Expression<RT> expr) {
         if (getMetadata().getModifiers().getLimit() == null
            && !expr.toString().contains("count(")) {
             limit(2);
         }
+        if (isCached()) {
+            return cached("uniqueResult", expr, new Callable<RT>() {
+                @Override
+                public RT call() {
+                    return uniqueResult(iterate(expr));
+                }
+            });
+        }
         CloseableIterator<RT> iterator = iterate(expr);
         return uniqueResult(iterator);
     }
@@ -459,22 +832,23 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
         SQLListenerContextImpl context = startContext(conn, getMetadata());
 
         listeners.preRender(context);
-        SQLSerializer serializer = serialize(true);
-        final String queryString = serializer.toString();
+        SQLPlan plan = plan(true);
+        final String queryString = plan.getSQL();
         if (logger.isDebugEnabled()) {
             logger.debug("query : {}", queryString);
         }
         context.addSQL(queryString);
         listeners.rendered(context);
 
-        List<Object> constants = serializer.getConstants();
+        List<Object> constants = plan.getConstants();
         PreparedStatement stmt = null;
         ResultSet rs = null;
         try {
             listeners.prePrepare(context);
 
             stmt = conn.prepareStatement(queryString);
-            setParameters(stmt, constants, serializer.getConstantPaths(), getMetadata().getParams());
+            SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
+            setParameters(stmt, constants, plan.getConstantPaths(), getMetadata().getParams());
 
             context.addPreparedStatement(stmt);
             listeners.prepared(context);
@@ -505,11 +879,72 @@ public abstract class AbstractSQLQuery<Q extends AbstractSQLQuery<Q>> extends Pr
     public void setUseLiterals(boolean useLiterals) {
         this.useLiterals = useLiterals;
     }
+
+    /**
+     * Set whether the results of iterate should be streamed from the database with constant
+     * memory usage. The dialect specific settings are applied via
+     * {@link SQLTemplates#prepareStreaming(Connection, String, int)}
+     *
+     * @param streaming
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * Set the query timeout of this query, defaults to the query timeout of the configuration.
+     * Iterated results are cancelled when the timeout has passed since the start of the query.
+     *
+     * @param duration timeout, zero for none
+     * @param unit unit of the timeout
+     */
+    public void setQueryTimeout(long duration, TimeUnit unit) {
+        this.queryTimeout = unit.toMillis(duration);
+    }
+
+    /**
+     * Set the fetch size hint for the statements of this query, zero uses the driver default
+     *
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Set whether the results of this query are taken from the result cache of the
+     * configuration, see {@link SQLResultCache}
+     *
+     * @param cacheable
+     */
+    public void setCacheable(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Set the connection and the executor for the count query of listResults. With a count
+     * connection the count query is submitted to the executor before the page query is
+     * executed, so the executor needs to run its tasks in other threads.
+     *
+     * @param countConnection connection for the count query or null to count sequentially
+     * @param executor executor of the count query
+     */
+    public void setConcurrentCount(@Nullable Connection countConnection, @Nullable Executor executor) {
+        if (countConnection != null && executor == null) {
+            throw new IllegalArgumentException("executor is required for concurrent counts");
+        }
+        this.countConnection = countConnection;
+        this.countExecutor = executor;
+    }
     
     @Override
     protected void clone(Q query) {
         super.clone(query);
         this.useLiterals = query.useLiterals;
+        this.streaming = query.streaming;
+        this.fetchSize = query.fetchSize;
+        this.queryTimeout = query.queryTimeout;
+        this.cacheable = query.cacheable;
         this.listeners = new SQLListeners(query.listeners);
     }
     
@@ -14,10 +14,17 @@
 package com.mysema.query.sql;
 
 import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
+import javax.annotation.Nullable;
 import javax.inject.Provider;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.infradna.tool.bridge_method_injector.WithBridgeMethods;
+import com.mysema.query.sql.dml.AbstractSQLClause;
 import com.mysema.query.sql.dml.SQLDeleteClause;
 import com.mysema.query.sql.dml.SQLInsertClause;
 import com.mysema.query.sql.dml.SQLMergeClause;
@@ -39,9 +46,18 @@ public abstract class AbstractSQLQueryFactory<Q extends SQLCommonQuery<Q>, SQ ex
 
     protected final Provider<Connection> connection;
 
+    @Nullable
+    private final SQLStatementCache statementCache;
+
     public AbstractSQLQueryFactory(Configuration configuration, Provider<Connection> connection) {
+        this(configuration, connection, null);
+    }
+
+    public AbstractSQLQueryFactory(Configuration configuration, Provider<Connection> connection,
+            @Nullable SQLStatementCache statementCache) {
         this.configuration = configuration;
-        this.connection = connection;
+        this.connection = statementCache != null ? statementCache.wrap(connection) : connection;
+        this.statementCache = statementCache;
     }
 
     @Override
@@ -62,6 +78,121 @@ public abstract class AbstractSQLQueryFactory<Q extends SQLCommonQuery<Q>, SQ ex
         return (Q) query().from(subQuery, alias);
     }
 
+    /**
+     * Create a partitioned scan of the given query, the partitions are read on separate
+     * connections of this factory
+     *
+     * <p>The connection provider is invoked in the thread of each partition and the connections
+     * are not closed by the scan, so the provider needs to supply a connection per thread.</p>
+     *
+     * @param query query to partition
+     * @param key numeric or date partition key
+     * @param executor executor of the partition queries
+     * @return partitioned scan
+     */
+    public final <K extends Comparable<?>> SQLPartitionedScan<K> partitionedScan(AbstractSQLQuery<?> query,
+            Expression<K> key, Executor executor) {
+        return new SQLPartitionedScan<K>(connection, executor, query, key);
+    }
+
+    /**
+     * Get the projection of the given query as a typed List asynchronously via the executor of
+     * the configuration
+     *
+     * <p>The query is executed on a connection taken from this factory in the executing thread.
+     * The default executor of the configuration runs the query in the calling thread.</p>
+     *
+     * @param query query to execute
+     * @param expr projection
+     * @return future of the results
+     */
+    public final <RT> ListenableFuture<List<RT>> listAsync(AbstractSQLQuery<?> query,
+            final Expression<RT> expr) {
+        final AbstractSQLQuery<?> copy = query.clone((Connection) null);
+        return submit(copy.listeners, new Callable<List<RT>>() {
+            @Override
+            public List<RT> call() {
+                return copy.clone(connection.get()).list(expr);
+            }
+        });
+    }
+
+    /**
+     * Get the projection of the given query as a unique result asynchronously via the executor
+     * of the configuration
+     *
+     * <p>The query is executed on a connection taken from this factory in the executing thread.
+     * The default executor of the configuration runs the query in the calling thread.</p>
+     *
+     * @param query query to execute
+     * @param expr projection
+     * @return future of the result
+     */
+    public final <RT> ListenableFuture<RT> uniqueResultAsync(AbstractSQLQuery<?> query,
+            final Expression<RT> expr) {
+        final AbstractSQLQuery<?> copy = query.clone((Connection) null);
+        return submit(copy.listeners, new Callable<RT>() {
+            @Override
+            public RT call() {
+                return copy.clone(connection.get()).uniqueResult(expr);
+            }
+        });
+    }
+
+    /**
+     * Get the count of matched elements of the given query asynchronously via the executor of
+     * the configuration
+     *
+     * <p>The query is executed on a connection taken from this factory in the executing thread.
+     * The default executor of the configuration runs the query in the calling thread.</p>
+     *
+     * @param query query to execute
+     * @return future of the row count
+     */
+    public final ListenableFuture<Long> countAsync(AbstractSQLQuery<?> query) {
+        final AbstractSQLQuery<?> copy = query.clone((Connection) null);
+        return submit(copy.listeners, new Callable<Long>() {
+            @Override
+            public Long call() {
+                return copy.clone(connection.get()).count();
+            }
+        });
+    }
+
+    /**
+     * Execute the given clause asynchronously via the executor of the configuration
+     *
+     * <p>The clause is executed on a connection taken from this factory in the executing thread
+     * and stays bound to it. The default executor of the configuration runs the clause in the
+     * calling thread.</p>
+     *
+     * @param clause clause to execute
+     * @return future of the amount of affected rows
+     */
+    public final ListenableFuture<Long> executeAsync(final AbstractSQLClause<?> clause) {
+        final SQLListeners listeners = new SQLListeners();
+        clause.addListener(listeners);
+        ListenableFuture<Long> future = submit(listeners, new Callable<Long>() {
+            @Override
+            public Long call() {
+                clause.setConnection(connection.get());
+                return clause.execute();
+            }
+        });
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                clause.removeListener(listeners);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    private <T> ListenableFuture<T> submit(SQLListeners listeners, Callable<T> work) {
+        // the listeners of clones delegate to the listeners of the copied query
+        return SQLAsyncTask.submit(configuration.getExecutor(), listeners, work);
+    }
+
     @Override
     public final SQLInsertClause insert(RelationalPath<?> path) {
         return new SQLInsertClause(connection.get(), configuration, path);
@@ -98,4 +229,12 @@ public abstract class AbstractSQLQueryFactory<Q extends SQLCommonQuery<Q>, SQ ex
         return connection.get();
     }
 
+    /**
+     * @return the statement cache or null, if statements are not cached
+     */
+    @Nullable
+    public final SQLStatementCache getStatementCache() {
+        return statementCache;
+    }
+
 }
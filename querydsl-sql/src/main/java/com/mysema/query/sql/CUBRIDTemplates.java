@@ -52,6 +52,7 @@ public class CUBRIDTemplates extends SQLTemplates {
         super("\"", escape, quote);
         setDummyTable(null);
         setParameterMetadataAvailable(false);
+        setMultiRowInsert(true);
         setNullsFirst(null);
         setNullsLast(null);
         setDefaultValues("\ndefault values");
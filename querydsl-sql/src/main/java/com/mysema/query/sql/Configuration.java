@@ -22,9 +22,12 @@ import java.sql.Types;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.mysema.query.sql.types.ArrayType;
 import com.mysema.query.sql.types.Null;
 import com.mysema.query.sql.types.Type;
@@ -70,6 +73,25 @@ public final class Configuration {
 
     private boolean useLiterals = false;
 
+    private boolean useArrayParameters = false;
+
+    private boolean inListPadding = false;
+
+    private boolean simplifyPredicates = false;
+
+    @Nullable
+    private SQLPlanCache planCache;
+
+    @Nullable
+    private SQLSerializerPool serializerPool;
+
+    @Nullable
+    private SQLResultCache resultCache;
+
+    private Executor executor = MoreExecutors.directExecutor();
+
+    private long queryTimeout;
+
     /**
      * Create a new Configuration instance
      *
@@ -287,8 +309,17 @@ public final class Configuration {
         }
     }
 
+    /**
+     * Get the type to be used for the given path and class. Resolving the types once per query
+     * avoids the lookups of {@link #get(ResultSet, Path, int, Class)} for each cell.
+     *
+     * @param <T>
+     * @param path
+     * @param clazz
+     * @return
+     */
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    private <T> Type<T> getType(@Nullable Path<?> path, Class<T> clazz) {
+    public <T> Type<T> getType(@Nullable Path<?> path, Class<T> clazz) {
         if (hasTableColumnTypes && path != null && !clazz.equals(Null.class)
                 && path.getMetadata().getParent() instanceof RelationalPath) {
             String table = ((RelationalPath)path.getMetadata().getParent()).getTableName();
@@ -336,6 +367,7 @@ public final class Configuration {
      * @return
      */
     public String registerSchemaOverride(String oldSchema, String newSchema) {
+        invalidatePlans();
         return schemas.put(oldSchema, newSchema);
     }
 
@@ -347,6 +379,7 @@ public final class Configuration {
      * @return
      */
     public String registerTableOverride(String oldTable, String newTable) {
+        invalidatePlans();
         return tables.put(oldTable, newTable);
     }
 
@@ -384,6 +417,7 @@ public final class Configuration {
      * @return
      */
     public SchemaAndTable registerTableOverride(SchemaAndTable from, SchemaAndTable to) {
+        invalidatePlans();
         return schemaTables.put(from, to);
     }
 
@@ -397,6 +431,7 @@ public final class Configuration {
      * @return
      */
     public String registerColumnOverride(String schema, String table, String oldColumn, String newColumn) {
+        invalidatePlans();
         SchemaAndTable key = new SchemaAndTable(schema, table);
         Map<String, String> columnOverrides = schemaTableColumns.get(key);
         if (columnOverrides == null) {
@@ -415,6 +450,7 @@ public final class Configuration {
      * @return
      */
     public String registerColumnOverride(String table, String oldColumn, String newColumn) {
+        invalidatePlans();
         Map<String, String> columnOverrides = tableColumns.get(table);
         if (columnOverrides == null) {
             columnOverrides = new HashMap<String, String>();
@@ -429,6 +465,7 @@ public final class Configuration {
      * @param type
      */
     public void register(Type<?> type) {
+        invalidatePlans();
         jdbcTypeMapping.register(type.getSQLTypes()[0], type.getReturnedClass());
         javaTypeMapping.register(type);
     }
@@ -522,6 +559,13 @@ public final class Configuration {
         listeners.add(listener);
     }
 
+    /**
+     * @param listener
+     */
+    public void removeListener(SQLListener listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * @return
      */
@@ -543,6 +587,86 @@ public final class Configuration {
         this.useLiterals = useLiterals;
     }
 
+    /**
+     * @return
+     */
+    public boolean getUseArrayParameters() {
+        return useArrayParameters;
+    }
+
+    /**
+     * Bind collection constants of in and not in conditions as a single array parameter,
+     * if the templates support it. The SQL string then doesn't depend on the size of the
+     * collection.
+     *
+     * @param useArrayParameters
+     */
+    public void setUseArrayParameters(boolean useArrayParameters) {
+        this.useArrayParameters = useArrayParameters;
+    }
+
+    /**
+     * @return
+     */
+    public boolean getInListPadding() {
+        return inListPadding;
+    }
+
+    /**
+     * Pad the collection constants of in and not in conditions to the next power of two by
+     * repeating the last element, so that lists of different sizes share the same SQL string
+     *
+     * @param inListPadding
+     */
+    public void setInListPadding(boolean inListPadding) {
+        this.inListPadding = inListPadding;
+    }
+
+    /**
+     * @return
+     */
+    public boolean getSimplifyPredicates() {
+        return simplifyPredicates;
+    }
+
+    /**
+     * Simplify the where, having and join conditions of queries before they are serialized
+     * and skip the execution of queries which can't return any rows
+     *
+     * @param simplifyPredicates
+     * @see com.mysema.query.support.PredicateSimplifier
+     */
+    public void setSimplifyPredicates(boolean simplifyPredicates) {
+        invalidatePlans();
+        this.simplifyPredicates = simplifyPredicates;
+    }
+
+    /**
+     * @return true, if queries reuse thread-confined serializer instances
+     */
+    public boolean getReuseSerializers() {
+        return serializerPool != null;
+    }
+
+    /**
+     * Reuse thread-confined serializer instances with presized buffers for the rendering of
+     * queries instead of creating a new serializer for each query
+     *
+     * @param reuseSerializers
+     */
+    public void setReuseSerializers(boolean reuseSerializers) {
+        if (!reuseSerializers) {
+            serializerPool = null;
+        } else if (serializerPool == null) {
+            serializerPool = new SQLSerializerPool(this);
+        }
+    }
+
+    @Nullable
+    SQLSerializerPool getSerializerPool() {
+        return serializerPool;
+    }
+
     /**
      * @param exceptionTranslator
      */
@@ -554,7 +678,96 @@ public final class Configuration {
      * @param templates
      */
     public void setTemplates(SQLTemplates templates) {
+        invalidatePlans();
         this.templates = templates;
+        if (serializerPool != null) {
+            // pooled serializers are bound to the old templates
+            serializerPool = new SQLSerializerPool(this);
+        }
+    }
+
+    /**
+     * @return the rendered SQL cache or null, if caching is disabled
+     */
+    @Nullable
+    public SQLPlanCache getPlanCache() {
+        return planCache;
+    }
+
+    /**
+     * Set the cache for rendered SQL, null disables caching
+     *
+     * @param planCache
+     */
+    public void setPlanCache(@Nullable SQLPlanCache planCache) {
+        this.planCache = planCache;
+    }
+
+    /**
+     * @return the result cache of cacheable queries or null
+     */
+    @Nullable
+    public SQLResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Set the result cache of cacheable queries, the cache is registered as a listener to be
+     * notified about the executed DML clauses in place of the previous one
+     *
+     * @param resultCache result cache or null to disable result caching
+     */
+    public void setResultCache(@Nullable SQLResultCache resultCache) {
+        if (this.resultCache != resultCache) {
+            if (this.resultCache != null) {
+                removeListener(this.resultCache);
+            }
+            this.resultCache = resultCache;
+            if (resultCache != null) {
+                addListener(resultCache);
+            }
+        }
+    }
+
+    /**
+     * @return the executor of asynchronous queries and clauses
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the executor of asynchronous queries and clauses, by default they are executed in
+     * the calling thread
+     *
+     * @param executor
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return the default query timeout of queries and clauses in milliseconds, zero for none
+     */
+    public long getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * Set the default query timeout of queries and clauses. The timeout is set as the JDBC
+     * query timeout of the statements and is used as the deadline of iterated results.
+     *
+     * @param duration timeout, zero for none
+     * @param unit unit of the timeout
+     */
+    public void setQueryTimeout(long duration, TimeUnit unit) {
+        this.queryTimeout = unit.toMillis(duration);
+    }
+
+    private void invalidatePlans() {
+        if (planCache != null) {
+            planCache.clear();
+        }
     }
 
 }
@@ -55,6 +55,7 @@ public class DerbyTemplates extends SQLTemplates {
         setDummyTable("sysibm.sysdummy1");
         setAutoIncrement(" generated always as identity");
         setFunctionJoinsWrapped(true);
+        setMultiRowInsert(true);
         setDefaultValues("\nvalues (default)");
 
         add(Ops.CONCAT, "varchar({0} || {1})");
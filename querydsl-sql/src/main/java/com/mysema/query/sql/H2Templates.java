@@ -47,7 +47,12 @@ public class H2Templates extends SQLTemplates {
         setNativeMerge(true);
         setLimitRequired(true);
         setCountDistinctMultipleColumns(true);
+        setRowValueComparison(true);
+        setMultiRowInsert(true);
+        setArrayParameters(true);
 
+        add(SQLOps.IN_ARRAY, "array_contains({1}, {0})");
+        add(SQLOps.NOT_IN_ARRAY, "not array_contains({1}, {0})");
         add(Ops.MathOps.ROUND, "round({0},0)");
         add(Ops.TRIM, "trim(both from {0})");
 
@@ -45,12 +45,17 @@ public class HSQLDBTemplates extends SQLTemplates {
     public HSQLDBTemplates(char escape, boolean quote) {
         super("\"", escape, quote);
         setLimitRequired(true);
+        setRowValueComparison(true);
+        setMultiRowInsert(true);
+        setArrayParameters(true);
         setAutoIncrement(" identity");
         setDefaultValues("\ndefault values");
         add(Ops.TRIM, "trim(both from {0})");
         add(Ops.NEGATE, "{0} * -1", 7);
 
         add(SQLOps.NEXTVAL, "next value for {0s}");
+        add(SQLOps.IN_ARRAY, "{0} in(unnest({1}))", 27);
+        add(SQLOps.NOT_IN_ARRAY, "{0} not in(unnest({1}))", 27);
 
         add(Ops.MathOps.ROUND, "round({0},0)");
         add(Ops.MathOps.LN, "log({0})");
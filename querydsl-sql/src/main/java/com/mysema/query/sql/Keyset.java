@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mysema.query.support.Expressions;
+import com.mysema.query.types.*;
+import com.mysema.query.types.OrderSpecifier.NullHandling;
+
+/**
+ * Keyset provides predicates for keyset pagination, where the next page is selected by the
+ * order keys of the last row instead of an offset
+ *
+ * <p>Usage</p>
+ *
+ * <pre>
+ * query.from(employee)
+ *     .orderBy(employee.lastname.asc(), employee.id.asc())
+ *     .where(Keyset.after(query.getMetadata().getOrderBy(), Arrays.asList("Smith", 42), false))
+ * </pre>
+ *
+ * <p>Order keys with default null handling are expected to be non-null. With explicit
+ * null handling nulls are placed before or after the non-null values of the key.</p>
+ *
+ * @author tiwe
+ *
+ */
+public final class Keyset {
+
+    private static final Predicate NONE = Expressions.booleanTemplate("1 = 0");
+
+    /**
+     * Create a predicate which matches the rows after the given key values
+     *
+     * @param orderBy order of the query
+     * @param values order key values of the last row
+     * @param rowValueComparison whether the row value form (a, b) &gt; (?, ?) can be used
+     * @return predicate
+     */
+    @SuppressWarnings("unchecked")
+    public static Predicate after(List<OrderSpecifier<?>> orderBy, List<?> values,
+            boolean rowValueComparison) {
+        if (orderBy.isEmpty() || orderBy.size() != values.size()) {
+            throw new IllegalArgumentException("Expected " + orderBy.size()
+                    + " key values, got " + values.size());
+        }
+        if (rowValueComparison && orderBy.size() > 1 && isUniform(orderBy, values)) {
+            List<Expression<?>> keys = new ArrayList<Expression<?>>(orderBy.size());
+            List<Expression<?>> constants = new ArrayList<Expression<?>>(values.size());
+            for (int i = 0; i < orderBy.size(); i++) {
+                keys.add(orderBy.get(i).getTarget());
+                constants.add(ConstantImpl.create(values.get(i)));
+            }
+            String template = orderBy.get(0).isAscending() ? "({0}) > ({1})" : "({0}) < ({1})";
+            return Expressions.booleanTemplate(template,
+                    ExpressionUtils.list(Object.class, keys),
+                    ExpressionUtils.list(Object.class, constants));
+        }
+
+        // (a > ?) or (a = ? and b > ?) or ...
+        Predicate rv = null, prefix = null;
+        for (int i = 0; i < orderBy.size(); i++) {
+            OrderSpecifier<?> order = orderBy.get(i);
+            Object value = values.get(i);
+            Predicate after = after(order, value);
+            if (after != null) {
+                rv = or(rv, and(prefix, after));
+            }
+            prefix = and(prefix, value != null
+                    ? ExpressionUtils.eqConst((Expression<Object>)order.getTarget(), value)
+                    : ExpressionUtils.isNull(order.getTarget()));
+        }
+        return rv != null ? rv : NONE;
+    }
+
+    private static boolean isUniform(List<OrderSpecifier<?>> orderBy, List<?> values) {
+        boolean ascending = orderBy.get(0).isAscending();
+        for (int i = 0; i < orderBy.size(); i++) {
+            OrderSpecifier<?> order = orderBy.get(i);
+            if (order.isAscending() != ascending
+                || order.getNullHandling() != NullHandling.Default
+                || values.get(i) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static Predicate after(OrderSpecifier<?> order, @Nullable Object value) {
+        Expression<?> target = order.getTarget();
+        NullHandling nullHandling = order.getNullHandling();
+        if (value == null) {
+            switch (nullHandling) {
+                case NullsFirst: return ExpressionUtils.isNotNull(target);
+                case NullsLast: return null;
+                default: throw new IllegalArgumentException("Null key value for " + target
+                        + " requires explicit null handling");
+            }
+        }
+        Predicate rv = PredicateOperation.create(order.isAscending() ? Ops.GT : Ops.LT,
+                target, ConstantImpl.create(value));
+        if (nullHandling == NullHandling.NullsLast) {
+            rv = ExpressionUtils.or(rv, ExpressionUtils.isNull(target));
+        }
+        return rv;
+    }
+
+    private static Predicate and(@Nullable Predicate left, Predicate right) {
+        return left != null ? ExpressionUtils.and(left, right) : right;
+    }
+
+    private static Predicate or(@Nullable Predicate left, Predicate right) {
+        return left != null ? ExpressionUtils.or(left, right) : right;
+    }
+
+    private Keyset() {}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.AbstractIterator;
+import com.mysema.query.QueryModifiers;
+import com.mysema.query.Tuple;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.OrderSpecifier;
+
+/**
+ * KeysetPageIterator iterates over the pages of a query via keyset pagination
+ *
+ * <p>The order keys are fetched together with the projection and the keys of the last row
+ * restrict the next page. The offset of the query is applied to the first page only.</p>
+ *
+ * @author tiwe
+ *
+ * @param <Q> query type
+ * @param <RT> projection type
+ */
+final class KeysetPageIterator<Q extends ProjectableSQLQuery<Q>, RT> extends AbstractIterator<List<RT>> {
+
+    private final Q query;
+
+    private final Expression<RT> projection;
+
+    private final Expression<?>[] args;
+
+    private final int pageSize;
+
+    @Nullable
+    private Object[] lastKeys;
+
+    private boolean done;
+
+    KeysetPageIterator(Q query, Expression<RT> projection, int pageSize) {
+        List<OrderSpecifier<?>> orderBy = query.getMetadata().getOrderBy();
+        if (orderBy.isEmpty()) {
+            throw new IllegalArgumentException("Keyset pagination requires an order");
+        } else if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize needs to be positive, got " + pageSize);
+        }
+        this.query = query;
+        this.projection = projection;
+        this.pageSize = pageSize;
+        this.args = new Expression<?>[orderBy.size() + 1];
+        this.args[0] = projection;
+        for (int i = 0; i < orderBy.size(); i++) {
+            args[i + 1] = orderBy.get(i).getTarget();
+        }
+    }
+
+    @Override
+    protected List<RT> computeNext() {
+        if (done) {
+            return endOfData();
+        }
+        Q q = query.clone();
+        Long offset = null;
+        if (lastKeys != null) {
+            q.seekAfter(lastKeys);
+        } else {
+            // the offset applies only to the first page, the later pages are positioned via the keys
+            offset = query.getMetadata().getModifiers().getOffset();
+        }
+        List<Tuple> rows = q.restrict(new QueryModifiers(Long.valueOf(pageSize), offset)).list(args);
+        if (rows.size() < pageSize) {
+            done = true;
+        }
+        if (rows.isEmpty()) {
+            return endOfData();
+        }
+        List<RT> page = new ArrayList<RT>(rows.size());
+        for (Tuple row : rows) {
+            page.add(row.get(projection));
+        }
+        Tuple last = rows.get(rows.size() - 1);
+        lastKeys = new Object[args.length - 1];
+        for (int i = 0; i < lastKeys.length; i++) {
+            lastKeys[i] = last.get(i + 1, Object.class);
+        }
+        return page;
+    }
+
+}
@@ -13,9 +13,19 @@
  */
 package com.mysema.query.sql;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Types;
+import java.util.List;
 
+import com.mysema.query.QueryFlag.Position;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.types.Expression;
 import com.mysema.query.types.Ops;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.SubQueryExpression;
 
 /**
  * MySQLTemplates is an SQL dialect for MySQL
@@ -31,7 +41,9 @@ public class MySQLTemplates extends SQLTemplates {
         return new Builder() {
             @Override
             protected SQLTemplates build(char escape, boolean quote) {
-                return new MySQLTemplates(escape, quote);
+                MySQLTemplates templates = new MySQLTemplates(escape, quote);
+                templates.setNativeMerge(nativeMerge);
+                return templates;
             }
         };
     }
@@ -48,6 +60,9 @@ public class MySQLTemplates extends SQLTemplates {
         super("`", escape, quote);
         setParameterMetadataAvailable(false);
         setLimitRequired(true);
+        setRowValueComparison(true);
+        setMultiRowInsert(true);
+        setMaxParameters(65535);
         setNullsFirst(null);
         setNullsLast(null);
 
@@ -152,4 +167,55 @@ public class MySQLTemplates extends SQLTemplates {
         }
     }
 
+    @Override
+    public PreparedStatement prepareStreaming(Connection conn, String sql, int fetchSize) throws SQLException {
+        // Connector/J streams rows one by one only for this fetch size, other values are ignored
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        return stmt;
+    }
+
+    @Override
+    public boolean isNativeMerge(RelationalPath<?> entity, List<Path<?>> keys, List<Path<?>> columns) {
+        // on duplicate key detects the conflict on any unique key, so only merges on the
+        // primary key are mapped to it
+        return super.isNativeMerge(entity, keys, columns) && isPrimaryKey(entity, keys);
+    }
+
+    @Override
+    public void serializeMerge(QueryMetadata metadata, RelationalPath<?> entity,
+            List<Path<?>> keys, List<Path<?>> columns, List<Expression<?>> values,
+            SubQueryExpression<?> subQuery, SQLSerializer context) {
+        if (!isNativeMerge(entity, keys, columns)) {
+            // executed as an emulated merge
+            super.serializeMerge(metadata, entity, keys, columns, values, subQuery, context);
+            return;
+        }
+        List<? extends Path<?>> conflictKeys = getUpsertKeys(entity, keys);
+        List<Path<?>> updates = getUpsertColumns(conflictKeys, columns);
+        context.serializeForInsert(metadata, entity, columns, values, subQuery);
+        context.append("\non duplicate key update ");
+        if (updates.isEmpty()) {
+            // no-op update, the existing row is kept
+            Path<?> column = conflictKeys.get(0);
+            context.serializeColumn(column);
+            context.append(" = ");
+            context.serializeColumn(column);
+        } else {
+            for (int i = 0; i < updates.size(); i++) {
+                if (i > 0) {
+                    context.append(", ");
+                }
+                context.serializeColumn(updates.get(i));
+                context.append(" = values(");
+                context.serializeColumn(updates.get(i));
+                context.append(")");
+            }
+        }
+
+        if (!metadata.getFlags().isEmpty()) {
+            context.serialize(Position.END, metadata.getFlags());
+        }
+    }
+
 }
@@ -13,9 +13,18 @@
  */
 package com.mysema.query.sql;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Types;
+import java.util.List;
 
+import com.mysema.query.QueryFlag.Position;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.types.Expression;
 import com.mysema.query.types.Ops;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.SubQueryExpression;
 
 /**
  * PostgresTemplates is an SQL dialect for PostgreSQL
@@ -27,11 +36,15 @@ import com.mysema.query.types.Ops;
  */
 public class PostgresTemplates extends SQLTemplates {
 
+    private static final int DEFAULT_STREAMING_FETCH_SIZE = 1000;
+
     public static Builder builder() {
         return new Builder() {
             @Override
             protected SQLTemplates build(char escape, boolean quote) {
-                return new PostgresTemplates(escape, quote);
+                PostgresTemplates templates = new PostgresTemplates(escape, quote);
+                templates.setNativeMerge(nativeMerge);
+                return templates;
             }
         };
     }
@@ -48,6 +61,10 @@ public class PostgresTemplates extends SQLTemplates {
         super("\"", escape, quote);
         setDummyTable(null);
         setCountDistinctMultipleColumns(true);
+        setRowValueComparison(true);
+        setMultiRowInsert(true);
+        setMaxParameters(32767);
+        setArrayParameters(true);
         setCountViaAnalytics(true);
         setDefaultValues("\ndefault values");
 
@@ -128,4 +145,49 @@ public class PostgresTemplates extends SQLTemplates {
         addTypeNameToCode("timestamptz", Types.TIMESTAMP);
     }
 
+    @Override
+    public PreparedStatement prepareStreaming(Connection conn, String sql, int fetchSize) throws SQLException {
+        // the driver uses a cursor only for a positive fetch size
+        return super.prepareStreaming(conn, sql, fetchSize > 0 ? fetchSize : DEFAULT_STREAMING_FETCH_SIZE);
+    }
+
+    @Override
+    public boolean beginStreaming(Connection conn) throws SQLException {
+        // cursors are only used outside of auto commit mode
+        if (conn.getAutoCommit()) {
+            conn.setAutoCommit(false);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public void endStreaming(Connection conn) throws SQLException {
+        try {
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    @Override
+    public boolean isNativeMerge(RelationalPath<?> entity, List<Path<?>> keys, List<Path<?>> columns) {
+        // the conflict target needs a unique index, the primary key is the only one known
+        return super.isNativeMerge(entity, keys, columns) && isPrimaryKey(entity, keys);
+    }
+
+    @Override
+    public void serializeMerge(QueryMetadata metadata, RelationalPath<?> entity,
+            List<Path<?>> keys, List<Path<?>> columns, List<Expression<?>> values,
+            SubQueryExpression<?> subQuery, SQLSerializer context) {
+        if (isNativeMerge(entity, keys, columns)) {
+            // insert .. on conflict is available since PostgreSQL 9.5
+            serializeMergeOnConflict(metadata, entity, keys, columns, values, subQuery, context);
+        } else {
+            // executed as an emulated merge
+            super.serializeMerge(metadata, entity, keys, columns, values, subQuery, context);
+        }
+    }
+
 }
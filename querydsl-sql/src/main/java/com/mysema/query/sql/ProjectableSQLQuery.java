@@ -14,7 +14,9 @@
 package com.mysema.query.sql;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -479,6 +481,37 @@ public abstract class ProjectableSQLQuery<Q extends ProjectableSQLQuery<Q> & Que
         return new WithBuilder<Q>(queryMixin, aliasCombined);
     }
     
+    /**
+     * Restrict the query to the rows after the given order key values
+     *
+     * <p>This is the keyset alternative to offset based paging, the values are the values of
+     * the order keys of the last row of the previous page in the order of the order specifiers.
+     * </p>
+     *
+     * @param keyValues order key values of the last row
+     * @return the current object
+     */
+    public Q seekAfter(Object... keyValues) {
+        return where(Keyset.after(getMetadata().getOrderBy(), Arrays.asList(keyValues),
+                configuration.getTemplates().isRowValueComparison()));
+    }
+
+    /**
+     * Iterate over the pages of the projection via keyset pagination
+     *
+     * <p>Each page is fetched via a clone of this query restricted to the rows after the
+     * last row of the previous page. The query needs to have a unique order, an offset of the
+     * query is applied to the first page only.</p>
+     *
+     * @param expr projection
+     * @param pageSize maximum size of the pages
+     * @return iterator of the pages
+     */
+    @SuppressWarnings("unchecked")
+    public <RT> Iterator<List<RT>> pages(Expression<RT> expr, int pageSize) {
+        return new KeysetPageIterator<Q, RT>((Q)this, expr, pageSize);
+    }
+
     protected void clone(Q query) {
         this.union = query.union;
         this.unionAll = query.unionAll;
@@ -509,14 +542,19 @@ public abstract class ProjectableSQLQuery<Q extends ProjectableSQLQuery<Q> & Que
     }
 
     protected SQLSerializer serialize(boolean forCountRow) {
+        return serialize(queryMixin.getMetadata(), union, forCountRow);
+    }
+
+    protected SQLSerializer serialize(QueryMetadata metadata, @Nullable Expression<?> union,
+            boolean forCountRow) {
         SQLSerializer serializer = createSerializer();
         if (union != null) {
-            if (queryMixin.getMetadata().getProjection().isEmpty() ||
-                expandProjection(queryMixin.getMetadata().getProjection()).equals(
+            if (metadata.getProjection().isEmpty() ||
+                expandProjection(metadata.getProjection()).equals(
                 expandProjection(firstUnionSubQuery.getMetadata().getProjection()))) {
-                serializer.serializeUnion(union, queryMixin.getMetadata(), unionAll);
+                serializer.serializeUnion(union, metadata, unionAll);
             } else {
-                QueryMixin mixin2 = new QueryMixin(queryMixin.getMetadata().clone());
+                QueryMixin mixin2 = new QueryMixin(metadata.clone());
                 Set<Path<?>> paths = getRootPaths(expandProjection(mixin2.getMetadata().getProjection()));
                 if (paths.isEmpty()) {
                     mixin2.from(ExpressionUtils.as((Expression) union, defaultQueryAlias));
@@ -528,7 +566,7 @@ public abstract class ProjectableSQLQuery<Q extends ProjectableSQLQuery<Q> & Que
                 serializer.serialize(mixin2.getMetadata(), forCountRow);
             }
         } else {
-            serializer.serialize(queryMixin.getMetadata(), forCountRow);
+            serializer.serialize(metadata, forCountRow);
         }
         return serializer;
     }
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.JoinExpression;
+import com.mysema.query.JoinFlag;
+import com.mysema.query.QueryFlag;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.types.Null;
+import com.mysema.query.support.ReplaceVisitor;
+import com.mysema.query.types.*;
+
+/**
+ * QueryShape is the structural fingerprint of a query where the constants have been
+ * replaced with numbered slots
+ *
+ * <p>The slotted copy of the query doubles as the cache key and as a probe which is serialized
+ * once to find out which bindings are taken from which slot.</p>
+ *
+ * @author tiwe
+ *
+ */
+final class QueryShape {
+
+    /**
+     * Slot is the placeholder for a constant value or a single element of a collection constant
+     */
+    static final class Slot {
+
+        private final int index;
+
+        private final int element;
+
+        private final Class<?> type;
+
+        Slot(int index, int element, Class<?> type) {
+            this.index = index;
+            this.element = element;
+            this.type = type;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getElement() {
+            return element;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * index + element;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            } else if (o instanceof Slot) {
+                Slot other = (Slot)o;
+                return other.index == index && other.element == element && other.type.equals(type);
+            } else {
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "$" + index + (element > -1 ? "_" + element : "");
+        }
+
+    }
+
+    private static final class SlotVisitor extends ReplaceVisitor {
+
+        private final List<Object> constants = new ArrayList<Object>();
+
+        private final Set<Object> tables = new LinkedHashSet<Object>();
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Expression<?> visit(Constant<?> expr, @Nullable Void context) {
+            Object constant = expr.getConstant();
+            if (constant instanceof Class || Null.class.isInstance(constant)) {
+                // affects the rendered SQL, keep it as part of the key
+                return expr;
+            }
+            int index = constants.size();
+            if (constant instanceof Collection) {
+                Object[] elements = ((Collection<?>)constant).toArray();
+                constants.add(elements);
+                ImmutableList.Builder<Slot> slots = ImmutableList.builder();
+                for (int i = 0; i < elements.length; i++) {
+                    slots.add(new Slot(index, i, elements[i] != null ? elements[i].getClass() : Object.class));
+                }
+                return new ConstantImpl(expr.getType(), slots.build());
+            } else {
+                constants.add(constant);
+                return new ConstantImpl(expr.getType(), new Slot(index, -1, constant.getClass()));
+            }
+        }
+
+        @Override
+        public Expression<?> visit(Path<?> expr, @Nullable Void context) {
+            if (expr.getMetadata().isRoot() && expr instanceof RelationalPath) {
+                // aliases of different tables are equal as paths
+                tables.add(expr.getClass());
+                tables.add(((RelationalPath<?>)expr).getSchemaAndTable());
+            }
+            return super.visit(expr, context);
+        }
+
+        @Override
+        public Expression<?> visit(SubQueryExpression<?> expr, @Nullable Void context) {
+            QueryMetadata md = copy(expr.getMetadata());
+            return new SubQueryExpressionImpl(expr.getType(), md);
+        }
+
+        @SuppressWarnings("unchecked")
+        private QueryMetadata copy(QueryMetadata metadata) {
+            QueryMetadata md = new DefaultQueryMetadata().noValidate();
+            md.setDistinct(metadata.isDistinct());
+            md.setModifiers(metadata.getModifiers());
+            md.setUnique(metadata.isUnique());
+            for (QueryFlag flag : metadata.getFlags()) {
+                md.addFlag(new QueryFlag(flag.getPosition(), flag.getFlag().accept(this, null)));
+            }
+            for (Expression<?> e : metadata.getProjection()) {
+                md.addProjection(e.accept(this, null));
+            }
+            for (JoinExpression je : metadata.getJoins()) {
+                md.addJoin(je.getType(), je.getTarget().accept(this, null));
+                if (je.getCondition() != null) {
+                    md.addJoinCondition((Predicate)je.getCondition().accept(this, null));
+                }
+                for (JoinFlag jf : je.getFlags()) {
+                    JoinFlag flag = new JoinFlag(jf.getFlag().accept(this, null), jf.getPosition());
+                    md.addJoinFlag(flag);
+                    // join flags are not part of the join equality
+                    tables.add(flag);
+                }
+            }
+            if (metadata.getWhere() != null) {
+                md.addWhere((Predicate)metadata.getWhere().accept(this, null));
+            }
+            for (Expression<?> e : metadata.getGroupBy()) {
+                md.addGroupBy(e.accept(this, null));
+            }
+            if (metadata.getHaving() != null) {
+                md.addHaving((Predicate)metadata.getHaving().accept(this, null));
+            }
+            for (OrderSpecifier<?> os : metadata.getOrderBy()) {
+                OrderSpecifier<?> os2 = new OrderSpecifier(os.getOrder(), os.getTarget().accept(this, null),
+                        os.getNullHandling());
+                md.addOrderBy(os2);
+            }
+            return md;
+        }
+
+    }
+
+    /**
+     * Create the shape for the given query state
+     *
+     * @param owner query type
+     * @param metadata query metadata
+     * @param union union expression or null
+     * @param unionAll
+     * @param forCountRow
+     * @return
+     */
+    static QueryShape of(Class<?> owner, QueryMetadata metadata, @Nullable Expression<?> union,
+            boolean unionAll, boolean forCountRow) {
+        SlotVisitor visitor = new SlotVisitor();
+        QueryMetadata md = visitor.copy(metadata);
+        Expression<?> u = union != null ? union.accept(visitor, null) : null;
+        List<Object> key = Arrays.<Object>asList(owner, forCountRow, unionAll, md, u, visitor.tables);
+        return new QueryShape(key, md, u, visitor.constants);
+    }
+
+    private final List<Object> key;
+
+    private final QueryMetadata metadata;
+
+    @Nullable
+    private final Expression<?> union;
+
+    private final List<Object> constants;
+
+    private QueryShape(List<Object> key, QueryMetadata metadata, @Nullable Expression<?> union,
+            List<Object> constants) {
+        this.key = key;
+        this.metadata = metadata;
+        this.union = union;
+        this.constants = constants;
+    }
+
+    /**
+     * @return the cache key
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * @return the slotted copy of the query metadata
+     */
+    public QueryMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the slotted copy of the union or null
+     */
+    @Nullable
+    public Expression<?> getUnion() {
+        return union;
+    }
+
+    /**
+     * @return the constant values in slot order, collection constants as arrays
+     */
+    public List<Object> getConstants() {
+        return constants;
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (o instanceof QueryShape) {
+            return Objects.equal(key, ((QueryShape)o).key);
+        } else {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.mysema.query.Row;
+import com.mysema.query.sql.types.AbstractType;
+import com.mysema.query.sql.types.Type;
+
+/**
+ * ResultSetRow is a {@link Row} view of the current row of a JDBC result set
+ *
+ * <p>The values are read directly from the result set via the column {@link Type} instances, which
+ * are resolved once per query. Primitive values are read without boxing for types extending
+ * {@link AbstractType}.</p>
+ *
+ * @author tiwe
+ *
+ */
+final class ResultSetRow implements Row {
+
+    private static final int NONE = -1;
+
+    private final Configuration configuration;
+
+    private final ResultSet rs;
+
+    private final Type<?>[] types;
+
+    private int lastRead = NONE;
+
+    ResultSetRow(Configuration configuration, ResultSet rs, Type<?>[] types) {
+        this.configuration = configuration;
+        this.rs = rs;
+        this.types = types;
+    }
+
+    boolean next() throws SQLException {
+        lastRead = NONE;
+        return rs.next();
+    }
+
+    @Override
+    public int size() {
+        return types.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T get(int index, Class<T> type) {
+        try {
+            lastRead = index;
+            return (T) types[index].getValue(rs, index + 1);
+        } catch (SQLException e) {
+            throw configuration.translate(e);
+        }
+    }
+
+    @Override
+    public long getLong(int index) {
+        try {
+            lastRead = index;
+            Type<?> type = types[index];
+            if (type instanceof AbstractType) {
+                return ((AbstractType<?>)type).getLong(rs, index + 1);
+            }
+            Number number = getNumber(type, index);
+            return number != null ? number.longValue() : 0l;
+        } catch (SQLException e) {
+            throw configuration.translate(e);
+        }
+    }
+
+    @Override
+    public double getDouble(int index) {
+        try {
+            lastRead = index;
+            Type<?> type = types[index];
+            if (type instanceof AbstractType) {
+                return ((AbstractType<?>)type).getDouble(rs, index + 1);
+            }
+            Number number = getNumber(type, index);
+            return number != null ? number.doubleValue() : 0.0;
+        } catch (SQLException e) {
+            throw configuration.translate(e);
+        }
+    }
+
+    private Number getNumber(Type<?> type, int index) throws SQLException {
+        Object value = type.getValue(rs, index + 1);
+        if (value == null || value instanceof Number) {
+            return (Number)value;
+        } else {
+            throw new IllegalArgumentException("Value of type " + value.getClass().getName()
+                    + " is not numeric");
+        }
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        try {
+            if (lastRead == index) {
+                // the value has already been read
+                return rs.wasNull();
+            } else {
+                lastRead = index;
+                return rs.getObject(index + 1) == null;
+            }
+        } catch (SQLException e) {
+            throw configuration.translate(e);
+        }
+    }
+
+}
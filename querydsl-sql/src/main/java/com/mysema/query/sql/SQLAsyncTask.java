@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * SQLAsyncTask is the future of an asynchronously executed query or clause
+ *
+ * <p>The task is registered as a listener of the query or clause to track the statement being
+ * executed, cancelling the future with interruption cancels that statement via
+ * {@link java.sql.Statement#cancel()}. The registration is removed when the future completes.
+ * The other listeners are invoked in the executing thread as for blocking executions.</p>
+ *
+ * @author tiwe
+ *
+ * @param <T> result type
+ */
+public final class SQLAsyncTask<T> extends AbstractFuture<T> implements Runnable {
+
+    /**
+     * Submit the given work to the executor
+     *
+     * @param executor executor of the work
+     * @param listeners listeners of the query or clause
+     * @param work blocking execution of the query or clause
+     * @return future of the result
+     */
+    public static <T> ListenableFuture<T> submit(Executor executor, final SQLListeners listeners,
+            Callable<T> work) {
+        SQLAsyncTask<T> task = new SQLAsyncTask<T>(work);
+        final SQLListener tracker = task.new StatementTracker();
+        listeners.add(tracker);
+        task.addListener(new Runnable() {
+            @Override
+            public void run() {
+                listeners.remove(tracker);
+            }
+        }, MoreExecutors.directExecutor());
+        executor.execute(task);
+        return task;
+    }
+
+    private final Callable<T> work;
+
+    @Nullable
+    private volatile PreparedStatement statement;
+
+    private SQLAsyncTask(Callable<T> work) {
+        this.work = work;
+    }
+
+    @Override
+    public void run() {
+        if (isDone()) {
+            return;
+        }
+        try {
+            set(work.call());
+        } catch (Throwable e) {
+            setException(e);
+        } finally {
+            statement = null;
+        }
+    }
+
+    @Override
+    protected void interruptTask() {
+        cancel(statement);
+    }
+
+    private static void cancel(@Nullable PreparedStatement stmt) {
+        if (stmt != null) {
+            try {
+                stmt.cancel();
+            } catch (SQLException e) {
+                // best effort, the statement might have completed already
+            }
+        }
+    }
+
+    /**
+     * Keeps track of the statement being executed
+     */
+    private final class StatementTracker extends SQLListeners {
+
+        @Override
+        public void prepared(SQLListenerContext context) {
+            statement = context.getPreparedStatement();
+            if (isCancelled() && wasInterrupted()) {
+                cancel(statement);
+            }
+        }
+
+        @Override
+        public void end(SQLListenerContext context) {
+            statement = null;
+        }
+
+    }
+
+}
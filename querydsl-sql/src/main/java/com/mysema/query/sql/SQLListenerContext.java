@@ -11,6 +11,17 @@ import java.util.Collection;
  * SQLDetailedListener} callback method
  */
 public interface SQLListenerContext {
+
+    /**
+     * Data key of the amount of rows fetched by list queries
+     */
+    String ROW_COUNT = "rowCount";
+
+    /**
+     * Data key of the amount of rows of batch executions of DML clauses
+     */
+    String BATCH_SIZE = "batchSize";
+
     /**
      * The context getData is a general purpose place that listeners can place objects.  It allows listeners to pass
      * context between themselves during callbacks.
@@ -14,9 +14,11 @@
 package com.mysema.query.sql;
 
 import javax.annotation.Nullable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import com.google.common.collect.Lists;
 import com.mysema.commons.lang.Pair;
 import com.mysema.query.QueryMetadata;
 import com.mysema.query.sql.dml.SQLInsertBatch;
@@ -34,23 +36,93 @@ import com.mysema.query.types.SubQueryExpression;
  */
 public class SQLListeners implements SQLDetailedListener {
 
+    /**
+     * Shared context for executions without listeners, all modifications are ignored
+     */
+    private static final SQLListenerContextImpl DISABLED = new SQLListenerContextImpl(null) {
+        @Override
+        public void addSQL(String sql) {}
+        @Override
+        public void setEntity(RelationalPath<?> entity) {}
+        @Override
+        public void setConnection(Connection connection) {}
+        @Override
+        public void setException(Exception exception) {}
+        @Override
+        public void addPreparedStatement(PreparedStatement preparedStatement) {}
+        @Override
+        public void setData(String dataKey, Object value) {}
+    };
+
     @Nullable
     private final SQLDetailedListener parent;
 
-    private final List<SQLDetailedListener> listeners = Lists.newArrayList();
+    @Nullable
+    private final SQLListeners parentListeners;
+
+    // copied on write, since listeners may be added and removed while queries are executed
+    private final List<SQLListenerAdapter> listeners = new CopyOnWriteArrayList<SQLListenerAdapter>();
 
     public SQLListeners(SQLListener parent) {
         this.parent = new SQLListenerAdapter(parent);
+        this.parentListeners = parent instanceof SQLListeners ? (SQLListeners)parent : null;
     }
 
     public SQLListeners() {
         this.parent = null;
+        this.parentListeners = null;
     }
 
     public void add(SQLListener listener) {
         listeners.add(new SQLListenerAdapter(listener));
     }
 
+    /**
+     * Remove the given listener
+     *
+     * @param listener
+     * @return true, if the listener was registered
+     */
+    public boolean remove(SQLListener listener) {
+        for (SQLListenerAdapter adapter : listeners) {
+            if (adapter.getSqlListener() == listener) {
+                return listeners.remove(adapter);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true, if neither this instance nor its parents have listeners
+     */
+    public boolean isEmpty() {
+        if (!listeners.isEmpty()) {
+            return false;
+        } else if (parentListeners != null) {
+            return parentListeners.isEmpty();
+        } else {
+            return parent == null;
+        }
+    }
+
+    /**
+     * Create a new context for the given execution. If there are no listeners a shared
+     * context is returned which ignores all modifications and is not dispatched.
+     *
+     * @param metadata the meta data for that context
+     * @param connection the database connection
+     * @param entity the entity for that context or null
+     * @return context
+     */
+    public SQLListenerContextImpl createContext(QueryMetadata metadata, @Nullable Connection connection,
+            @Nullable RelationalPath<?> entity) {
+        if (isEmpty()) {
+            return DISABLED;
+        } else {
+            return new SQLListenerContextImpl(metadata, connection, entity);
+        }
+    }
+
     @Override
     public void notifyQuery(QueryMetadata md) {
         if (parent != null) {
@@ -148,6 +220,9 @@ public class SQLListeners implements SQLDetailedListener {
 
     @Override
     public void start(final SQLListenerContext context) {
+        if (context == DISABLED) {
+            return;
+        }
         if (parent != null) {
             parent.start(context);
         }
@@ -158,6 +233,9 @@ public class SQLListeners implements SQLDetailedListener {
 
     @Override
     public void preRender(final SQLListenerContext context) {
+        if (context == DISABLED) {
+            return;
+        }
         if (parent != null) {
             parent.preRender(context);
         }
@@ -168,6 +246,9 @@ public class SQLListeners implements SQLDetailedListener {
 
     @Override
     public void rendered(final SQLListenerContext context) {
+        if (context == DISABLED) {
+            return;
+        }
         if (parent != null) {
             parent.rendered(context);
         }
@@ -178,6 +259,9 @@ public class SQLListeners implements SQLDetailedListener {
 
     @Override
     public void prePrepare(final SQLListenerContext context) {
+        if (context == DISABLED) {
+            return;
+        }
         if (parent != null) {
             parent.prePrepare(context);
         }
@@ -188,6 +272,9 @@ public class SQLListeners implements SQLDetailedListener {
 
     @Override
     public void prepared(final SQLListenerContext context) {
+        if (context == DISABLED) {
+            return;
+        }
         if (parent != null) {
             parent.prepared(context);
         }
@@ -198,6 +285,9 @@ public class SQLListeners implements SQLDetailedListener {
 
     @Override
     public void preExecute(final SQLListenerContext context) {
+        if (context == DISABLED) {
+            return;
+        }
         if (parent != null) {
             parent.preExecute(context);
         }
@@ -208,6 +298,9 @@ public class SQLListeners implements SQLDetailedListener {
 
     @Override
     public void executed(final SQLListenerContext context) {
+        if (context == DISABLED) {
+            return;
+        }
         if (parent != null) {
             parent.executed(context);
         }
@@ -218,6 +311,9 @@ public class SQLListeners implements SQLDetailedListener {
 
     @Override
     public void end(final SQLListenerContext context) {
+        if (context == DISABLED) {
+            return;
+        }
         if (parent != null) {
             parent.end(context);
         }
@@ -228,6 +324,9 @@ public class SQLListeners implements SQLDetailedListener {
 
     @Override
     public void exception(final SQLListenerContext context) {
+        if (context == DISABLED) {
+            return;
+        }
         if (parent != null) {
             parent.exception(context);
         }
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+import com.mysema.commons.lang.Pair;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.dml.SQLInsertBatch;
+import com.mysema.query.sql.dml.SQLMergeBatch;
+import com.mysema.query.sql.dml.SQLUpdateBatch;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.SubQueryExpression;
+
+/**
+ * SQLMetricsListener records the time spent in the phases of query execution, grouped by
+ * the fingerprint of the SQL
+ *
+ * <p>The phases are rendering (preRender to rendered), preparation (prePrepare to prepared),
+ * execution (preExecute to executed) and fetching (executed to end), which covers the mapping
+ * of the results of list queries. Times are recorded in microseconds. In addition the amount of
+ * fetched rows of list queries and the batch sizes of DML clauses are recorded.</p>
+ *
+ * <p>The fetching phase is recorded only for list queries. Iterated queries end their context
+ * when the iterator is returned, so the time spent consuming the iterator is not measured, and
+ * their total covers only rendering, preparation and execution.</p>
+ *
+ * <p>Only every n-th execution is sampled, the other executions are skipped in
+ * {@link #start(SQLListenerContext)}. At most {@code maxFingerprints} distinct fingerprints are
+ * tracked, executions of further fingerprints are only counted via {@link #getDroppedCount()}.</p>
+ *
+ * <p>Usage</p>
+ *
+ * <pre>
+ * SQLMetricsListener metrics = new SQLMetricsListener(10);
+ * configuration.addListener(metrics);
+ * ...
+ * for (SQLMetricsListener.QueryMetrics m : metrics.getMetrics()) {
+ *     System.out.println(m.getFingerprint() + " " + m.getExecute().getPercentile(0.99));
+ * }
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+public class SQLMetricsListener implements SQLDetailedListener {
+
+    private static final String SAMPLE = SQLMetricsListener.class.getName();
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.\"])-?\\d+(?:\\.\\d+)?(?![\\w\"])");
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Histogram is a lock free histogram with buckets of powers of two
+     */
+    public static final class Histogram {
+
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong sum = new AtomicLong();
+
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        /**
+         * @return amount of recorded values
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return sum of the recorded values
+         */
+        public long getSum() {
+            return sum.get();
+        }
+
+        /**
+         * @return maximum of the recorded values
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @return mean of the recorded values
+         */
+        public double getMean() {
+            long c = count.get();
+            return c > 0 ? (double)sum.get() / c : 0.0;
+        }
+
+        /**
+         * Get the upper bound of the bucket which contains the given percentile
+         *
+         * @param percentile percentile between 0.0 and 1.0
+         * @return upper bound of the percentile
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0.0 || percentile > 1.0) {
+                throw new IllegalArgumentException("percentile needs to be between 0 and 1, got " + percentile);
+            }
+            long c = count.get();
+            if (c == 0) {
+                return 0;
+            }
+            long threshold = (long)Math.ceil(percentile * c);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= threshold && seen > 0) {
+                    return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount() + " mean=" + getMean() + " p99=" + getPercentile(0.99)
+                    + " max=" + getMax();
+        }
+
+    }
+
+    /**
+     * QueryMetrics contains the histograms of a single query fingerprint
+     */
+    public static final class QueryMetrics {
+
+        private final String fingerprint;
+
+        private final Histogram render = new Histogram(), prepare = new Histogram(),
+                execute = new Histogram(), fetch = new Histogram(), total = new Histogram(),
+                rows = new Histogram(), batchSize = new Histogram();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        QueryMetrics(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * @return normalized SQL
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return rendering time in microseconds
+         */
+        public Histogram getRender() {
+            return render;
+        }
+
+        /**
+         * @return statement preparation time in microseconds
+         */
+        public Histogram getPrepare() {
+            return prepare;
+        }
+
+        /**
+         * @return statement execution time in microseconds
+         */
+        public Histogram getExecute() {
+            return execute;
+        }
+
+        /**
+         * @return result fetching and mapping time of list queries in microseconds
+         */
+        public Histogram getFetch() {
+            return fetch;
+        }
+
+        /**
+         * @return total time in microseconds
+         */
+        public Histogram getTotal() {
+            return total;
+        }
+
+        /**
+         * @return fetched rows of list queries
+         */
+        public Histogram getRows() {
+            return rows;
+        }
+
+        /**
+         * @return rows of batch executions of DML clauses
+         */
+        public Histogram getBatchSize() {
+            return batchSize;
+        }
+
+        /**
+         * @return amount of failed executions
+         */
+        public long getErrorCount() {
+            return errors.get();
+        }
+
+        @Override
+        public String toString() {
+            return fingerprint + " total[" + total + "]";
+        }
+
+    }
+
+    private static final class Sample {
+
+        private final long start;
+
+        private long mark, executed, render, prepare, execute;
+
+        Sample(long start) {
+            this.start = start;
+            this.mark = start;
+        }
+
+    }
+
+    /**
+     * Normalize the given SQL string by replacing literals with parameters and collapsing
+     * parameter lists
+     *
+     * @param sql SQL string
+     * @return fingerprint
+     */
+    public static String fingerprint(String sql) {
+        String rv = STRING_LITERAL.matcher(sql).replaceAll("?");
+        rv = NUMBER_LITERAL.matcher(rv).replaceAll("?");
+        rv = PARAMETER_LIST.matcher(rv).replaceAll("?");
+        return WHITESPACE.matcher(rv).replaceAll(" ").trim();
+    }
+
+    private final ConcurrentMap<String, QueryMetrics> metrics = new ConcurrentHashMap<String, QueryMetrics>();
+
+    private final ConcurrentMap<String, String> fingerprints = new ConcurrentHashMap<String, String>();
+
+    private final int sampleRate;
+
+    private final int maxFingerprints;
+
+    private final AtomicLong executions = new AtomicLong(), dropped = new AtomicLong();
+
+    private volatile boolean enabled = true;
+
+    /**
+     * Create a new SQLMetricsListener which samples all executions
+     */
+    public SQLMetricsListener() {
+        this(1);
+    }
+
+    /**
+     * Create a new SQLMetricsListener which tracks at most 1000 fingerprints
+     *
+     * @param sampleRate sample every n-th execution
+     */
+    public SQLMetricsListener(int sampleRate) {
+        this(sampleRate, 1000);
+    }
+
+    /**
+     * Create a new SQLMetricsListener
+     *
+     * @param sampleRate sample every n-th execution
+     * @param maxFingerprints maximum amount of tracked fingerprints
+     */
+    public SQLMetricsListener(int sampleRate, int maxFingerprints) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate needs to be positive, got " + sampleRate);
+        }
+        if (maxFingerprints < 1) {
+            throw new IllegalArgumentException("maxFingerprints needs to be positive, got " + maxFingerprints);
+        }
+        this.sampleRate = sampleRate;
+        this.maxFingerprints = maxFingerprints;
+    }
+
+    /**
+     * Enable or disable the sampling
+     *
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return true, if sampling is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return metrics of the recorded fingerprints
+     */
+    public Collection<QueryMetrics> getMetrics() {
+        return metrics.values();
+    }
+
+    /**
+     * Get the metrics of the given SQL string
+     *
+     * @param sql SQL string or fingerprint
+     * @return metrics or null, if nothing has been recorded
+     */
+    @Nullable
+    public QueryMetrics getMetrics(String sql) {
+        return metrics.get(fingerprint(sql));
+    }
+
+    /**
+     * @return amount of sampled executions which weren't recorded, since the maximum amount of
+     *         fingerprints was reached
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Remove all recorded metrics
+     */
+    public void clear() {
+        metrics.clear();
+        fingerprints.clear();
+        dropped.set(0);
+    }
+
+    @Override
+    public void start(SQLListenerContext context) {
+        if (enabled && (sampleRate == 1 || executions.getAndIncrement() % sampleRate == 0)) {
+            context.setData(SAMPLE, new Sample(System.nanoTime()));
+        }
+    }
+
+    @Override
+    public void preRender(SQLListenerContext context) {
+        mark(context);
+    }
+
+    @Override
+    public void rendered(SQLListenerContext context) {
+        Sample sample = (Sample) context.getData(SAMPLE);
+        if (sample != null) {
+            sample.render += System.nanoTime() - sample.mark;
+        }
+    }
+
+    @Override
+    public void prePrepare(SQLListenerContext context) {
+        mark(context);
+    }
+
+    @Override
+    public void prepared(SQLListenerContext context) {
+        Sample sample = (Sample) context.getData(SAMPLE);
+        if (sample != null) {
+            sample.prepare += System.nanoTime() - sample.mark;
+        }
+    }
+
+    @Override
+    public void preExecute(SQLListenerContext context) {
+        mark(context);
+    }
+
+    @Override
+    public void executed(SQLListenerContext context) {
+        Sample sample = (Sample) context.getData(SAMPLE);
+        if (sample != null) {
+            sample.executed = System.nanoTime();
+            sample.execute += sample.executed - sample.mark;
+        }
+    }
+
+    @Override
+    public void exception(SQLListenerContext context) {
+        // recorded in end
+    }
+
+    @Override
+    public void end(SQLListenerContext context) {
+        Sample sample = (Sample) context.getData(SAMPLE);
+        if (sample == null || context.getSQL() == null) {
+            return;
+        }
+        long end = System.nanoTime();
+        QueryMetrics m = getOrCreate(context.getSQL());
+        if (m == null) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (context.getException() != null) {
+            m.errors.incrementAndGet();
+        } else {
+            m.render.record(sample.render / 1000);
+            m.prepare.record(sample.prepare / 1000);
+            m.execute.record(sample.execute / 1000);
+            Object rows = context.getData(SQLListenerContext.ROW_COUNT);
+            if (rows instanceof Number) {
+                // only list queries have fetched their rows when the context ends
+                if (sample.executed > 0) {
+                    m.fetch.record((end - sample.executed) / 1000);
+                }
+                m.rows.record(((Number)rows).longValue());
+            }
+            Object batchSize = context.getData(SQLListenerContext.BATCH_SIZE);
+            if (batchSize instanceof Number) {
+                m.batchSize.record(((Number)batchSize).longValue());
+            }
+        }
+        m.total.record((end - sample.start) / 1000);
+    }
+
+    private void mark(SQLListenerContext context) {
+        Sample sample = (Sample) context.getData(SAMPLE);
+        if (sample != null) {
+            sample.mark = System.nanoTime();
+        }
+    }
+
+    @Nullable
+    private QueryMetrics getOrCreate(String sql) {
+        String fingerprint = fingerprints.get(sql);
+        if (fingerprint == null) {
+            fingerprint = fingerprint(sql);
+            if (fingerprints.size() < 10000) {
+                fingerprints.put(sql, fingerprint);
+            }
+        }
+        QueryMetrics m = metrics.get(fingerprint);
+        if (m == null) {
+            if (metrics.size() >= maxFingerprints) {
+                return null;
+            }
+            m = new QueryMetrics(fingerprint);
+            QueryMetrics existing = metrics.putIfAbsent(fingerprint, m);
+            if (existing != null) {
+                m = existing;
+            }
+        }
+        return m;
+    }
+
+    @Override
+    public void notifyQuery(QueryMetadata md) {}
+
+    @Override
+    public void notifyDelete(RelationalPath<?> entity, QueryMetadata md) {}
+
+    @Override
+    public void notifyDeletes(RelationalPath<?> entity, List<QueryMetadata> batches) {}
+
+    @Override
+    public void notifyMerge(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> keys,
+            List<Path<?>> columns, List<Expression<?>> values, SubQueryExpression<?> subQuery) {}
+
+    @Override
+    public void notifyMerges(RelationalPath<?> entity, QueryMetadata md, List<SQLMergeBatch> batches) {}
+
+    @Override
+    public void notifyInsert(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> columns,
+            List<Expression<?>> values, SubQueryExpression<?> subQuery) {}
+
+    @Override
+    public void notifyInserts(RelationalPath<?> entity, QueryMetadata md, List<SQLInsertBatch> batches) {}
+
+    @Override
+    public void notifyUpdate(RelationalPath<?> entity, QueryMetadata md,
+            List<Pair<Path<?>, Expression<?>>> updates) {}
+
+    @Override
+    public void notifyUpdates(RelationalPath<?> entity, List<SQLUpdateBatch> batches) {}
+
+}
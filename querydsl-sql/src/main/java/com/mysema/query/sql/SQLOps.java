@@ -55,6 +55,8 @@ public final class SQLOps {
 
     public static final Operator<Object> FOR_UPDATE = new OperatorImpl<Object>(NS, "FOR_UPDATE");
 
+    public static final Operator<Boolean> IN_ARRAY = new OperatorImpl<Boolean>(NS, "IN_ARRAY");
+
     public static final Operator<Object> LAG = new OperatorImpl<Object>(NS, "LAG");
 
     public static final Operator<Object> LASTVALUE = new OperatorImpl<Object>(NS, "LASTVALUE");
@@ -67,6 +69,8 @@ public final class SQLOps {
 
     public static final Operator<Object> NO_WAIT = new OperatorImpl<Object>(NS, "NO_WAIT");
 
+    public static final Operator<Boolean> NOT_IN_ARRAY = new OperatorImpl<Boolean>(NS, "NOT_IN_ARRAY");
+
     public static final Operator<Object> NTHVALUE = new OperatorImpl<Object>(NS, "NTHVALUE");
 
     public static final Operator<Object> NTILE = new OperatorImpl<Object>(NS, "NTILE");
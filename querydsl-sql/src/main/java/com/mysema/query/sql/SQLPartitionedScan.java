@@ -0,0 +1,417 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import javax.annotation.Nullable;
+import javax.inject.Provider;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.query.QueryException;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.QueryModifiers;
+import com.mysema.query.Tuple;
+import com.mysema.query.support.Expressions;
+import com.mysema.query.types.*;
+import com.mysema.util.MathUtils;
+
+/**
+ * SQLPartitionedScan executes a query as concurrent sub-queries over ranges of a numeric or date
+ * key and merges the results into a single iterator
+ *
+ * <p>Each partition is read on a connection taken from the provider in the thread of the partition.
+ * The scan doesn't own these connections and doesn't close them, so the provider needs to supply
+ * a separate connection per thread and release it, as for the other queries of the factory. The bounds of the key are discovered via min and max
+ * aggregates unless given explicitly. The outer partitions are open ended and the rows with a null
+ * key are read with one of them, so that all rows of the query are returned.</p>
+ *
+ * <p>If the query is ordered by the partition key, the partitions are returned in key order,
+ * otherwise the rows are returned in the order they arrive. Rows with a null key are assumed to
+ * be ordered last for ascending and first for descending orders, unless the null handling is
+ * given explicitly.</p>
+ *
+ * <p>Usage</p>
+ *
+ * <pre>
+ * CloseableIterator&lt;Employee&gt; employees = queryFactory
+ *     .partitionedScan(queryFactory.from(employee), employee.id, executor)
+ *     .partitions(8)
+ *     .iterate(employeeBean);
+ * </pre>
+ *
+ * @author tiwe
+ *
+ * @param <K> key type
+ */
+public class SQLPartitionedScan<K extends Comparable<?>> {
+
+    private static final Object END = new Object();
+
+    private static final Object NULL = new Object();
+
+    private static final class Failure {
+
+        private final Throwable cause;
+
+        Failure(Throwable cause) {
+            this.cause = cause;
+        }
+
+    }
+
+    private final Provider<Connection> connection;
+
+    private final Executor executor;
+
+    private final AbstractSQLQuery<?> query;
+
+    private final Expression<K> key;
+
+    private int partitions = Runtime.getRuntime().availableProcessors();
+
+    private int bufferSize = 1000;
+
+    @Nullable
+    private K min, max;
+
+    /**
+     * Create a new SQLPartitionedScan instance
+     *
+     * @param connection provider of the partition connections, invoked once in the thread of each
+     *        partition, the connections are not closed by the scan
+     * @param executor executor of the partition queries, needs to run them in separate threads
+     * @param query query to partition, without limit and offset
+     * @param key partition key
+     */
+    public SQLPartitionedScan(Provider<Connection> connection, Executor executor,
+            AbstractSQLQuery<?> query, Expression<K> key) {
+        if (!Number.class.isAssignableFrom(key.getType()) && !Date.class.isAssignableFrom(key.getType())) {
+            throw new IllegalArgumentException("Unsupported key type " + key.getType().getName());
+        }
+        QueryModifiers modifiers = query.getMetadata().getModifiers();
+        if (modifiers.getLimit() != null || modifiers.getOffset() != null) {
+            throw new IllegalArgumentException("Queries with limit or offset can't be partitioned");
+        }
+        this.connection = connection;
+        this.executor = executor;
+        this.query = query;
+        this.key = key;
+    }
+
+    /**
+     * Set the amount of partitions, defaults to the amount of processors
+     *
+     * @param partitions
+     * @return the current object
+     */
+    public SQLPartitionedScan<K> partitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("partitions needs to be positive, got " + partitions);
+        }
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * Set the key bounds, by default they are queried from the database
+     *
+     * @param min minimum key value
+     * @param max maximum key value
+     * @return the current object
+     */
+    public SQLPartitionedScan<K> bounds(K min, K max) {
+        this.min = min;
+        this.max = max;
+        return this;
+    }
+
+    /**
+     * Set the amount of rows buffered per partition
+     *
+     * @param bufferSize
+     * @return the current object
+     */
+    public SQLPartitionedScan<K> bufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize needs to be positive, got " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Get the partition predicates in the order in which the partitions are returned
+     *
+     * @return partition predicates
+     */
+    public List<Predicate> getPredicates() {
+        if (min == null || max == null) {
+            discoverBounds();
+        }
+        List<Predicate> predicates = new ArrayList<Predicate>();
+        BigInteger lo = min != null ? BigInteger.valueOf(toLong(min)) : BigInteger.ZERO;
+        BigInteger range = max != null ? BigInteger.valueOf(toLong(max)).subtract(lo).add(BigInteger.ONE)
+                : BigInteger.ZERO;
+        int n = range.compareTo(BigInteger.valueOf(partitions)) < 0 ? range.intValue() : partitions;
+        if (n < 2) {
+            // no or too few keys, a single unrestricted partition
+            predicates.add(null);
+            return predicates;
+        }
+        Expression<K> previous = null;
+        for (int i = 1; i < n; i++) {
+            long bound = lo.add(range.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(n))).longValue();
+            Expression<K> current = ConstantImpl.create(fromLong(bound));
+            Predicate below = PredicateOperation.create(Ops.LT, key, current);
+            predicates.add(previous != null
+                    ? ExpressionUtils.and(PredicateOperation.create(Ops.GOE, key, previous), below)
+                    : below);
+            previous = current;
+        }
+        predicates.add(PredicateOperation.create(Ops.GOE, key, previous));
+
+        OrderSpecifier<?> order = getKeyOrder();
+        boolean nullsLast = false;
+        if (order != null) {
+            if (!order.isAscending()) {
+                Collections.reverse(predicates);
+            }
+            switch (order.getNullHandling()) {
+                case NullsFirst: nullsLast = false; break;
+                case NullsLast: nullsLast = true; break;
+                default: nullsLast = order.isAscending();
+            }
+        }
+        int index = nullsLast ? predicates.size() - 1 : 0;
+        predicates.set(index, ExpressionUtils.or(predicates.get(index), ExpressionUtils.isNull(key)));
+        return predicates;
+    }
+
+    /**
+     * Execute the partitions and merge the results
+     *
+     * @param expr projection
+     * @return merged results
+     */
+    public <RT> CloseableIterator<RT> iterate(Expression<RT> expr) {
+        List<Predicate> predicates = getPredicates();
+        boolean ordered = getKeyOrder() != null;
+        PartitionIterator<RT> iterator = new PartitionIterator<RT>(ordered ? predicates.size() : 1,
+                predicates.size(), bufferSize);
+        for (int i = 0; i < predicates.size(); i++) {
+            BlockingQueue<Object> queue = iterator.queues.get(ordered ? i : 0);
+            executor.execute(new Partition(iterator, queue, predicates.get(i), expr));
+        }
+        return iterator;
+    }
+
+    @Nullable
+    private OrderSpecifier<?> getKeyOrder() {
+        List<OrderSpecifier<?>> orderBy = query.getMetadata().getOrderBy();
+        if (!orderBy.isEmpty() && orderBy.get(0).getTarget().equals(key)) {
+            return orderBy.get(0);
+        } else {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void discoverBounds() {
+        AbstractSQLQuery<?> q = query.clone();
+        q.getMetadata().clearOrderBy();
+        Expression<K> minExpr = Expressions.operation((Class<K>)key.getType(), Ops.AggOps.MIN_AGG, key);
+        Expression<K> maxExpr = Expressions.operation((Class<K>)key.getType(), Ops.AggOps.MAX_AGG, key);
+        Tuple bounds = q.uniqueResult(minExpr, maxExpr);
+        if (bounds != null) {
+            min = bounds.get(minExpr);
+            max = bounds.get(maxExpr);
+        }
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Date) {
+            return ((Date)value).getTime();
+        } else {
+            return ((Number)value).longValue();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K fromLong(long value) {
+        Class<?> type = key.getType();
+        if (type.equals(java.sql.Timestamp.class)) {
+            return (K) new java.sql.Timestamp(value);
+        } else if (type.equals(java.sql.Date.class)) {
+            return (K) new java.sql.Date(value);
+        } else if (Date.class.isAssignableFrom(type)) {
+            return (K) new Date(value);
+        } else {
+            return (K) MathUtils.cast(value, (Class)type);
+        }
+    }
+
+    /**
+     * Reads a single partition into a queue
+     */
+    private final class Partition implements Runnable {
+
+        private final PartitionIterator<?> iterator;
+
+        private final BlockingQueue<Object> queue;
+
+        @Nullable
+        private final Predicate predicate;
+
+        private final Expression<?> expr;
+
+        Partition(PartitionIterator<?> iterator, BlockingQueue<Object> queue, @Nullable Predicate predicate,
+                Expression<?> expr) {
+            this.iterator = iterator;
+            this.queue = queue;
+            this.predicate = predicate;
+            this.expr = expr;
+        }
+
+        @Override
+        public void run() {
+            Object last = END;
+            try {
+                AbstractSQLQuery<?> q = query.clone(connection.get());
+                if (predicate != null) {
+                    q.where(predicate);
+                }
+                CloseableIterator<?> rows = q.iterate(expr);
+                try {
+                    while (rows.hasNext()) {
+                        Object row = rows.next();
+                        if (!iterator.offer(queue, row != null ? row : NULL)) {
+                            return;
+                        }
+                    }
+                } finally {
+                    rows.close();
+                }
+            } catch (Throwable e) {
+                last = new Failure(e);
+            } finally {
+                iterator.offer(queue, last);
+            }
+        }
+
+    }
+
+    /**
+     * Merges the partition queues
+     */
+    private static final class PartitionIterator<RT> implements CloseableIterator<RT> {
+
+        private final List<BlockingQueue<Object>> queues;
+
+        private int remaining;
+
+        private int current;
+
+        @Nullable
+        private Object next;
+
+        private volatile boolean closed;
+
+        PartitionIterator(int queues, int partitions, int bufferSize) {
+            this.queues = new ArrayList<BlockingQueue<Object>>(queues);
+            for (int i = 0; i < queues; i++) {
+                this.queues.add(new ArrayBlockingQueue<Object>(bufferSize));
+            }
+            this.remaining = partitions;
+        }
+
+        boolean offer(BlockingQueue<Object> queue, Object o) {
+            try {
+                while (!queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        return false;
+                    }
+                }
+                return !closed;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && remaining > 0) {
+                Object o;
+                try {
+                    o = queues.get(current).take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new QueryException(e);
+                }
+                if (o == END) {
+                    remaining--;
+                    if (queues.size() > 1) {
+                        current++;
+                    }
+                } else if (o instanceof Failure) {
+                    close();
+                    Throwable cause = ((Failure)o).cause;
+                    throw cause instanceof RuntimeException ? (RuntimeException)cause : new QueryException(cause);
+                } else {
+                    next = o;
+                }
+            }
+            return next != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public RT next() {
+            if (hasNext()) {
+                Object rv = next;
+                next = null;
+                return rv != NULL ? (RT)rv : null;
+            } else {
+                throw new NoSuchElementException();
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            remaining = 0;
+            for (BlockingQueue<Object> queue : queues) {
+                queue.clear();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Objects;
+import com.mysema.query.types.Path;
+
+/**
+ * SQLPlan is the rendered form of a query: the SQL string, the constant paths and
+ * the constants to be bound
+ *
+ * <p>Plans stored in a {@link SQLPlanCache} are templates which only know the layout of the
+ * bindings. They are bound to the constants of each execution via {@link #bind(List)}.</p>
+ *
+ * @author tiwe
+ *
+ */
+public final class SQLPlan {
+
+    private static final int FIXED = -1;
+
+    private final String sql;
+
+    private final List<Path<?>> constantPaths;
+
+    @Nullable
+    private final List<Object> constants;
+
+    @Nullable
+    private final int[] slots;
+
+    @Nullable
+    private final int[] elements;
+
+    @Nullable
+    private final Object[] fixed;
+
+    /**
+     * Create a bound plan from the given serializer
+     *
+     * @param serializer
+     */
+    public SQLPlan(SQLSerializer serializer) {
+        // copied, since the serializer might be reused
+        this(serializer.toString(), new ArrayList<Path<?>>(serializer.getConstantPaths()),
+                new ArrayList<Object>(serializer.getConstants()), null, null, null);
+    }
+
+    private SQLPlan(String sql, List<Path<?>> constantPaths, @Nullable List<Object> constants,
+            @Nullable int[] slots, @Nullable int[] elements, @Nullable Object[] fixed) {
+        this.sql = sql;
+        this.constantPaths = constantPaths;
+        this.constants = constants;
+        this.slots = slots;
+        this.elements = elements;
+        this.fixed = fixed;
+    }
+
+    /**
+     * Create a plan template from a serialization of the actual query and a serialization
+     * of its slotted copy
+     *
+     * @param actual serializer of the query
+     * @param probe serializer of the slotted copy of the query
+     * @return plan template or null, if the bindings can't be derived from the slots
+     */
+    @Nullable
+    static SQLPlan createTemplate(SQLSerializer actual, SQLSerializer probe) {
+        String sql = actual.toString();
+        List<Object> constants = actual.getConstants();
+        List<Object> probeConstants = probe.getConstants();
+        if (!sql.equals(probe.toString())
+            || constants.size() != probeConstants.size()
+            || !actual.getConstantPaths().equals(probe.getConstantPaths())) {
+            return null;
+        }
+        int[] slots = new int[constants.size()];
+        int[] elements = new int[constants.size()];
+        Object[] fixed = new Object[constants.size()];
+        for (int i = 0; i < slots.length; i++) {
+            Object probeConstant = probeConstants.get(i);
+            if (probeConstant instanceof QueryShape.Slot) {
+                QueryShape.Slot slot = (QueryShape.Slot)probeConstant;
+                slots[i] = slot.getIndex();
+                elements[i] = slot.getElement();
+            } else if (Objects.equal(probeConstant, constants.get(i))) {
+                // independent of the slots, e.g. limit and offset
+                slots[i] = FIXED;
+                fixed[i] = probeConstant;
+            } else {
+                // derived from a slot value, e.g. an escaped like pattern
+                return null;
+            }
+        }
+        return new SQLPlan(sql, new ArrayList<Path<?>>(actual.getConstantPaths()), null,
+                slots, elements, fixed);
+    }
+
+    /**
+     * Bind the given slot values to this plan template
+     *
+     * @param values slot values, collection constants as arrays
+     * @return bound plan
+     */
+    public SQLPlan bind(List<Object> values) {
+        if (slots == null) {
+            throw new IllegalStateException("Plan is already bound");
+        }
+        List<Object> rv = new ArrayList<Object>(slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == FIXED) {
+                rv.add(fixed[i]);
+            } else if (elements[i] > FIXED) {
+                rv.add(((Object[])values.get(slots[i]))[elements[i]]);
+            } else {
+                rv.add(values.get(slots[i]));
+            }
+        }
+        return new SQLPlan(sql, constantPaths, rv, null, null, null);
+    }
+
+    /**
+     * @return the SQL string
+     */
+    public String getSQL() {
+        return sql;
+    }
+
+    /**
+     * @return the paths of the constants, with nulls for unknown paths
+     */
+    public List<Path<?>> getConstantPaths() {
+        return constantPaths;
+    }
+
+    /**
+     * @return the constants to be bound
+     */
+    public List<Object> getConstants() {
+        if (constants == null) {
+            throw new IllegalStateException("Plan is not bound");
+        }
+        return constants;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+
+}
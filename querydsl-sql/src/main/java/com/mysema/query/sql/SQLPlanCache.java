@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Optional;
+
+/**
+ * SQLPlanCache is a bounded LRU cache of rendered SQL keyed by the structure of the query
+ *
+ * <p>Queries which differ only in their constant values share the same {@link SQLPlan}, so that
+ * only the extraction of the constants is done per execution. Shapes whose bindings can't be
+ * derived from the constants, e.g. because of escaped like patterns, are remembered as
+ * uncacheable and serialized as usual.</p>
+ *
+ * <p>Usage</p>
+ *
+ * <pre>
+ * configuration.setPlanCache(new SQLPlanCache(1000));
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+public class SQLPlanCache {
+
+    private final int maxSize;
+
+    private final Map<Object, Optional<SQLPlan>> plans;
+
+    private long hits, misses;
+
+    /**
+     * Create a new SQLPlanCache instance
+     *
+     * @param maxSize maximum amount of cached query shapes
+     */
+    public SQLPlanCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize needs to be positive, got " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.plans = new LinkedHashMap<Object, Optional<SQLPlan>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Optional<SQLPlan>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the plan for the given key
+     *
+     * @param key
+     * @return null, if the key is unknown, or absent, if the key is known to be uncacheable
+     */
+    @Nullable
+    public synchronized Optional<SQLPlan> get(Object key) {
+        Optional<SQLPlan> plan = plans.get(key);
+        if (plan != null && plan.isPresent()) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return plan;
+    }
+
+    /**
+     * Store the plan for the given key
+     *
+     * @param key
+     * @param plan plan template or null, if the key is uncacheable
+     */
+    public synchronized void put(Object key, @Nullable SQLPlan plan) {
+        plans.put(key, Optional.fromNullable(plan));
+    }
+
+    /**
+     * Remove all cached plans, the statistics are kept
+     */
+    public synchronized void clear() {
+        plans.clear();
+    }
+
+    /**
+     * @return amount of lookups which returned a plan
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return amount of lookups which didn't return a plan
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return amount of cached query shapes
+     */
+    public synchronized int getSize() {
+        return plans.size();
+    }
+
+    /**
+     * @return maximum amount of cached query shapes
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+}
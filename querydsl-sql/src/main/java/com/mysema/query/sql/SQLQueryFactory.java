@@ -58,6 +58,16 @@ public class SQLQueryFactory extends AbstractSQLQueryFactory<SQLQuery, SQLSubQue
         super(configuration, new DataSourceProvider(dataSource));
     }
 
+    public SQLQueryFactory(Configuration configuration, Provider<Connection> connection,
+            SQLStatementCache statementCache) {
+        super(configuration, connection, statementCache);
+    }
+
+    public SQLQueryFactory(Configuration configuration, DataSource dataSource,
+            SQLStatementCache statementCache) {
+        super(configuration, new DataSourceProvider(dataSource), statementCache);
+    }
+
     @Override
     public SQLQuery query() {
         return new SQLQuery(connection.get(), configuration);
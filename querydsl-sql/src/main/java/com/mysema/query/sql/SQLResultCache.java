@@ -0,0 +1,299 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mysema.commons.lang.Pair;
+import com.mysema.query.QueryException;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.dml.SQLInsertBatch;
+import com.mysema.query.sql.dml.SQLMergeBatch;
+import com.mysema.query.sql.dml.SQLUpdateBatch;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.SubQueryExpression;
+
+/**
+ * SQLResultCache caches the results of queries keyed by the rendered SQL, the bindings and the
+ * projection
+ *
+ * <p>The cache is bounded by size and by the time since the results were loaded. As a listener
+ * it invalidates the cached results of all queries reading a table when an insert, update,
+ * delete or merge clause on that table has been executed via the same configuration. Changes
+ * made by other means, e.g. other applications or triggers, are only picked up after the
+ * results have expired.</p>
+ *
+ * <p>The invalidation happens when the execution of the clause has ended. Results loaded
+ * concurrently with the execution are not cached beyond it, but clauses executed in an
+ * explicit transaction aren't visible to other connections before the commit. To prevent
+ * results loaded in between from being cached, {@link #invalidate(SchemaAndTable)} the
+ * changed tables after the commit.</p>
+ *
+ * <p>Queries use the cache only when they are marked cacheable</p>
+ *
+ * <pre>
+ * configuration.setResultCache(new SQLResultCache(1000, 5, TimeUnit.MINUTES));
+ * ...
+ * List&lt;String&gt; names = query.from(country).setCacheable(true).list(country.name);
+ * </pre>
+ *
+ * <p>The cached result objects are shared between queries and should not be modified.</p>
+ *
+ * @author tiwe
+ *
+ */
+public class SQLResultCache implements SQLDetailedListener {
+
+    /**
+     * Cached value with the versions of the tables it was loaded from
+     */
+    private static final class Entry {
+
+        private final Optional<?> value;
+
+        private final AtomicLong[] tables;
+
+        private final long[] versions;
+
+        Entry(Optional<?> value, AtomicLong[] tables, long[] versions) {
+            this.value = value;
+            this.tables = tables;
+            this.versions = versions;
+        }
+
+        boolean isValid() {
+            for (int i = 0; i < tables.length; i++) {
+                if (tables[i].get() != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private final Cache<Object, Entry> cache;
+
+    private final ConcurrentMap<SchemaAndTable, AtomicLong> versions = new ConcurrentHashMap<SchemaAndTable, AtomicLong>();
+
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(),
+            invalidations = new AtomicLong();
+
+    /**
+     * Create a new SQLResultCache instance
+     *
+     * @param maxSize maximum amount of cached results
+     * @param ttl time to live of cached results
+     * @param unit unit of ttl
+     */
+    public SQLResultCache(int maxSize, long ttl, TimeUnit unit) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl, unit).build();
+    }
+
+    /**
+     * Get the cached value for the given key or load it
+     *
+     * @param key cache key
+     * @param tables tables read by the query
+     * @param loader loader of the value
+     * @return cached or loaded value
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T get(Object key, Collection<SchemaAndTable> tables, Callable<T> loader) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.isValid()) {
+            hits.incrementAndGet();
+            return (T) entry.value.orNull();
+        }
+        misses.incrementAndGet();
+        // the versions are taken before loading, so that concurrent changes invalidate the entry
+        AtomicLong[] counters = new AtomicLong[tables.size()];
+        long[] loaded = new long[tables.size()];
+        int i = 0;
+        for (SchemaAndTable table : tables) {
+            counters[i] = getVersion(table);
+            loaded[i] = counters[i].get();
+            i++;
+        }
+        T value;
+        try {
+            value = loader.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new QueryException(e);
+        }
+        cache.put(key, new Entry(Optional.fromNullable(value), counters, loaded));
+        return value;
+    }
+
+    /**
+     * Invalidate the cached results of the queries reading the given table
+     *
+     * @param table
+     */
+    public void invalidate(SchemaAndTable table) {
+        invalidations.incrementAndGet();
+        getVersion(table).incrementAndGet();
+    }
+
+    /**
+     * Invalidate all cached results
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private AtomicLong getVersion(SchemaAndTable table) {
+        AtomicLong version = versions.get(table);
+        if (version == null) {
+            AtomicLong created = new AtomicLong();
+            version = versions.putIfAbsent(table, created);
+            if (version == null) {
+                version = created;
+            }
+        }
+        return version;
+    }
+
+    /**
+     * @return amount of lookups which returned a cached result
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return amount of lookups which loaded the result
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return share of the lookups which returned a cached result
+     */
+    public double getHitRate() {
+        long h = hits.get(), total = h + misses.get();
+        return total > 0 ? (double) h / total : 0.0;
+    }
+
+    /**
+     * @return amount of invalidations
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    /**
+     * @return amount of cached results, including expired and invalidated ones not yet removed
+     */
+    public long getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public void notifyQuery(QueryMetadata md) {
+        // queries don't change the tables
+    }
+
+    @Override
+    public void notifyDelete(RelationalPath<?> entity, QueryMetadata md) {
+        // invalidated at the end of the execution
+    }
+
+    @Override
+    public void notifyDeletes(RelationalPath<?> entity, List<QueryMetadata> batches) {
+        // invalidated at the end of the execution
+    }
+
+    @Override
+    public void notifyMerge(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> keys,
+            List<Path<?>> columns, List<Expression<?>> values, SubQueryExpression<?> subQuery) {
+        // invalidated at the end of the execution
+    }
+
+    @Override
+    public void notifyMerges(RelationalPath<?> entity, QueryMetadata md, List<SQLMergeBatch> batches) {
+        // invalidated at the end of the execution
+    }
+
+    @Override
+    public void notifyInsert(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> columns,
+            List<Expression<?>> values, SubQueryExpression<?> subQuery) {
+        // invalidated at the end of the execution
+    }
+
+    @Override
+    public void notifyInserts(RelationalPath<?> entity, QueryMetadata md, List<SQLInsertBatch> batches) {
+        // invalidated at the end of the execution
+    }
+
+    @Override
+    public void notifyUpdate(RelationalPath<?> entity, QueryMetadata md,
+            List<Pair<Path<?>, Expression<?>>> updates) {
+        // invalidated at the end of the execution
+    }
+
+    @Override
+    public void notifyUpdates(RelationalPath<?> entity, List<SQLUpdateBatch> batches) {
+        // invalidated at the end of the execution
+    }
+
+    @Override
+    public void start(SQLListenerContext context) {}
+
+    @Override
+    public void preRender(SQLListenerContext context) {}
+
+    @Override
+    public void rendered(SQLListenerContext context) {}
+
+    @Override
+    public void prePrepare(SQLListenerContext context) {}
+
+    @Override
+    public void prepared(SQLListenerContext context) {}
+
+    @Override
+    public void preExecute(SQLListenerContext context) {}
+
+    @Override
+    public void executed(SQLListenerContext context) {}
+
+    @Override
+    public void exception(SQLListenerContext context) {}
+
+    @Override
+    public void end(SQLListenerContext context) {
+        // only DML clauses have an entity, also failed ones might have changed rows
+        if (context.getEntity() != null) {
+            invalidate(context.getEntity().getSchemaAndTable());
+        }
+    }
+
+}
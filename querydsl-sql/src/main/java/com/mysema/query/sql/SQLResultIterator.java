@@ -17,6 +17,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -41,22 +42,58 @@ public abstract class SQLResultIterator<T> implements CloseableIterator<T> {
 
     private final Statement stmt;
 
+    @Nullable
+    private Future<?> watchdog;
+
+    private boolean cancelOnClose;
+
     public SQLResultIterator(Configuration conf, Statement stmt, ResultSet rs) {
         this.configuration = conf;
         this.stmt = stmt;
         this.rs = rs;
     }
 
+    /**
+     * Set the scheduled cancellation of the statement, which is released when the iterator
+     * is closed
+     *
+     * @param watchdog
+     */
+    void setWatchdog(@Nullable Future<?> watchdog) {
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Set whether the statement is cancelled when the iterator is closed before all rows
+     * have been read, so that streaming drivers don't fetch the remaining rows
+     *
+     * @param cancelOnClose
+     */
+    void setCancelOnClose(boolean cancelOnClose) {
+        this.cancelOnClose = cancelOnClose;
+    }
+
     @Override
     public void close() {
+        if (watchdog != null) {
+            SQLWatchdog.release(watchdog);
+            watchdog = null;
+        }
         try{
             try {
-                if (rs != null) {
-                    rs.close();
+                if (cancelOnClose && !Boolean.FALSE.equals(next) && stmt != null) {
+                    cancelOnClose = false;
+                    stmt.cancel();
                 }
             } finally {
-                if (stmt != null) {
-                    stmt.close();
+                try {
+                    if (rs != null) {
+                        rs.close();
+                    }
+                } finally {
+                    if (stmt != null) {
+                        stmt.close();
+                    }
                 }
             }
         }catch(SQLException e) {
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
+import javax.sql.DataSource;
+
+import com.google.common.collect.ImmutableList;
+import com.mysema.commons.lang.Pair;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.dml.SQLInsertBatch;
+import com.mysema.query.sql.dml.SQLMergeBatch;
+import com.mysema.query.sql.dml.SQLUpdateBatch;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.SubQueryExpression;
+
+/**
+ * SQLRoutingQueryFactory sends queries to a pool of replicas and DML clauses to the primary
+ *
+ * <p>The connection of a query is resolved when the query is executed. The primary is used
+ * instead of a replica</p>
+ *
+ * <ul>
+ * <li>if the current thread executed a DML clause of this factory on a connection which is still
+ * in a transaction, in which case that connection is used until it is committed, rolled back or
+ * closed via this factory, or closed elsewhere, and</li>
+ * <li>if one of the queried tables was changed via this factory within the configured
+ * stickiness, to avoid reading stale data from lagging replicas</li>
+ * </ul>
+ *
+ * <p>Usage</p>
+ *
+ * <pre>
+ * SQLRoutingQueryFactory queryFactory = new SQLRoutingQueryFactory(configuration, primary,
+ *     ImmutableList.of(replica1, replica2));
+ * queryFactory.setStickiness(2, TimeUnit.SECONDS);
+ * </pre>
+ *
+ * <p>The factory registers a listener in the configuration to track the changed tables, which is
+ * removed via {@link #close()}.</p>
+ *
+ * @author tiwe
+ *
+ */
+public class SQLRoutingQueryFactory extends SQLQueryFactory {
+
+    /**
+     * Balancing defines how a replica is picked for a query
+     */
+    public enum Balancing {
+        /**
+         * use the replicas in turn
+         */
+        ROUND_ROBIN,
+        /**
+         * use the replica with the least queries in execution
+         */
+        LEAST_OUTSTANDING
+    }
+
+    private final List<Provider<Connection>> replicas;
+
+    private final AtomicInteger[] outstanding;
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private final ConcurrentMap<SchemaAndTable, Long> writes = new ConcurrentHashMap<SchemaAndTable, Long>();
+
+    private final Primary primary;
+
+    private final RoutingListener listener = new RoutingListener();
+
+    private Balancing balancing = Balancing.ROUND_ROBIN;
+
+    private long stickiness;
+
+    public SQLRoutingQueryFactory(Configuration configuration, DataSource primary, DataSource... replicas) {
+        this(configuration, new DataSourceProvider(primary), providers(replicas));
+    }
+
+    public SQLRoutingQueryFactory(Configuration configuration, Provider<Connection> primary,
+            List<? extends Provider<Connection>> replicas) {
+        this(configuration, new Primary(primary), replicas);
+    }
+
+    private SQLRoutingQueryFactory(Configuration configuration, Primary primary,
+            List<? extends Provider<Connection>> replicas) {
+        super(configuration, primary);
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("No replicas given");
+        }
+        this.primary = primary;
+        this.replicas = ImmutableList.copyOf(replicas);
+        this.outstanding = new AtomicInteger[replicas.size()];
+        for (int i = 0; i < outstanding.length; i++) {
+            outstanding[i] = new AtomicInteger();
+        }
+        configuration.addListener(listener);
+    }
+
+    private static List<Provider<Connection>> providers(DataSource... dataSources) {
+        List<Provider<Connection>> rv = new ArrayList<Provider<Connection>>(dataSources.length);
+        for (DataSource dataSource : dataSources) {
+            rv.add(new DataSourceProvider(dataSource));
+        }
+        return rv;
+    }
+
+    /**
+     * Set how replicas are picked, defaults to round robin
+     *
+     * @param balancing
+     */
+    public void setBalancing(Balancing balancing) {
+        this.balancing = balancing;
+    }
+
+    /**
+     * Set the time after a change to a table during which queries of that table are sent to
+     * the primary, defaults to zero
+     *
+     * @param duration
+     * @param unit
+     */
+    public void setStickiness(long duration, TimeUnit unit) {
+        this.stickiness = unit.toNanos(duration);
+    }
+
+    /**
+     * Remove the listener of this factory from the configuration, changes are not tracked
+     * anymore afterwards
+     */
+    public void close() {
+        configuration.removeListener(listener);
+    }
+
+    @Override
+    public SQLQuery query() {
+        Routing routing = new Routing();
+        SQLQuery query = new SQLQuery(routing.proxy, configuration);
+        routing.metadata = query.getMetadata();
+        return query;
+    }
+
+    /**
+     * Get the connection for a query with the given metadata
+     *
+     * @param metadata
+     * @return replica index or -1 for the primary, and the connection
+     */
+    Pair<Integer, Connection> route(QueryMetadata metadata) {
+        Connection tx = primary.getTransaction();
+        if (tx != null) {
+            try {
+                if (!tx.isClosed()) {
+                    return Pair.of(-1, tx);
+                }
+            } catch (SQLException e) {
+                throw configuration.translate(e);
+            }
+            primary.unpin(tx);
+        }
+        if (stickiness > 0 && !writes.isEmpty()) {
+            long now = System.nanoTime();
+            for (RelationalPath<?> path : RelationalPathExtractor.extract(metadata)) {
+                Long written = writes.get(path.getSchemaAndTable());
+                if (written != null && now - written < stickiness) {
+                    return Pair.of(-1, connection.get());
+                }
+            }
+        }
+        int replica = nextReplica();
+        return Pair.of(replica, replicas.get(replica).get());
+    }
+
+    private int nextReplica() {
+        int start = (counter.getAndIncrement() & Integer.MAX_VALUE) % outstanding.length;
+        if (balancing == Balancing.ROUND_ROBIN) {
+            return start;
+        }
+        int replica = start;
+        for (int i = 1; i < outstanding.length; i++) {
+            int candidate = (start + i) % outstanding.length;
+            if (outstanding[candidate].get() < outstanding[replica].get()) {
+                replica = candidate;
+            }
+        }
+        return replica;
+    }
+
+    /**
+     * @param replica
+     * @return amount of queries in execution on the given replica
+     */
+    public int getOutstanding(int replica) {
+        return outstanding[replica].get();
+    }
+
+    /**
+     * Lazily resolved connection of a single query
+     */
+    private final class Routing implements InvocationHandler {
+
+        private final Connection proxy;
+
+        private QueryMetadata metadata;
+
+        @Nullable
+        private Connection target;
+
+        private int replica = -1;
+
+        private boolean executing;
+
+        Routing() {
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        void start() {
+            if (target != null && replica > -1 && !executing) {
+                outstanding[replica].incrementAndGet();
+                executing = true;
+            }
+        }
+
+        void end() {
+            if (executing) {
+                outstanding[replica].decrementAndGet();
+                executing = false;
+            }
+        }
+
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals") && args.length == 1) {
+                return p == args[0];
+            } else if (name.equals("hashCode") && args == null) {
+                return System.identityHashCode(p);
+            } else if (target == null) {
+                if (name.equals("close") && args == null) {
+                    return null;
+                }
+                Pair<Integer, Connection> routed = route(metadata);
+                replica = routed.getFirst();
+                target = routed.getSecond();
+                start();
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+    }
+
+    @Nullable
+    private static Routing getRouting(Connection connection) {
+        if (connection != null && Proxy.isProxyClass(connection.getClass())
+            && Proxy.getInvocationHandler(connection) instanceof Routing) {
+            return (Routing) Proxy.getInvocationHandler(connection);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Provider of primary connections, which keeps track of the transaction of the current thread
+     */
+    private static final class Primary implements Provider<Connection> {
+
+        private final Provider<Connection> provider;
+
+        // the connection is only weakly referenced, since it is owned by the caller
+        private final ThreadLocal<WeakReference<Connection>> transaction = new ThreadLocal<WeakReference<Connection>>();
+
+        Primary(Provider<Connection> provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public Connection get() {
+            return new Transactional(this, provider.get()).proxy;
+        }
+
+        @Nullable
+        Connection getTransaction() {
+            WeakReference<Connection> tx = transaction.get();
+            return tx != null ? tx.get() : null;
+        }
+
+        void pin(Connection connection) {
+            transaction.set(new WeakReference<Connection>(connection));
+        }
+
+        void unpin(Connection connection) {
+            if (getTransaction() == connection) {
+                transaction.remove();
+            }
+        }
+
+    }
+
+    /**
+     * Primary connection, which ends the pinning of its transaction at commit, rollback and close
+     */
+    private static final class Transactional implements InvocationHandler {
+
+        private final Primary primary;
+
+        private final Connection target;
+
+        private final Connection proxy;
+
+        Transactional(Primary primary, Connection target) {
+            this.primary = primary;
+            this.target = target;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals") && args.length == 1) {
+                return p == args[0];
+            } else if (name.equals("hashCode") && args == null) {
+                return System.identityHashCode(p);
+            }
+            Object rv;
+            try {
+                rv = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if ((name.equals("commit") || name.equals("rollback") || name.equals("close")) && args == null
+                || name.equals("setAutoCommit") && Boolean.TRUE.equals(args[0])) {
+                primary.unpin(target);
+            }
+            return rv;
+        }
+
+    }
+
+    @Nullable
+    private Transactional getTransactional(Connection connection) {
+        if (connection != null && Proxy.isProxyClass(connection.getClass())
+            && Proxy.getInvocationHandler(connection) instanceof Transactional) {
+            Transactional transactional = (Transactional) Proxy.getInvocationHandler(connection);
+            return transactional.primary == primary ? transactional : null;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Tracks the queries in execution per replica and the changed tables
+     */
+    private final class RoutingListener implements SQLDetailedListener {
+
+        @Override
+        public void start(SQLListenerContext context) {
+            Routing routing = getRouting(context.getConnection());
+            if (routing != null) {
+                routing.start();
+            }
+        }
+
+        @Override
+        public void preRender(SQLListenerContext context) {}
+
+        @Override
+        public void rendered(SQLListenerContext context) {}
+
+        @Override
+        public void prePrepare(SQLListenerContext context) {}
+
+        @Override
+        public void prepared(SQLListenerContext context) {}
+
+        @Override
+        public void preExecute(SQLListenerContext context) {}
+
+        @Override
+        public void executed(SQLListenerContext context) {}
+
+        @Override
+        public void exception(SQLListenerContext context) {}
+
+        @Override
+        public void end(SQLListenerContext context) {
+            Routing routing = getRouting(context.getConnection());
+            if (routing != null) {
+                routing.end();
+            } else if (context.getEntity() != null) {
+                // the change is visible to others after the execution at the earliest
+                writes.put(context.getEntity().getSchemaAndTable(), System.nanoTime());
+                Transactional transactional = getTransactional(context.getConnection());
+                try {
+                    if (transactional != null && !transactional.target.getAutoCommit()) {
+                        primary.pin(transactional.target);
+                    }
+                } catch (SQLException e) {
+                    throw configuration.translate(e);
+                }
+            }
+        }
+
+        @Override
+        public void notifyQuery(QueryMetadata md) {}
+
+        @Override
+        public void notifyDelete(RelationalPath<?> entity, QueryMetadata md) {}
+
+        @Override
+        public void notifyDeletes(RelationalPath<?> entity, List<QueryMetadata> batches) {}
+
+        @Override
+        public void notifyMerge(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> keys,
+                List<Path<?>> columns, List<Expression<?>> values, SubQueryExpression<?> subQuery) {}
+
+        @Override
+        public void notifyMerges(RelationalPath<?> entity, QueryMetadata md, List<SQLMergeBatch> batches) {}
+
+        @Override
+        public void notifyInsert(RelationalPath<?> entity, QueryMetadata md, List<Path<?>> columns,
+                List<Expression<?>> values, SubQueryExpression<?> subQuery) {}
+
+        @Override
+        public void notifyInserts(RelationalPath<?> entity, QueryMetadata md, List<SQLInsertBatch> batches) {}
+
+        @Override
+        public void notifyUpdate(RelationalPath<?> entity, QueryMetadata md,
+                List<Pair<Path<?>, Expression<?>>> updates) {}
+
+        @Override
+        public void notifyUpdates(RelationalPath<?> entity, List<SQLUpdateBatch> batches) {}
+
+    }
+
+}
@@ -14,6 +14,8 @@
 package com.mysema.query.sql;
 
 import javax.annotation.Nullable;
+import java.lang.reflect.Array;
+import java.sql.Types;
 import java.util.*;
 
 import com.google.common.base.Strings;
@@ -25,8 +27,10 @@ import com.mysema.query.JoinFlag;
 import com.mysema.query.QueryFlag;
 import com.mysema.query.QueryFlag.Position;
 import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.dml.SQLInsertBatch;
 import com.mysema.query.sql.types.Null;
 import com.mysema.query.support.Expressions;
+import com.mysema.query.support.PredicateSimplifier;
 import com.mysema.query.support.SerializerBase;
 import com.mysema.query.types.*;
 import com.mysema.query.types.Template.Element;
@@ -44,9 +48,11 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
 
     private static final String COMMA = ", ";
 
-    private final List<Path<?>> constantPaths = new ArrayList<Path<?>>();
+    private static final Predicate CONTRADICTION = Expressions.booleanTemplate("1 = 0");
 
-    private final List<Object> constants = new ArrayList<Object>();
+    private final List<Path<?>> constantPaths;
+
+    private final List<Object> constants;
 
     private final boolean dml;
 
@@ -68,6 +74,10 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
 
     private boolean useLiterals = false;
 
+    // owning pool of reusable instances
+    @Nullable
+    SQLSerializerPool pool;
+
     public SQLSerializer(Configuration conf) {
         this(conf, false);
     }
@@ -77,6 +87,50 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
         this.configuration = conf;
         this.templates = conf.getTemplates();
         this.dml = dml;
+        this.constantPaths = new ArrayList<Path<?>>();
+        this.constants = new ArrayList<Object>();
+    }
+
+    /**
+     * Create a new SQLSerializer with a presized buffer
+     *
+     * @param conf
+     * @param dml
+     * @param capacity initial capacity of the buffer, the constant lists are sized relative to it
+     */
+    public SQLSerializer(Configuration conf, boolean dml, int capacity) {
+        super(conf.getTemplates(), capacity);
+        this.configuration = conf;
+        this.templates = conf.getTemplates();
+        this.dml = dml;
+        // about one bound constant per 32 characters of SQL
+        this.constantPaths = new ArrayList<Path<?>>(capacity / 32);
+        this.constants = new ArrayList<Object>(capacity / 32);
+    }
+
+    /**
+     * Clear the state of this serializer and restore its default settings so that it can be used
+     * for another query, the capacity of the buffer and the constant lists is kept
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        constantPaths.clear();
+        constants.clear();
+        stage = Stage.SELECT;
+        skipParent = false;
+        dmlWithSchema = false;
+        entity = null;
+        inUnion = false;
+        inJoin = false;
+        useLiterals = false;
+    }
+
+    /**
+     * @return true, if this serializer renders DML clauses
+     */
+    public boolean isDml() {
+        return dml;
     }
 
     protected void appendAsColumnName(Path<?> path) {
@@ -190,9 +244,9 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
         skipParent = false;
         final List<? extends Expression<?>> select = metadata.getProjection();
         final List<JoinExpression> joins = metadata.getJoins();
-        final Predicate where = metadata.getWhere();
+        final Predicate where = simplify(metadata.getWhere(), null);
         final List<? extends Expression<?>> groupBy = metadata.getGroupBy();
-        final Predicate having = metadata.getHaving();
+        final Predicate having = simplify(metadata.getHaving(), null);
         final List<OrderSpecifier<?>> orderBy = metadata.getOrderBy();
         final Set<QueryFlag> flags = metadata.getFlags();
         final boolean hasFlags = !flags.isEmpty();
@@ -371,6 +425,29 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
         skipParent = oldSkipParent;
     }
 
+    /**
+     * Simplify the given filter condition, if enabled in the configuration
+     *
+     * @param predicate
+     * @param tautology replacement, if the condition is always satisfied
+     * @return
+     */
+    @Nullable
+    private Predicate simplify(@Nullable Predicate predicate, @Nullable Predicate tautology) {
+        if (predicate == null || !configuration.getSimplifyPredicates()) {
+            return predicate;
+        }
+        Predicate rv = PredicateSimplifier.simplify(predicate);
+        if (rv == null) {
+            return tautology;
+        } else if (PredicateSimplifier.isFalse(rv)) {
+            // boolean literals aren't supported by all backends
+            return CONTRADICTION;
+        } else {
+            return rv;
+        }
+    }
+
     protected void handleOrderBy(List<OrderSpecifier<?>> orderBy) {
         boolean first = true;
         for (final OrderSpecifier<?> os : orderBy) {
@@ -539,6 +616,102 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
 
     }
 
+    /**
+     * Serialize the given column without its table
+     *
+     * @param column column of the current DML entity
+     */
+    void serializeColumn(Path<?> column) {
+        boolean oldSkipParent = skipParent;
+        skipParent = true;
+        handle(column);
+        skipParent = oldSkipParent;
+    }
+
+    /**
+     * Serialize the given columns without their table as a comma separated list
+     *
+     * @param columns columns of the current DML entity
+     */
+    void serializeColumns(List<? extends Path<?>> columns) {
+        boolean oldSkipParent = skipParent;
+        skipParent = true;
+        handle(COMMA, columns);
+        skipParent = oldSkipParent;
+    }
+
+    /**
+     * Serialize the table and the column list of the given entity, e.g. for bulk loads
+     *
+     * @param entity table
+     * @param columns columns
+     */
+    public void serializeTarget(RelationalPath<?> entity, List<Path<?>> columns) {
+        this.entity = entity;
+        dmlWithSchema = true;
+        handle(entity);
+        dmlWithSchema = false;
+        append(" (");
+        skipParent = true;
+        handle(COMMA, columns);
+        skipParent = false;
+        append(")");
+    }
+
+    /**
+     * Serialize a multi row insert
+     *
+     * @param metadata
+     * @param entity
+     * @param batches rows with the same columns
+     */
+    public void serializeInsert(QueryMetadata metadata, RelationalPath<?> entity,
+            List<SQLInsertBatch> batches) {
+        this.entity = entity;
+        templates.serializeInsert(metadata, entity, batches, this);
+    }
+
+    void serializeForInsert(QueryMetadata metadata, RelationalPath<?> entity,
+            List<SQLInsertBatch> batches) {
+        serialize(Position.START, metadata.getFlags());
+
+        if (!serialize(Position.START_OVERRIDE, metadata.getFlags())) {
+            append(templates.getInsertInto());
+        }
+        serialize(Position.AFTER_SELECT, metadata.getFlags());
+
+        dmlWithSchema = true;
+        handle(entity);
+        dmlWithSchema = false;
+        // columns
+        List<Path<?>> columns = batches.get(0).getColumns();
+        append(" (");
+        skipParent = true;
+        handle(COMMA, columns);
+        skipParent = false;
+        append(")");
+
+        // values
+        append(templates.getValues());
+        boolean first = true;
+        for (SQLInsertBatch batch : batches) {
+            if (!first) {
+                append(COMMA);
+            }
+            if (!useLiterals) {
+                for (int i = 0; i < columns.size(); i++) {
+                    if (batch.getValues().get(i) instanceof Constant<?>) {
+                        constantPaths.add(columns.get(i));
+                    }
+                }
+            }
+            append("(");
+            handle(COMMA, batch.getValues());
+            append(")");
+            first = false;
+        }
+    }
+
     public void serializeUpdate(QueryMetadata metadata, RelationalPath<?> entity,
             List<Pair<Path<?>, Expression<?>>> updates) {
         templates.serializeUpdate(metadata, entity, updates, this);
@@ -598,7 +771,7 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
                     }
                     handleJoinTarget(je);
                     if (je.getCondition() != null) {
-                        append(templates.getOn()).handle(je.getCondition());
+                        append(templates.getOn()).handle(simplify(je.getCondition(), je.getCondition()));
                     }
                 } else {
                     serialize(JoinFlag.Position.START, je.getFlags());
@@ -609,7 +782,7 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
                     handleJoinTarget(je);
                     serialize(JoinFlag.Position.BEFORE_CONDITION, je.getFlags());
                     if (je.getCondition() != null) {
-                        append(templates.getOn()).handle(je.getCondition());
+                        append(templates.getOn()).handle(simplify(je.getCondition(), je.getCondition()));
                     }
                     serialize(JoinFlag.Position.END, je.getFlags());
                 }
@@ -825,8 +998,112 @@ public class SQLSerializer extends SerializerBase<SQLSerializer> {
         return null;
     }
 
+    /**
+     * Convert the given collection constant into an array which can be bound as a single parameter
+     *
+     * @param constant
+     * @return array or null, if the collection can't be bound as an array
+     */
+    @Nullable
+    private Object[] toArray(Object constant) {
+        if (!(constant instanceof Collection) || ((Collection<?>)constant).isEmpty()) {
+            return null;
+        }
+        Collection<?> collection = (Collection<?>)constant;
+        Class<?> elementType = null;
+        for (Object o : collection) {
+            if (o == null || (elementType != null && !elementType.equals(o.getClass()))) {
+                return null;
+            }
+            elementType = o.getClass();
+        }
+        Object[] array = (Object[])Array.newInstance(elementType, collection.size());
+        try {
+            if (configuration.getType(null, array.getClass()).getSQLTypes()[0] != Types.ARRAY) {
+                return null;
+            }
+        } catch (IllegalArgumentException e) {
+            // no array type registered for the element type
+            return null;
+        }
+        return collection.toArray(array);
+    }
+
+    /**
+     * Split the given in or not in condition into chunks of the maximum in list size and pad
+     * the chunks to the next power of two, if enabled
+     *
+     * @param operator
+     * @param args
+     * @return rewritten condition or null, if the condition is kept as is
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private Predicate bucketInList(Operator<?> operator, List<? extends Expression<?>> args) {
+        Object constant = ((Constant<?>)args.get(1)).getConstant();
+        if (!(constant instanceof Collection) || ((Collection<?>)constant).isEmpty()) {
+            return null;
+        }
+        int size = ((Collection<?>)constant).size();
+        int maxSize = Math.min(templates.getMaxInListSize(), templates.getMaxParameters());
+        boolean padding = configuration.getInListPadding();
+        if (size <= maxSize && (!padding || Integer.bitCount(size) == 1)) {
+            // the collection is only copied, if it is rewritten
+            return null;
+        }
+        List<Object> values = new ArrayList<Object>((Collection<?>)constant);
+        List<Predicate> chunks = new ArrayList<Predicate>();
+        for (int i = 0; i < values.size(); i += maxSize) {
+            List<Object> chunk = new ArrayList<Object>(values.subList(i, Math.min(values.size(), i + maxSize)));
+            if (padding) {
+                int paddedSize = Math.min(maxSize, Integer.highestOneBit(chunk.size() - 1) << 1);
+                Object last = chunk.get(chunk.size() - 1);
+                while (chunk.size() < paddedSize) {
+                    chunk.add(last);
+                }
+            }
+            chunks.add(new PredicateOperation((Operator)operator, ImmutableList.of(args.get(0),
+                    ConstantImpl.create(chunk))));
+        }
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        } else if (operator == Ops.IN) {
+            return ExpressionUtils.anyOf(chunks);
+        } else {
+            return ExpressionUtils.allOf(chunks);
+        }
+    }
+
     @Override
     protected void visitOperation(Class<?> type, Operator<?> operator, List<? extends Expression<?>> args) {
+        if ((operator == Ops.IN || operator == Ops.NOT_IN)
+         && !useLiterals
+         && templates.isArrayParameters()
+         && configuration.getUseArrayParameters()
+         && args.get(1) instanceof Constant<?>) {
+            Object[] array = toArray(((Constant<?>)args.get(1)).getConstant());
+            if (array != null) {
+                // bound without constant path, the type of the path is not the array type
+                super.visitOperation(type, operator == Ops.IN ? SQLOps.IN_ARRAY : SQLOps.NOT_IN_ARRAY,
+                        ImmutableList.of(args.get(0), ConstantImpl.create(array)));
+                return;
+            }
+        }
+
+        if ((operator == Ops.IN || operator == Ops.NOT_IN)
+         && !useLiterals
+         && args.get(1) instanceof Constant<?>) {
+            Predicate rewritten = bucketInList(operator, args);
+            if (rewritten instanceof Operation && ((Operation<?>)rewritten).getOperator() == operator) {
+                // single padded chunk
+                args = ((Operation<?>)rewritten).getArgs();
+            } else if (rewritten != null) {
+                // wrapped, since the precedence of the original operator was used by the caller
+                append("(").handle(rewritten).append(")");
+                return;
+            }
+        }
+
         if (args.size() == 2
          && !useLiterals
          && args.get(0) instanceof Path<?>
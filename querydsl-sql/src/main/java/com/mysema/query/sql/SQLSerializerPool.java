@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.util.ArrayDeque;
+
+/**
+ * SQLSerializerPool keeps a few idle serializers per thread, so that rendering a query doesn't
+ * allocate a new buffer and new constant lists each time
+ *
+ * <p>Serializers are handed out by {@link #acquire(boolean)} and given back via
+ * {@link #release(SQLSerializer)} once their output has been copied. Serializers which are
+ * not released are simply garbage collected.</p>
+ *
+ * @author tiwe
+ *
+ */
+final class SQLSerializerPool {
+
+    private static final int CAPACITY = 1024;
+
+    // buffers larger than this are not kept around
+    private static final int MAX_RETAINED_LENGTH = 64 * 1024;
+
+    private static final int MAX_IDLE = 4;
+
+    private final Configuration configuration;
+
+    private final ThreadLocal<ArrayDeque<SQLSerializer>> idle = new ThreadLocal<ArrayDeque<SQLSerializer>>() {
+        @Override
+        protected ArrayDeque<SQLSerializer> initialValue() {
+            return new ArrayDeque<SQLSerializer>(MAX_IDLE);
+        }
+    };
+
+    SQLSerializerPool(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Get an idle serializer of the current thread or create a new one
+     *
+     * @param dml
+     * @return serializer in its initial state
+     */
+    public SQLSerializer acquire(boolean dml) {
+        ArrayDeque<SQLSerializer> serializers = idle.get();
+        for (SQLSerializer serializer : serializers) {
+            if (serializer.isDml() == dml) {
+                serializers.remove(serializer);
+                return serializer;
+            }
+        }
+        SQLSerializer serializer = new SQLSerializer(configuration, dml, CAPACITY);
+        serializer.pool = this;
+        return serializer;
+    }
+
+    /**
+     * Return the given serializer to the idle serializers of the current thread, serializers
+     * not created by this pool are ignored
+     *
+     * @param serializer
+     */
+    public void release(SQLSerializer serializer) {
+        if (serializer.pool != this || serializer.getLength() > MAX_RETAINED_LENGTH) {
+            return;
+        }
+        ArrayDeque<SQLSerializer> serializers = idle.get();
+        if (serializers.size() < MAX_IDLE && !serializers.contains(serializer)) {
+            serializer.reset();
+            serializers.push(serializer);
+        }
+    }
+
+}
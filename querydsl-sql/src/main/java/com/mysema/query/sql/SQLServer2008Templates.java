@@ -41,6 +41,7 @@ public class SQLServer2008Templates extends SQLServer2005Templates {
 
     public SQLServer2008Templates(char escape, boolean quote) {
         super(escape, quote);
+        setMultiRowInsert(true);
     }
 
 }
@@ -52,6 +52,7 @@ public class SQLServer2012Templates extends SQLServerTemplates {
 
     public SQLServer2012Templates(char escape, boolean quote) {
         super(escape, quote);
+        setMultiRowInsert(true);
     }
 
     @Override
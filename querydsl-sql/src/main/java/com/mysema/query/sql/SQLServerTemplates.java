@@ -55,6 +55,7 @@ public class SQLServerTemplates extends SQLTemplates {
         setNullsFirst(null);
         setNullsLast(null);
         setDefaultValues("\ndefault values");
+        setMaxParameters(2100);
 
         // String
         add(Ops.CONCAT, "{0} + {1}", 13);
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Provider;
+
+/**
+ * SQLStatementCache keeps prepared statements open per connection and reuses them for equal
+ * SQL strings
+ *
+ * <p>Connections obtained via {@link #wrap(Provider)} return cached statements from
+ * {@code prepareStatement(String)} and the generated keys variants of it. Closing such a
+ * statement clears its parameters and batch and returns it to the cache of the connection,
+ * closing the connection closes all cached statements of it. A statement is never handed out
+ * twice at the same time, so nested iterations over the same query are safe.</p>
+ *
+ * <p>The cache keeps a connection registered until it is closed via the wrapper, so wrapped
+ * connections need to be closed through it and not through the underlying connection.</p>
+ *
+ * <p>The statements passed to {@link SQLListener} implementations are the cached wrappers, so
+ * the prepared callbacks are invoked for each execution as before.</p>
+ *
+ * <p>Usage</p>
+ *
+ * <pre>
+ * SQLQueryFactory queryFactory = new SQLQueryFactory(configuration, dataSource,
+ *         new SQLStatementCache(100));
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+public class SQLStatementCache {
+
+    private static final Method CLOSE, IS_CLOSED, GET_CONNECTION, SET_FETCH_SIZE, SET_MAX_ROWS,
+            SET_QUERY_TIMEOUT;
+
+    static {
+        try {
+            CLOSE = PreparedStatement.class.getMethod("close");
+            IS_CLOSED = PreparedStatement.class.getMethod("isClosed");
+            GET_CONNECTION = PreparedStatement.class.getMethod("getConnection");
+            SET_FETCH_SIZE = PreparedStatement.class.getMethod("setFetchSize", int.class);
+            SET_MAX_ROWS = PreparedStatement.class.getMethod("setMaxRows", int.class);
+            SET_QUERY_TIMEOUT = PreparedStatement.class.getMethod("setQueryTimeout", int.class);
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int maxSize;
+
+    // registered on wrap and removed when the wrapped connection is closed
+    private final Map<Connection, Statements> connections = new IdentityHashMap<Connection, Statements>();
+
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(),
+            evictions = new AtomicLong();
+
+    /**
+     * Create a new SQLStatementCache instance
+     *
+     * @param maxSize maximum amount of idle statements per connection
+     */
+    public SQLStatementCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize needs to be positive, got " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Wrap the given connection provider
+     *
+     * @param provider
+     * @return provider of caching connections
+     */
+    public Provider<Connection> wrap(final Provider<Connection> provider) {
+        return new Provider<Connection>() {
+            @Override
+            public Connection get() {
+                return wrap(provider.get());
+            }
+        };
+    }
+
+    /**
+     * Wrap the given connection
+     *
+     * @param connection
+     * @return caching connection
+     */
+    public Connection wrap(final Connection connection) {
+        if (Proxy.isProxyClass(connection.getClass())
+            && Proxy.getInvocationHandler(connection) instanceof Statements) {
+            return connection;
+        }
+        synchronized (connections) {
+            Statements statements = connections.get(connection);
+            if (statements == null) {
+                statements = new Statements(connection);
+                connections.put(connection, statements);
+            }
+            return statements.proxy;
+        }
+    }
+
+    /**
+     * @return amount of connections with cached statements
+     */
+    public int getConnectionCount() {
+        synchronized (connections) {
+            return connections.size();
+        }
+    }
+
+    /**
+     * @return amount of statements taken from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return amount of statements which had to be prepared
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return amount of idle statements closed because the cache of the connection was full
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return maximum amount of idle statements per connection
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Idle statements of a single connection
+     */
+    private final class Statements implements InvocationHandler {
+
+        private final Connection connection;
+
+        private final Connection proxy;
+
+        private final Map<Object, PreparedStatement> idle = new LinkedHashMap<Object, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    closeQuietly(eldest.getValue());
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+
+        private boolean closed;
+
+        Statements(Connection connection) {
+            this.connection = connection;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("prepareStatement") && args.length == 1) {
+                return prepare(Arrays.asList(args[0]), method, args);
+            } else if (name.equals("prepareStatement") && args.length == 2
+                    && (args[1] instanceof Integer || args[1] instanceof String[])) {
+                Object mode = args[1] instanceof String[] ? Arrays.asList((String[])args[1]) : args[1];
+                return prepare(Arrays.asList(args[0], mode), method, args);
+            } else if (name.equals("close") && args == null) {
+                closeAll();
+                return SQLStatementCache.invoke(connection, method, args);
+            } else if (name.equals("equals") && args.length == 1) {
+                return p == args[0];
+            } else if (name.equals("hashCode") && args == null) {
+                return System.identityHashCode(p);
+            } else {
+                return SQLStatementCache.invoke(connection, method, args);
+            }
+        }
+
+        private Object prepare(Object key, Method method, Object[] args) throws Throwable {
+            PreparedStatement stmt;
+            synchronized (this) {
+                stmt = idle.remove(key);
+            }
+            if (stmt != null && !stmt.isClosed()) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                stmt = (PreparedStatement) SQLStatementCache.invoke(connection, method, args);
+            }
+            return new CachedStatement(this, key, stmt).proxy;
+        }
+
+        void release(Object key, PreparedStatement stmt, boolean reset) {
+            try {
+                stmt.clearParameters();
+                stmt.clearBatch();
+                if (reset) {
+                    // zero means driver defaults for all of these
+                    stmt.setFetchSize(0);
+                    stmt.setMaxRows(0);
+                    stmt.setQueryTimeout(0);
+                }
+            } catch (SQLException e) {
+                closeQuietly(stmt);
+                return;
+            }
+            synchronized (this) {
+                if (!closed && !idle.containsKey(key)) {
+                    idle.put(key, stmt);
+                    return;
+                }
+            }
+            closeQuietly(stmt);
+        }
+
+        private void closeAll() {
+            synchronized (connections) {
+                connections.remove(connection);
+            }
+            synchronized (this) {
+                closed = true;
+                Iterator<PreparedStatement> it = idle.values().iterator();
+                while (it.hasNext()) {
+                    closeQuietly(it.next());
+                    it.remove();
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Statement handle which returns the statement to the cache on close
+     */
+    private static final class CachedStatement implements InvocationHandler {
+
+        private final Statements statements;
+
+        private final Object key;
+
+        private final PreparedStatement stmt;
+
+        private final PreparedStatement proxy;
+
+        private boolean closed, reset;
+
+        CachedStatement(Statements statements, Object key, PreparedStatement stmt) {
+            this.statements = statements;
+            this.key = key;
+            this.stmt = stmt;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+            if (method.equals(CLOSE)) {
+                if (!closed) {
+                    closed = true;
+                    statements.release(key, stmt, reset);
+                }
+                return null;
+            } else if (method.equals(IS_CLOSED)) {
+                return closed;
+            } else if (method.getDeclaringClass() == Object.class) {
+                if (method.getName().equals("equals")) {
+                    return p == args[0];
+                } else if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(p);
+                } else {
+                    return "Cached " + stmt;
+                }
+            } else if (closed) {
+                throw new SQLException("Statement is closed");
+            } else if (method.equals(GET_CONNECTION)) {
+                return statements.proxy;
+            } else if (method.equals(SET_FETCH_SIZE) || method.equals(SET_MAX_ROWS)
+                    || method.equals(SET_QUERY_TIMEOUT)) {
+                reset = true;
+            }
+            return SQLStatementCache.invoke(stmt, method, args);
+        }
+
+    }
+
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+}
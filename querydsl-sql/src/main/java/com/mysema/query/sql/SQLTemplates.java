@@ -14,7 +14,12 @@
 package com.mysema.query.sql;
 
 import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +32,7 @@ import com.mysema.query.QueryException;
 import com.mysema.query.QueryFlag.Position;
 import com.mysema.query.QueryMetadata;
 import com.mysema.query.QueryModifiers;
+import com.mysema.query.sql.dml.SQLInsertBatch;
 import com.mysema.query.sql.types.Type;
 import com.mysema.query.types.*;
 
@@ -44,7 +50,7 @@ public class SQLTemplates extends Templates {
 
     public abstract static class Builder {
 
-        protected boolean printSchema, quote, newLineToSingleSpace;
+        protected boolean printSchema, quote, newLineToSingleSpace, nativeMerge;
 
         protected char escape = '\\';
 
@@ -68,6 +74,18 @@ public class SQLTemplates extends Templates {
             return this;
         }
 
+        /**
+         * Serialize merges as a single upsert statement of the dialect instead of emulating them.
+         * Used by the PostgreSQL (9.5+), SQLite (3.24+) and MySQL dialects, since their upserts
+         * need a recent server version or differ in the conflict detection.
+         *
+         * @return builder
+         */
+        public Builder nativeMerge() {
+            nativeMerge = true;
+            return this;
+        }
+
         protected abstract SQLTemplates build(char escape, boolean quote);
 
         public SQLTemplates build() {
@@ -195,6 +213,16 @@ public class SQLTemplates extends Templates {
 
     private boolean wrapSelectParameters = false;
 
+    private boolean rowValueComparison = false;
+
+    private boolean multiRowInsert = false;
+
+    private boolean arrayParameters = false;
+
+    private int maxParameters = Integer.MAX_VALUE;
+
+    private int maxInListSize = Integer.MAX_VALUE;
+
     protected SQLTemplates(String quoteStr, char escape, boolean useQuotes) {
         super(escape);
         this.quoteStr = quoteStr;
@@ -292,6 +320,8 @@ public class SQLTemplates extends Templates {
         add(SQLOps.UNION, "{0}\nunion\n{1}", 50);
         add(SQLOps.UNION_ALL, "{0}\nunion all\n{1}", 50);
         add(SQLOps.NEXTVAL, "nextval('{0s}')");
+        add(SQLOps.IN_ARRAY, "{0} = any({1})", 27);
+        add(SQLOps.NOT_IN_ARRAY, "{0} <> all({1})", 27);
 
         // analytic functions
         add(SQLOps.CORR, "corr({0},{1})");
@@ -627,6 +657,37 @@ public class SQLTemplates extends Templates {
         return nativeMerge;
     }
 
+    /**
+     * Get whether the given merge keys are the primary key of the given entity
+     *
+     * @param entity target table
+     * @param keys merge keys, empty for the primary key
+     * @return true, if the keys are the primary key
+     */
+    protected static boolean isPrimaryKey(RelationalPath<?> entity, List<Path<?>> keys) {
+        PrimaryKey<?> primaryKey = entity.getPrimaryKey();
+        if (primaryKey == null) {
+            return false;
+        } else if (keys.isEmpty()) {
+            return true;
+        } else {
+            return keys.size() == primaryKey.getLocalColumns().size()
+                && keys.containsAll(primaryKey.getLocalColumns());
+        }
+    }
+
+    /**
+     * Get whether the merge of the given columns with the given keys is serialized natively
+     *
+     * @param entity target table
+     * @param keys merge keys, empty for the primary key
+     * @param columns merged columns
+     * @return true, if supported natively, false, if the merge is emulated via selects, inserts and updates
+     */
+    public boolean isNativeMerge(RelationalPath<?> entity, List<Path<?>> keys, List<Path<?>> columns) {
+        return nativeMerge;
+    }
+
     public final boolean isSupportsAlias() {
         return true;
     }
@@ -683,6 +744,26 @@ public class SQLTemplates extends Templates {
         return limitRequired;
     }
 
+    public final boolean isRowValueComparison() {
+        return rowValueComparison;
+    }
+
+    public final boolean isMultiRowInsert() {
+        return multiRowInsert;
+    }
+
+    public final boolean isArrayParameters() {
+        return arrayParameters;
+    }
+
+    public final int getMaxParameters() {
+        return maxParameters;
+    }
+
+    public final int getMaxInListSize() {
+        return maxInListSize;
+    }
+
     public final String getNullsFirst() {
         return nullsFirst;
     }
@@ -792,6 +873,23 @@ public class SQLTemplates extends Templates {
         }
     }
 
+    /**
+     * template method for multi row INSERT serialization
+     *
+     * @param metadata
+     * @param entity
+     * @param batches rows with the same columns
+     * @param context
+     */
+    public void serializeInsert(QueryMetadata metadata, RelationalPath<?> entity,
+            List<SQLInsertBatch> batches, SQLSerializer context) {
+        context.serializeForInsert(metadata, entity, batches);
+
+        if (!metadata.getFlags().isEmpty()) {
+            context.serialize(Position.END, metadata.getFlags());
+        }
+    }
+
     /**
      * template method for MERGE serialization
      *
@@ -813,6 +911,79 @@ public class SQLTemplates extends Templates {
         }
     }
 
+    /**
+     * Get the conflict target of an upsert
+     *
+     * @param entity
+     * @param keys explicit keys of the merge
+     * @return the given keys or the primary key columns of the entity
+     */
+    protected List<? extends Path<?>> getUpsertKeys(RelationalPath<?> entity, List<Path<?>> keys) {
+        if (!keys.isEmpty()) {
+            return keys;
+        } else if (entity.getPrimaryKey() != null) {
+            return entity.getPrimaryKey().getLocalColumns();
+        } else {
+            throw new IllegalStateException("No keys were defined, invoke keys(..) to add keys");
+        }
+    }
+
+    /**
+     * Get the columns which are updated by an upsert in case of a conflict
+     *
+     * @param keys conflict target
+     * @param columns inserted columns
+     * @return inserted columns which are not part of the conflict target
+     */
+    protected List<Path<?>> getUpsertColumns(List<? extends Path<?>> keys, List<Path<?>> columns) {
+        List<Path<?>> rv = new ArrayList<Path<?>>(columns.size());
+        for (Path<?> column : columns) {
+            if (!keys.contains(column)) {
+                rv.add(column);
+            }
+        }
+        return rv;
+    }
+
+    /**
+     * Serialize a merge as an insert with an on conflict clause, which updates the columns that
+     * are not part of the conflict target
+     *
+     * @param metadata
+     * @param entity
+     * @param keys
+     * @param columns
+     * @param values
+     * @param subQuery
+     * @param context
+     */
+    protected void serializeMergeOnConflict(QueryMetadata metadata, RelationalPath<?> entity,
+            List<Path<?>> keys, List<Path<?>> columns, List<Expression<?>> values,
+            SubQueryExpression<?> subQuery, SQLSerializer context) {
+        List<? extends Path<?>> conflictKeys = getUpsertKeys(entity, keys);
+        List<Path<?>> updates = getUpsertColumns(conflictKeys, columns);
+        context.serializeForInsert(metadata, entity, columns, values, subQuery);
+        context.append("\non conflict (");
+        context.serializeColumns(conflictKeys);
+        if (updates.isEmpty()) {
+            context.append(") do nothing");
+        } else {
+            context.append(") do update set ");
+            for (int i = 0; i < updates.size(); i++) {
+                if (i > 0) {
+                    context.append(", ");
+                }
+                context.serializeColumn(updates.get(i));
+                context.append(" = excluded.");
+                context.serializeColumn(updates.get(i));
+            }
+        }
+
+        if (!metadata.getFlags().isEmpty()) {
+            context.serialize(Position.END, metadata.getFlags());
+        }
+    }
+
     /**
      * template method for UPDATE serialization
      *
@@ -853,6 +1024,44 @@ public class SQLTemplates extends Templates {
         }
     }
 
+    /**
+     * template method for the creation of statements which stream their results
+     *
+     * @param conn
+     * @param sql
+     * @param fetchSize
+     * @return
+     * @throws SQLException
+     */
+    public PreparedStatement prepareStreaming(Connection conn, String sql, int fetchSize) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (fetchSize > 0) {
+            stmt.setFetchSize(fetchSize);
+        }
+        return stmt;
+    }
+
+    /**
+     * template method to prepare the connection before a streaming query
+     *
+     * @param conn
+     * @return true, if {@link #endStreaming(Connection)} needs to be called after the results have been closed
+     * @throws SQLException
+     */
+    public boolean beginStreaming(Connection conn) throws SQLException {
+        return false;
+    }
+
+    /**
+     * template method to restore the connection after a streaming query
+     *
+     * @param conn
+     * @throws SQLException
+     */
+    public void endStreaming(Connection conn) throws SQLException {
+        // nothing to restore by default
+    }
+
     protected void addCustomType(Type<?> type) {
         customTypes.add(type);
     }
@@ -1057,4 +1266,24 @@ public class SQLTemplates extends Templates {
         this.wrapSelectParameters = b;
     }
 
+    protected void setRowValueComparison(boolean rowValueComparison) {
+        this.rowValueComparison = rowValueComparison;
+    }
+
+    protected void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    protected void setArrayParameters(boolean arrayParameters) {
+        this.arrayParameters = arrayParameters;
+    }
+
+    protected void setMaxParameters(int maxParameters) {
+        this.maxParameters = maxParameters;
+    }
+
+    protected void setMaxInListSize(int maxInListSize) {
+        this.maxInListSize = maxInListSize;
+    }
+
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SQLWatchdog applies query timeouts to statements and cancels statements whose deadline
+ * has passed while their results are still being fetched
+ *
+ * @author tiwe
+ *
+ */
+public final class SQLWatchdog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SQLWatchdog.class);
+
+    private static final int PURGE_INTERVAL = 1000;
+
+    private static final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("querydsl-sql-watchdog").build());
+
+    private static final AtomicInteger cancelled = new AtomicInteger();
+
+    /**
+     * Set the query timeout of the given statement, JDBC timeouts are rounded up to seconds
+     *
+     * @param stmt statement
+     * @param timeout timeout in milliseconds, zero for no timeout
+     * @throws SQLException
+     */
+    public static void setQueryTimeout(Statement stmt, long timeout) throws SQLException {
+        if (timeout > 0) {
+            stmt.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (timeout + 999) / 1000));
+        }
+    }
+
+    /**
+     * Cancel the given statement after the given delay
+     *
+     * @param stmt statement
+     * @param delay delay in milliseconds
+     * @return future to be passed to {@link #release(Future)} when the statement is closed
+     */
+    public static Future<?> schedule(final Statement stmt, long delay) {
+        return executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    stmt.cancel();
+                } catch (SQLException e) {
+                    logger.warn("Cancelling statement failed", e);
+                }
+            }
+        }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Release the given scheduled cancellation
+     *
+     * @param future
+     */
+    public static void release(Future<?> future) {
+        if (future.cancel(false) && cancelled.incrementAndGet() % PURGE_INTERVAL == 0) {
+            // cancelled tasks are otherwise only removed when their delay has passed
+            executor.purge();
+        }
+    }
+
+    private SQLWatchdog() {}
+
+}
@@ -14,9 +14,15 @@
 package com.mysema.query.sql;
 
 import java.sql.Types;
+import java.util.List;
 
+import com.mysema.query.QueryFlag.Position;
+import com.mysema.query.QueryMetadata;
 import com.mysema.query.sql.types.BigDecimalAsDoubleType;
+import com.mysema.query.types.Expression;
 import com.mysema.query.types.Ops;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.SubQueryExpression;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
@@ -38,7 +44,9 @@ public class SQLiteTemplates extends SQLTemplates {
         return new Builder() {
             @Override
             protected SQLTemplates build(char escape, boolean quote) {
-                return new SQLiteTemplates(escape, quote);
+                SQLiteTemplates templates = new SQLiteTemplates(escape, quote);
+                templates.setNativeMerge(nativeMerge);
+                return templates;
             }
         };
     }
@@ -57,6 +65,8 @@ public class SQLiteTemplates extends SQLTemplates {
         addCustomType(BigDecimalAsDoubleType.DEFAULT);
         setUnionsWrapped(false);
         setLimitRequired(true);
+        setMultiRowInsert(true);
+        setMaxParameters(999);
         setNullsFirst(null);
         setNullsLast(null);
         setDefaultValues("\ndefault values");
@@ -112,4 +122,23 @@ public class SQLiteTemplates extends SQLTemplates {
         }
     }
 
+    @Override
+    public boolean isNativeMerge(RelationalPath<?> entity, List<Path<?>> keys, List<Path<?>> columns) {
+        // the conflict target needs a unique index, the primary key is the only one known
+        return super.isNativeMerge(entity, keys, columns) && isPrimaryKey(entity, keys);
+    }
+
+    @Override
+    public void serializeMerge(QueryMetadata metadata, RelationalPath<?> entity,
+            List<Path<?>> keys, List<Path<?>> columns, List<Expression<?>> values,
+            SubQueryExpression<?> subQuery, SQLSerializer context) {
+        if (isNativeMerge(entity, keys, columns)) {
+            // insert .. on conflict is available since SQLite 3.24
+            serializeMergeOnConflict(metadata, entity, keys, columns, values, subQuery, context);
+        } else {
+            // executed as an emulated merge
+            super.serializeMerge(metadata, entity, keys, columns, values, subQuery, context);
+        }
+    }
+
 }
@@ -25,6 +25,7 @@ import java.sql.*;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * AbstractSQLClause is a superclass for SQL based DMLClause implementations
@@ -39,6 +40,8 @@ public abstract class AbstractSQLClause<C extends AbstractSQLClause<C>> implemen
 
     protected boolean useLiterals;
 
+    protected long queryTimeout;
+
     protected SQLListenerContextImpl context;
 
     /**
@@ -48,6 +51,18 @@ public abstract class AbstractSQLClause<C extends AbstractSQLClause<C>> implemen
         this.configuration = configuration;
         this.listeners = new SQLListeners(configuration.getListeners());
         this.useLiterals = configuration.getUseLiterals();
+        this.queryTimeout = configuration.getQueryTimeout();
+    }
+
+    /**
+     * Set the query timeout of the statements of this clause, defaults to the query timeout
+     * of the configuration
+     *
+     * @param duration timeout, zero for none
+     * @param unit unit of the timeout
+     */
+    public void setQueryTimeout(long duration, TimeUnit unit) {
+        this.queryTimeout = unit.toMillis(duration);
     }
 
     /**
@@ -57,6 +72,20 @@ public abstract class AbstractSQLClause<C extends AbstractSQLClause<C>> implemen
         listeners.add(listener);
     }
 
+    /**
+     * @param listener
+     */
+    public void removeListener(SQLListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Set the connection of the following executions
+     *
+     * @param connection
+     */
+    public abstract void setConnection(Connection connection);
+
     /**
      * Called to create and start a new SQL Listener context
      *
@@ -66,7 +95,7 @@ public abstract class AbstractSQLClause<C extends AbstractSQLClause<C>> implemen
      * @return the newly started context
      */
     protected SQLListenerContextImpl startContext(Connection connection, QueryMetadata metadata, RelationalPath<?> entity) {
-        SQLListenerContextImpl context = new SQLListenerContextImpl(metadata, connection, entity);
+        SQLListenerContextImpl context = listeners.createContext(metadata, connection, entity);
         listeners.start(context);
         return context;
     }
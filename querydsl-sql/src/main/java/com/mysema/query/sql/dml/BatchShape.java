@@ -0,0 +1,293 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.dml;
+
+import javax.annotation.Nullable;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.base.Objects;
+import com.mysema.commons.lang.Pair;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.SQLSerializer;
+import com.mysema.query.types.*;
+
+/**
+ * BatchShape remembers the serialization of a batch item, so that the bindings of following
+ * items with the same shape can be bound without serializing them again
+ *
+ * <p>Two items have the same shape, if they differ only in the values of their constants. The
+ * constants of an item are collected in argument order and the shape is only used, if the
+ * collected constants of the serialized item match the bindings of its serialization. Items with
+ * constants which are transformed or inlined by their templates, e.g. the lower casing of
+ * <code>equalsIgnoreCase</code>, don't have a shape, since the transformation of the first item
+ * can't be applied to the following ones.</p>
+ *
+ * @author tiwe
+ *
+ */
+final class BatchShape<T> {
+
+    /**
+     * Comparison of batch items
+     *
+     * @param <T> item type
+     */
+    interface Comparison<T> {
+
+        /**
+         * Compare the given items and collect the constants of the second one
+         *
+         * @param templates templates of the serialization
+         * @param first
+         * @param second
+         * @param constants collected constants of the second item
+         * @return true, if the items have the same shape
+         */
+        boolean sameShape(Templates templates, T first, T second, List<Object> constants);
+
+    }
+
+    static final Comparison<SQLInsertBatch> INSERT = new Comparison<SQLInsertBatch>() {
+        @Override
+        public boolean sameShape(Templates templates, SQLInsertBatch first, SQLInsertBatch second,
+                List<Object> constants) {
+            return first.getSubQuery() == null && second.getSubQuery() == null
+                && first.getColumns().equals(second.getColumns())
+                && BatchShape.sameShape(templates, first.getValues(), second.getValues(), constants);
+        }
+    };
+
+    static final Comparison<SQLUpdateBatch> UPDATE = new Comparison<SQLUpdateBatch>() {
+        @Override
+        public boolean sameShape(Templates templates, SQLUpdateBatch first, SQLUpdateBatch second,
+                List<Object> constants) {
+            List<Pair<Path<?>, Expression<?>>> u1 = first.getUpdates(), u2 = second.getUpdates();
+            if (u1.size() != u2.size()) {
+                return false;
+            }
+            for (int i = 0; i < u1.size(); i++) {
+                if (!u1.get(i).getFirst().equals(u2.get(i).getFirst())
+                    || !BatchShape.sameShape(templates, u1.get(i).getSecond(), u2.get(i).getSecond(), constants)) {
+                    return false;
+                }
+            }
+            return BatchShape.sameShape(templates, first.getMetadata(), second.getMetadata(), constants);
+        }
+    };
+
+    static final Comparison<QueryMetadata> DELETE = new Comparison<QueryMetadata>() {
+        @Override
+        public boolean sameShape(Templates templates, QueryMetadata first, QueryMetadata second,
+                List<Object> constants) {
+            return BatchShape.sameShape(templates, first, second, constants);
+        }
+    };
+
+    private final Comparison<T> comparison;
+
+    private final Templates templates;
+
+    @Nullable
+    private T item;
+
+    @Nullable
+    private PreparedStatement statement;
+
+    @Nullable
+    private String sql;
+
+    @Nullable
+    private List<Path<?>> constantPaths;
+
+    BatchShape(Comparison<T> comparison, Templates templates) {
+        this.comparison = comparison;
+        this.templates = templates;
+    }
+
+    /**
+     * Get the bindings of the given item, if it has the shape of the remembered item
+     *
+     * @param other batch item
+     * @return bindings or null, if the item needs to be serialized
+     */
+    @Nullable
+    public List<Object> bind(T other) {
+        if (item == null) {
+            return null;
+        }
+        List<Object> constants = new ArrayList<Object>();
+        return comparison.sameShape(templates, item, other, constants) ? constants : null;
+    }
+
+    /**
+     * Remember the serialization of the given item, if its bindings can be derived from its
+     * constants
+     *
+     * @param other batch item
+     * @param serializer serialization of the item
+     * @param stmt statement of the serialization
+     */
+    public void update(T other, SQLSerializer serializer, PreparedStatement stmt) {
+        List<Object> constants = new ArrayList<Object>();
+        if (comparison.sameShape(templates, other, other, constants)
+            && constants.equals(serializer.getConstants())) {
+            item = other;
+            statement = stmt;
+            sql = serializer.toString();
+            constantPaths = serializer.getConstantPaths();
+        } else {
+            item = null;
+            statement = null;
+            sql = null;
+            constantPaths = null;
+        }
+    }
+
+    public PreparedStatement getStatement() {
+        return statement;
+    }
+
+    public String getSQL() {
+        return sql;
+    }
+
+    public List<Path<?>> getConstantPaths() {
+        return constantPaths;
+    }
+
+    /**
+     * Get whether the constant arguments of the given template are bound unchanged
+     *
+     * @param template template of the arguments
+     * @param args arguments
+     * @return false, if a constant argument is transformed or inlined
+     */
+    private static boolean isBoundAsIs(@Nullable Template template, List<?> args) {
+        if (template == null) {
+            return false;
+        }
+        for (Template.Element element : template.getElements()) {
+            int index;
+            if (element instanceof Template.Transformed) {
+                index = ((Template.Transformed)element).getIndex();
+            } else if (element instanceof Template.AsString) {
+                index = ((Template.AsString)element).getIndex();
+            } else {
+                continue;
+            }
+            if (index < args.size()
+                && (args.get(index) instanceof Constant<?> || args.get(index) instanceof ParamExpression<?>)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean sameShape(Templates templates, QueryMetadata first, QueryMetadata second,
+            List<Object> constants) {
+        return first.getJoins().equals(second.getJoins())
+            && first.getFlags().equals(second.getFlags())
+            && Objects.equal(first.getModifiers(), second.getModifiers())
+            && sameShape(templates, first.getWhere(), second.getWhere(), constants);
+    }
+
+    static boolean sameShape(Templates templates, List<? extends Expression<?>> first,
+            List<? extends Expression<?>> second, List<Object> constants) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            if (!sameShape(templates, first.get(i), second.get(i), constants)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean sameShape(Templates templates, @Nullable Expression<?> first,
+            @Nullable Expression<?> second, List<Object> constants) {
+        if (first == null || second == null) {
+            return first == second;
+        } else if (first instanceof Constant<?>) {
+            if (!(second instanceof Constant<?>)) {
+                return false;
+            }
+            Object c1 = ((Constant<?>)first).getConstant();
+            Object c2 = ((Constant<?>)second).getConstant();
+            if (c1 instanceof Collection<?>) {
+                if (!(c2 instanceof Collection<?>) || ((Collection<?>)c1).size() != ((Collection<?>)c2).size()) {
+                    return false;
+                }
+                constants.addAll((Collection<?>)c2);
+                return true;
+            } else if (c1 instanceof Class<?>) {
+                // rendered as part of the SQL
+                return c1.equals(c2);
+            } else if (c1.getClass().equals(c2.getClass())) {
+                constants.add(c2);
+                return true;
+            } else {
+                return false;
+            }
+        } else if (first instanceof ParamExpression<?>) {
+            if (first.equals(second)) {
+                constants.add(second);
+                return true;
+            } else {
+                return false;
+            }
+        } else if (first instanceof Path<?>) {
+            return first.equals(second);
+        } else if (first instanceof Operation<?>) {
+            Operator<?> operator = ((Operation<?>)first).getOperator();
+            List<Expression<?>> args = ((Operation<?>)first).getArgs();
+            return second instanceof Operation<?>
+                && operator == ((Operation<?>)second).getOperator()
+                && first.getType().equals(second.getType())
+                // the serializer escapes like patterns
+                && (operator != Ops.LIKE || !(args.get(1) instanceof Constant<?>))
+                && isBoundAsIs(templates.getTemplate(operator), args)
+                && sameShape(templates, args, ((Operation<?>)second).getArgs(), constants);
+        } else if (first instanceof TemplateExpression<?>) {
+            if (!(second instanceof TemplateExpression<?>)
+                || !((TemplateExpression<?>)first).getTemplate().equals(((TemplateExpression<?>)second).getTemplate())
+                || !isBoundAsIs(((TemplateExpression<?>)first).getTemplate(), ((TemplateExpression<?>)first).getArgs())) {
+                return false;
+            }
+            List<?> args1 = ((TemplateExpression<?>)first).getArgs();
+            List<?> args2 = ((TemplateExpression<?>)second).getArgs();
+            if (args1.size() != args2.size()) {
+                return false;
+            }
+            for (int i = 0; i < args1.size(); i++) {
+                Object a1 = args1.get(i), a2 = args2.get(i);
+                if (a1 instanceof Expression<?> && a2 instanceof Expression<?>) {
+                    if (!sameShape(templates, (Expression<?>)a1, (Expression<?>)a2, constants)) {
+                        return false;
+                    }
+                } else if (!Objects.equal(a1, a2)) {
+                    return false;
+                }
+            }
+            return true;
+        } else {
+            // sub queries and other expressions are not handled
+            return false;
+        }
+    }
+
+}
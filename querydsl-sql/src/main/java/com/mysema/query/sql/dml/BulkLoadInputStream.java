@@ -0,0 +1,228 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.dml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+import org.joda.time.ReadableInstant;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import com.google.common.base.Charsets;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.types.Null;
+import com.mysema.query.sql.types.Type;
+import com.mysema.query.types.Path;
+
+/**
+ * BulkLoadInputStream encodes rows lazily into the tab separated text format which is shared
+ * by PostgreSQL COPY and MySQL LOAD DATA
+ *
+ * <p>Only the current row is held in memory. Values are encoded via the literal form of their
+ * {@link Type}, nulls as {@code \N} and tabs, line breaks and backslashes are escaped. Temporal
+ * values are encoded with their fractional seconds, since the literal form omits them.</p>
+ *
+ * @author tiwe
+ *
+ */
+class BulkLoadInputStream extends InputStream {
+
+    private static final Charset UTF8 = Charsets.UTF_8;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(UTF8);
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final DateTimeFormatter DATE_TIME_MILLIS = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static final DateTimeFormatter TIME_MILLIS = DateTimeFormat.forPattern("HH:mm:ss.SSS");
+
+    private final Configuration configuration;
+
+    private final List<Path<?>> columns;
+
+    private final Type<?>[] types;
+
+    private final Iterator<Object[]> rows;
+
+    private final boolean copyFormat;
+
+    private byte[] buffer = new byte[8192];
+
+    private int position, limit;
+
+    private long count;
+
+    /**
+     * @param configuration configuration for the value types
+     * @param columns target columns
+     * @param rows rows in column order
+     * @param copyFormat true for the PostgreSQL COPY variant with hex encoded byte arrays, false
+     *        for the MySQL LOAD DATA variant with raw byte arrays
+     */
+    BulkLoadInputStream(Configuration configuration, List<Path<?>> columns, Iterator<Object[]> rows,
+            boolean copyFormat) {
+        this.configuration = configuration;
+        this.columns = columns;
+        this.types = new Type<?>[columns.size()];
+        this.rows = rows;
+        this.copyFormat = copyFormat;
+    }
+
+    /**
+     * @return amount of encoded rows
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        } else if (position == limit && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    private boolean fill() {
+        position = 0;
+        limit = 0;
+        while (limit == 0 && rows.hasNext()) {
+            Object[] row = rows.next();
+            if (row.length != columns.size()) {
+                throw new IllegalArgumentException("Expected " + columns.size() + " values, " +
+                        "but got " + row.length);
+            }
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    write((byte)'\t');
+                }
+                encode(i, row[i]);
+            }
+            write((byte)'\n');
+            count++;
+        }
+        return limit > 0;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void encode(int column, Object value) {
+        if (value == null || Null.class.isInstance(value)) {
+            write((byte)'\\');
+            write((byte)'N');
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[])value;
+            if (copyFormat) {
+                escape((byte)'\\');
+                write((byte)'x');
+                for (byte b : bytes) {
+                    write(HEX[(b >> 4) & 0xf]);
+                    write(HEX[b & 0xf]);
+                }
+            } else {
+                for (byte b : bytes) {
+                    escape(b);
+                }
+            }
+        } else {
+            String literal = getTemporalLiteral(value);
+            if (literal != null) {
+                for (byte b : literal.getBytes(UTF8)) {
+                    write(b);
+                }
+                return;
+            }
+            Type type = types[column];
+            if (type == null || !type.getReturnedClass().isInstance(value)) {
+                type = configuration.getType(columns.get(column), value.getClass());
+                types[column] = type;
+            }
+            for (byte b : type.getLiteral(value).getBytes(UTF8)) {
+                escape(b);
+            }
+        }
+    }
+
+    @Nullable
+    private static String getTemporalLiteral(Object value) {
+        if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp)value;
+            String nanos = String.valueOf(1000000000 + timestamp.getNanos()).substring(1);
+            return DATE_TIME.print(timestamp.getTime()) + "." + nanos;
+        } else if (value instanceof java.sql.Date) {
+            // the date literal is complete
+            return null;
+        } else if (value instanceof Time) {
+            return TIME_MILLIS.print(((Time)value).getTime());
+        } else if (value instanceof Date) {
+            return DATE_TIME_MILLIS.print(((Date)value).getTime());
+        } else if (value instanceof Calendar) {
+            return DATE_TIME_MILLIS.print(((Calendar)value).getTimeInMillis());
+        } else if (value instanceof ReadableInstant) {
+            return DATE_TIME_MILLIS.print((ReadableInstant)value);
+        } else if (value instanceof LocalDateTime) {
+            return DATE_TIME_MILLIS.print((LocalDateTime)value);
+        } else if (value instanceof LocalTime) {
+            return TIME_MILLIS.print((LocalTime)value);
+        } else {
+            return null;
+        }
+    }
+
+    private void escape(byte b) {
+        switch (b) {
+            case '\\': write((byte)'\\'); write((byte)'\\'); break;
+            case '\t': write((byte)'\\'); write((byte)'t'); break;
+            case '\n': write((byte)'\\'); write((byte)'n'); break;
+            case '\r': write((byte)'\\'); write((byte)'r'); break;
+            case 0: write((byte)'\\'); write((byte)'0'); break;
+            default: write(b);
+        }
+    }
+
+    private void write(byte b) {
+        if (limit == buffer.length) {
+            byte[] b2 = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, b2, 0, limit);
+            buffer = b2;
+        }
+        buffer[limit++] = b;
+    }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.dml;
+
+import javax.annotation.Nullable;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.QueryException;
+import com.mysema.query.sql.*;
+import com.mysema.query.types.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * SQLBulkLoadClause loads rows into a table via the native bulk load path of the database
+ *
+ * <p>For PostgreSQL the rows are streamed via COPY FROM STDIN of the driver's CopyManager and
+ * for MySQL via LOAD DATA LOCAL INFILE with a local infile stream. The rows are encoded lazily
+ * in the text format of these commands, so the loaded data is never buffered as a whole. For
+ * other databases, or if the driver doesn't provide the needed API, the rows are inserted via
+ * JDBC batches of {@link #batchSize(int)} rows.</p>
+ *
+ * <pre>
+ * long count = queryFactory.bulkLoad(survey)
+ *     .columns(survey.id, survey.name)
+ *     .rows(rows)
+ *     .execute();
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+public class SQLBulkLoadClause extends AbstractSQLClause<SQLBulkLoadClause> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SQLBulkLoadClause.class);
+
+    private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+
+    private static final List<String> MYSQL_STATEMENTS = ImmutableList.of(
+            "com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement");
+
+    private enum Mode { COPY, LOAD_DATA, BATCH }
+
+    private Connection connection;
+
+    private final RelationalPath<?> entity;
+
+    private final DefaultQueryMetadata metadata = new DefaultQueryMetadata();
+
+    private List<Path<?>> columns = Collections.emptyList();
+
+    @Nullable
+    private Iterator<Object[]> rows;
+
+    @Nullable
+    private Iterator<?> beans;
+
+    private Mapper<Object> mapper = DefaultMapper.DEFAULT;
+
+    private int batchSize = 1000;
+
+    // detected on execution, since the detection needs a statement for MySQL
+    @Nullable
+    private Mode mode;
+
+    public SQLBulkLoadClause(Connection connection, SQLTemplates templates, RelationalPath<?> entity) {
+        this(connection, new Configuration(templates), entity);
+    }
+
+    public SQLBulkLoadClause(Connection connection, Configuration configuration, RelationalPath<?> entity) {
+        super(configuration);
+        this.connection = connection;
+        this.entity = entity;
+    }
+
+    /**
+     * Set the columns to be loaded, by default all columns of the table are loaded
+     *
+     * @param columns
+     * @return
+     */
+    public SQLBulkLoadClause columns(Path<?>... columns) {
+        this.columns = Arrays.asList(columns);
+        return this;
+    }
+
+    /**
+     * Set the rows to be loaded, the values need to be in column order
+     *
+     * @param rows
+     * @return
+     */
+    public SQLBulkLoadClause rows(Iterator<Object[]> rows) {
+        this.rows = rows;
+        this.beans = null;
+        return this;
+    }
+
+    /**
+     * Set the beans to be loaded, the values are extracted via the {@link DefaultMapper}
+     *
+     * @param beans
+     * @return
+     */
+    public SQLBulkLoadClause beans(Iterator<?> beans) {
+        return beans(beans, DefaultMapper.DEFAULT);
+    }
+
+    /**
+     * Set the beans to be loaded, the values are extracted via the given mapper
+     *
+     * @param beans
+     * @param mapper
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public SQLBulkLoadClause beans(Iterator<?> beans, Mapper<?> mapper) {
+        this.beans = beans;
+        this.mapper = (Mapper<Object>)mapper;
+        this.rows = null;
+        return this;
+    }
+
+    /**
+     * Set the amount of rows per batch, if batch inserts are used
+     *
+     * @param batchSize
+     * @return
+     */
+    public SQLBulkLoadClause batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize needs to be positive, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    private List<Path<?>> getColumns() {
+        return columns.isEmpty() ? entity.getColumns() : columns;
+    }
+
+    private Iterator<Object[]> getRows() {
+        if (beans != null) {
+            final List<Path<?>> cols = getColumns();
+            return Iterators.transform(beans, new Function<Object, Object[]>() {
+                @Override
+                public Object[] apply(Object bean) {
+                    Map<Path<?>, Object> values = mapper.createMap(entity, bean);
+                    Object[] row = new Object[cols.size()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = values.get(cols.get(i));
+                    }
+                    return row;
+                }
+            });
+        } else if (rows != null) {
+            return rows;
+        } else {
+            throw new IllegalStateException("No rows given");
+        }
+    }
+
+    @Nullable
+    private static Class<?> loadClass(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private Mode getMode() throws SQLException {
+        if (mode == null) {
+            mode = detectMode();
+        }
+        return mode;
+    }
+
+    private Mode detectMode() throws SQLException {
+        SQLTemplates templates = configuration.getTemplates();
+        if (templates instanceof PostgresTemplates) {
+            Class<?> cl = loadClass(PG_CONNECTION);
+            if (cl != null && connection.isWrapperFor(cl)) {
+                return Mode.COPY;
+            }
+        } else if (templates instanceof MySQLTemplates) {
+            // the driver might be on the classpath without being used for this connection
+            Statement stmt = null;
+            try {
+                for (String name : MYSQL_STATEMENTS) {
+                    Class<?> cl = loadClass(name);
+                    if (cl != null) {
+                        if (stmt == null) {
+                            stmt = connection.createStatement();
+                            if (stmt == null) {
+                                break;
+                            }
+                        }
+                        if (stmt.isWrapperFor(cl)) {
+                            return Mode.LOAD_DATA;
+                        }
+                    }
+                }
+            } finally {
+                if (stmt != null) {
+                    stmt.close();
+                }
+            }
+        }
+        return Mode.BATCH;
+    }
+
+    private String createSQL(Mode mode) {
+        SQLSerializer serializer = createSerializer();
+        if (mode == Mode.COPY) {
+            serializer.append("copy ");
+            serializer.serializeTarget(entity, getColumns());
+            serializer.append(" from stdin");
+        } else {
+            serializer.append("load data local infile 'stream' into table ");
+            serializer.serializeTarget(entity, getColumns());
+            // the column list is the last part of the statement
+            String target = serializer.toString();
+            int columnList = target.lastIndexOf(" (");
+            return target.substring(0, columnList) + " character set binary" + target.substring(columnList);
+        }
+        return serializer.toString();
+    }
+
+    @Override
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+        this.mode = null;
+    }
+
+    @Override
+    public long execute() {
+        context = startContext(connection, metadata, entity);
+        String sql = null;
+        try {
+            Mode mode = getMode();
+            if (mode == Mode.BATCH) {
+                return executeBatches();
+            }
+            listeners.preRender(context);
+            sql = createSQL(mode);
+            logger.debug(sql);
+            context.addSQL(sql);
+            listeners.rendered(context);
+
+            listeners.notifyInserts(entity, metadata, Collections.<SQLInsertBatch>emptyList());
+            BulkLoadInputStream in = new BulkLoadInputStream(configuration, getColumns(), getRows(),
+                    mode == Mode.COPY);
+            listeners.preExecute(context);
+            long rv = mode == Mode.COPY ? copy(sql, in) : loadData(sql, in);
+            listeners.executed(context);
+            return rv;
+        } catch (SQLException e) {
+            onException(context, e);
+            throw configuration.translate(sql, ImmutableList.of(), e);
+        } finally {
+            endContext(context);
+        }
+    }
+
+    private long copy(String sql, InputStream in) throws SQLException {
+        try {
+            Class<?> cl = Class.forName(PG_CONNECTION);
+            Object copyManager = cl.getMethod("getCopyAPI").invoke(connection.unwrap(cl));
+            return (Long) copyManager.getClass()
+                    .getMethod("copyIn", String.class, InputStream.class)
+                    .invoke(copyManager, sql, in);
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        } catch (ClassNotFoundException e) {
+            throw new QueryException(e);
+        } catch (NoSuchMethodException e) {
+            throw new QueryException(e);
+        } catch (IllegalAccessException e) {
+            throw new QueryException(e);
+        }
+    }
+
+    private long loadData(String sql, InputStream in) throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
+            for (String name : MYSQL_STATEMENTS) {
+                Class<?> cl = loadClass(name);
+                if (cl != null && stmt.isWrapperFor(cl)) {
+                    cl.getMethod("setLocalInfileInputStream", InputStream.class)
+                      .invoke(stmt.unwrap(cl), in);
+                    return stmt.executeUpdate(sql);
+                }
+            }
+            throw new QueryException("Statement doesn't support local infile streams");
+        } catch (InvocationTargetException e) {
+            throw unwrap(e);
+        } catch (NoSuchMethodException e) {
+            throw new QueryException(e);
+        } catch (IllegalAccessException e) {
+            throw new QueryException(e);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private SQLException unwrap(InvocationTargetException e) {
+        if (e.getCause() instanceof SQLException) {
+            return (SQLException) e.getCause();
+        } else {
+            throw new QueryException(e.getCause());
+        }
+    }
+
+    private long executeBatches() {
+        Path<?>[] cols = getColumns().toArray(new Path<?>[0]);
+        Iterator<Object[]> iterator = getRows();
+        long rv = 0;
+        while (iterator.hasNext()) {
+            SQLInsertClause insert = new SQLInsertClause(connection, configuration, entity);
+            for (int i = 0; i < batchSize && iterator.hasNext(); i++) {
+                insert.columns(cols).values(iterator.next()).addBatch();
+            }
+            rv += insert.execute();
+        }
+        return rv;
+    }
+
+    /**
+     * Get the SQL of the load, which is the batch insert until an execution has detected that
+     * the driver supports streaming the rows
+     */
+    @Override
+    public List<SQLBindings> getSQL() {
+        if (mode == null || mode == Mode.BATCH) {
+            SQLInsertClause insert = new SQLInsertClause(connection, configuration, entity);
+            Object[] values = new Object[getColumns().size()];
+            return insert.columns(getColumns().toArray(new Path<?>[0])).values(values).getSQL();
+        } else {
+            return ImmutableList.of(new SQLBindings(createSQL(mode), ImmutableList.of()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getSQL().get(0).getSQL();
+    }
+
+}
@@ -48,7 +48,7 @@ public class SQLDeleteClause extends AbstractSQLClause<SQLDeleteClause> implemen
             "A delete operation can only reference a single table. " +
             "Consider this alternative: DELETE ... WHERE EXISTS (subquery)");
 
-    private final Connection connection;
+    private Connection connection;
 
     private final RelationalPath<?> entity;
 
@@ -121,6 +121,7 @@ public class SQLDeleteClause extends AbstractSQLClause<SQLDeleteClause> implemen
 
         listeners.prePrepare(context);
         PreparedStatement stmt = connection.prepareStatement(queryString);
+        SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
         setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
 
         context.addPreparedStatement(stmt);
@@ -140,19 +141,32 @@ public class SQLDeleteClause extends AbstractSQLClause<SQLDeleteClause> implemen
         listeners.rendered(context);
 
         Map<String, PreparedStatement> stmts = Maps.newHashMap();
+        BatchShape<QueryMetadata> shape = new BatchShape<QueryMetadata>(BatchShape.DELETE, configuration.getTemplates());
 
         // add first batch
         listeners.prePrepare(context);
         PreparedStatement stmt = connection.prepareStatement(queryString);
+        SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
         setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
         stmt.addBatch();
         stmts.put(queryString, stmt);
         context.addPreparedStatement(stmt);
         listeners.prepared(context);
+        shape.update(batches.get(0), serializer, stmt);
 
 
         // add other batches
         for (int i = 1; i < batches.size(); i++) {
+            List<Object> bindings = shape.bind(batches.get(i));
+            if (bindings != null) {
+                // same shape as the previous batch
+                context.addSQL(shape.getSQL());
+                stmt = shape.getStatement();
+                setParameters(stmt, bindings, shape.getConstantPaths(), metadata.getParams());
+                stmt.addBatch();
+                continue;
+            }
+
             listeners.preRender(context);
             serializer = createSerializer();
             serializer.serializeDelete(batches.get(i), entity);
@@ -163,17 +177,24 @@ public class SQLDeleteClause extends AbstractSQLClause<SQLDeleteClause> implemen
             if (stmt == null) {
                 listeners.prePrepare(context);
                 stmt = connection.prepareStatement(serializer.toString());
+                SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
                 stmts.put(serializer.toString(), stmt);
                 context.addPreparedStatement(stmt);
                 listeners.prepared(context);
             }
             setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
             stmt.addBatch();
+            shape.update(batches.get(i), serializer, stmt);
         }
 
         return stmts.values();
     }
 
+    @Override
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
     @Override
     public long execute() {
         context = startContext(connection, metadata, entity);
@@ -191,6 +212,7 @@ public class SQLDeleteClause extends AbstractSQLClause<SQLDeleteClause> implemen
             } else {
                 stmts = createStatements();
                 listeners.notifyDeletes(entity, batches);
+                context.setData(SQLListenerContext.BATCH_SIZE, batches.size());
 
                 listeners.preExecute(context);
                 long rc = executeBatch(stmts);
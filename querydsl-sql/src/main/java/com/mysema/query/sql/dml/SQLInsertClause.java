@@ -43,7 +43,7 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
 
     private static final Logger logger = LoggerFactory.getLogger(SQLInsertClause.class);
 
-    private final Connection connection;
+    private Connection connection;
 
     private final RelationalPath<?> entity;
 
@@ -61,6 +61,10 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
 
     private final List<Expression<?>> values = new ArrayList<Expression<?>>();
 
+    private boolean batchToBulk;
+
+    private int bulkChunkSize = 100;
+
     private transient String queryString;
 
     private transient List<Object> constants;
@@ -113,6 +117,31 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
         return this;
     }
 
+    /**
+     * Set whether batches are executed as multi row inserts, if the templates support them.
+     * Consecutive batches with the same columns are combined into statements of up to
+     * {@link #setBulkChunkSize(int)} rows, limited by the maximum amount of parameters
+     * of the templates. Remaining rows are split into chunks of powers of two, so that only
+     * a few statement shapes are used.
+     *
+     * @param batchToBulk
+     */
+    public void setBatchToBulk(boolean batchToBulk) {
+        this.batchToBulk = batchToBulk;
+    }
+
+    /**
+     * Set the maximum amount of rows per multi row insert
+     *
+     * @param bulkChunkSize
+     */
+    public void setBulkChunkSize(int bulkChunkSize) {
+        if (bulkChunkSize < 1) {
+            throw new IllegalArgumentException("bulkChunkSize needs to be positive, got " + bulkChunkSize);
+        }
+        this.bulkChunkSize = bulkChunkSize;
+    }
+
     /**
      * Add the current state of bindings as a batch item
      *
@@ -165,6 +194,10 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
     }
 
     private <T> T executeWithKey(Class<T> type, @Nullable Path<T> path) {
+        if (isBulk()) {
+            List<T> keys = executeWithKeys(type, path);
+            return keys.isEmpty() ? null : keys.get(0);
+        }
         ResultSet rs = executeWithKeys();
         try {
             if (rs.next()) {
@@ -199,6 +232,9 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
     }
 
     private <T> List<T> executeWithKeys(Class<T> type, @Nullable Path<T> path) {
+        if (isBulk()) {
+            return executeBulkWithKeys(type, path);
+        }
         ResultSet rs = executeWithKeys();
         try {
             List<T> rv = new ArrayList<T>();
@@ -227,7 +263,113 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
         return prepareStatementAndSetParameters(serializer, withKeys);
     }
 
+    private <T> List<T> executeBulkWithKeys(Class<T> type, @Nullable Path<T> path) {
+        context = startContext(connection, metadata, entity);
+        Map<String, PreparedStatement> stmts = Maps.newHashMap();
+        try {
+            listeners.notifyInserts(entity, metadata, batches);
+            context.setData(SQLListenerContext.BATCH_SIZE, batches.size());
+            List<T> rv = new ArrayList<T>();
+            // generated keys of batch executions are driver specific, so the chunks are executed
+            // one by one and their keys are collected after each execution
+            for (List<SQLInsertBatch> chunk : getBulkChunks()) {
+                PreparedStatement stmt = prepareBulkStatement(stmts, chunk, true);
+                listeners.preExecute(context);
+                stmt.executeUpdate();
+                listeners.executed(context);
+                ResultSet rs = stmt.getGeneratedKeys();
+                try {
+                    while (rs.next()) {
+                        rv.add(configuration.get(rs, path, 1, type));
+                    }
+                } finally {
+                    rs.close();
+                }
+            }
+            return rv;
+        } catch (SQLException e) {
+            onException(context,e);
+            throw configuration.translate(queryString, constants, e);
+        } finally {
+            close(stmts.values());
+            endContext(context);
+        }
+    }
+
+    private boolean isBulk() {
+        if (!batchToBulk || batches.isEmpty() || subQueryBuilder != null
+            || !configuration.getTemplates().isMultiRowInsert()) {
+            return false;
+        }
+        for (SQLInsertBatch batch : batches) {
+            if (batch.getSubQuery() != null || batch.getColumns().isEmpty()) {
+                return false;
+            }
+            for (Expression<?> value : batch.getValues()) {
+                if (!(value instanceof Constant<?>) && !(value instanceof ParamExpression<?>)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split the batches into chunks of consecutive rows with the same columns
+     *
+     * @return chunks
+     */
+    private List<List<SQLInsertBatch>> getBulkChunks() {
+        List<List<SQLInsertBatch>> chunks = new ArrayList<List<SQLInsertBatch>>();
+        int maxParameters = configuration.getTemplates().getMaxParameters();
+        int start = 0;
+        while (start < batches.size()) {
+            List<Path<?>> batchColumns = batches.get(start).getColumns();
+            int end = start + 1;
+            while (end < batches.size() && batches.get(end).getColumns().equals(batchColumns)) {
+                end++;
+            }
+            int rowsPerChunk = Math.max(1, Math.min(bulkChunkSize, maxParameters / batchColumns.size()));
+            while (start < end) {
+                int rows = end - start >= rowsPerChunk ? rowsPerChunk : Integer.highestOneBit(end - start);
+                chunks.add(batches.subList(start, start + rows));
+                start += rows;
+            }
+        }
+        return chunks;
+    }
+
+    private Collection<PreparedStatement> createBulkStatements(boolean withKeys) throws SQLException {
+        Map<String, PreparedStatement> stmts = Maps.newLinkedHashMap();
+        for (List<SQLInsertBatch> chunk : getBulkChunks()) {
+            prepareBulkStatement(stmts, chunk, withKeys).addBatch();
+        }
+        return stmts.values();
+    }
+
+    private PreparedStatement prepareBulkStatement(Map<String, PreparedStatement> stmts,
+            List<SQLInsertBatch> chunk, boolean withKeys) throws SQLException {
+        listeners.preRender(context);
+        SQLSerializer serializer = createSerializer();
+        serializer.serializeInsert(metadata, entity, chunk);
+        context.addSQL(serializer.toString());
+        listeners.rendered(context);
+
+        PreparedStatement stmt = stmts.get(serializer.toString());
+        if (stmt == null) {
+            stmt = prepareStatementAndSetParameters(serializer, withKeys);
+            stmts.put(serializer.toString(), stmt);
+        } else {
+            setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(),
+                    metadata.getParams());
+        }
+        return stmt;
+    }
+
     private Collection<PreparedStatement> createStatements(boolean withKeys) throws SQLException {
+        if (isBulk()) {
+            return createBulkStatements(withKeys);
+        }
         listeners.preRender(context);
 
         if (subQueryBuilder != null) {
@@ -236,6 +378,7 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
         }
 
         Map<String, PreparedStatement> stmts = Maps.newHashMap();
+        BatchShape<SQLInsertBatch> shape = new BatchShape<SQLInsertBatch>(BatchShape.INSERT, configuration.getTemplates());
 
         // add first batch
         SQLSerializer serializer = createSerializer();
@@ -246,11 +389,22 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
         stmts.put(serializer.toString(), stmt);
         context.addSQL(serializer.toString());
         listeners.rendered(context);
+        shape.update(batches.get(0), serializer, stmt);
 
         // add other batches
         for (int i = 1; i < batches.size(); i++) {
             SQLInsertBatch batch = batches.get(i);
 
+            List<Object> bindings = shape.bind(batch);
+            if (bindings != null) {
+                // same shape as the previous batch
+                context.addSQL(shape.getSQL());
+                stmt = shape.getStatement();
+                setParameters(stmt, bindings, shape.getConstantPaths(), metadata.getParams());
+                stmt.addBatch();
+                continue;
+            }
+
             listeners.preRender(context);
             serializer = createSerializer();
             serializer.serializeInsert(metadata, entity, batch.getColumns(),
@@ -267,6 +421,7 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
                         metadata.getParams());
             }
             stmt.addBatch();
+            shape.update(batch, serializer, stmt);
         }
 
         return stmts.values();
@@ -295,6 +450,7 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
         } else {
             stmt = connection.prepareStatement(queryString);
         }
+        SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
         setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(),
                 metadata.getParams());
 
@@ -326,6 +482,7 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
                 }
                 stmt = stmts.iterator().next();
                 listeners.notifyInserts(entity, metadata, batches);
+                context.setData(SQLListenerContext.BATCH_SIZE, batches.size());
 
                 listeners.preExecute(context);
                 stmt.executeBatch();
@@ -352,6 +509,11 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
         }
     }
 
+    @Override
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
     @Override
     public long execute() {
         context = startContext(connection,metadata,entity);
@@ -369,6 +531,7 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
             } else {
                 stmts = createStatements(false);
                 listeners.notifyInserts(entity, metadata, batches);
+                context.setData(SQLListenerContext.BATCH_SIZE, batches.size());
 
                 listeners.preExecute(context);
                 long rc = executeBatch(stmts);
@@ -395,6 +558,14 @@ public class SQLInsertClause extends AbstractSQLClause<SQLInsertClause> implemen
             SQLSerializer serializer = createSerializer();
             serializer.serializeInsert(metadata, entity, columns, values, subQuery);
             return ImmutableList.of(createBindings(metadata, serializer));
+        } else if (isBulk()) {
+            ImmutableList.Builder<SQLBindings> builder = ImmutableList.builder();
+            for (List<SQLInsertBatch> chunk : getBulkChunks()) {
+                SQLSerializer serializer = createSerializer();
+                serializer.serializeInsert(metadata, entity, chunk);
+                builder.add(createBindings(metadata, serializer));
+            }
+            return builder.build();
         } else {
             ImmutableList.Builder<SQLBindings> builder = ImmutableList.builder();
             for (SQLInsertBatch batch : batches) {
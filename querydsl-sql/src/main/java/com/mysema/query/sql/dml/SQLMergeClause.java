@@ -24,6 +24,7 @@ import com.mysema.query.JoinType;
 import com.mysema.query.QueryFlag;
 import com.mysema.query.QueryFlag.Position;
 import com.mysema.query.QueryMetadata;
+import com.mysema.query.Tuple;
 import com.mysema.query.dml.StoreClause;
 import com.mysema.query.sql.*;
 import com.mysema.query.sql.types.Null;
@@ -44,7 +45,7 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
 
     private final List<Path<?>> columns = new ArrayList<Path<?>>();
 
-    private final Connection connection;
+    private Connection connection;
 
     private final RelationalPath<?> entity;
 
@@ -59,6 +60,8 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
 
     private final List<Expression<?>> values = new ArrayList<Expression<?>>();
 
+    private int keyChunkSize = 1000;
+
     private transient String queryString;
 
     private transient List<Object> constants;
@@ -108,16 +111,44 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
         }
     }
 
+    private boolean isNativeMerge() {
+        SQLTemplates templates = configuration.getTemplates();
+        if (batches.isEmpty()) {
+            return templates.isNativeMerge(entity, keys, columns);
+        } else {
+            for (SQLMergeBatch batch : batches) {
+                if (!templates.isNativeMerge(entity, batch.getKeys(), batch.getColumns())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Set the maximum amount of batch rows whose keys are resolved with a single select, when
+     * merges are emulated for databases without native merge support
+     *
+     * @param keyChunkSize
+     */
+    public void setKeyChunkSize(int keyChunkSize) {
+        if (keyChunkSize < 1) {
+            throw new IllegalArgumentException("keyChunkSize needs to be positive, got " + keyChunkSize);
+        }
+        this.keyChunkSize = keyChunkSize;
+    }
+
     /**
      * Add the current state of bindings as a batch item
      *
+     * <p>For databases without native merge support the batch is executed as one select per
+     * chunk of keys, followed by a batched insert of the new rows and a batched update of the
+     * existing rows. The statements are executed on the given connection and are thus part of
+     * its current transaction.</p>
+     *
      * @return
      */
     public SQLMergeClause addBatch() {
-        if (!configuration.getTemplates().isNativeMerge()) {
-            throw new IllegalStateException("batch only supported for databases that support native merge");
-        }
-
         batches.add(new SQLMergeBatch(keys, columns, values, subQuery));
         columns.clear();
         values.clear();
@@ -213,7 +244,7 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
     public ResultSet executeWithKeys() {
         context = startContext(connection, metadata, entity);
         try {
-            if (configuration.getTemplates().isNativeMerge()) {
+            if (isNativeMerge()) {
                 PreparedStatement stmt = null;
                 if (batches.isEmpty()) {
                     stmt = createStatement(true);
@@ -229,6 +260,7 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
                     }
                     stmt = stmts.iterator().next();
                     listeners.notifyMerges(entity, metadata, batches);
+                    context.setData(SQLListenerContext.BATCH_SIZE, batches.size());
 
                     listeners.preExecute(context);
                     stmt.executeBatch();
@@ -247,17 +279,32 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
                         }
                     }
                 };
+            } else if (!batches.isEmpty()) {
+                SQLInsertClause insert = new SQLInsertClause(connection, configuration, entity);
+                SQLUpdateClause update = new SQLUpdateClause(connection, configuration, entity);
+                splitBatches(getExistingKeys(), insert, update);
+                // new rows are inserted first, so that repeated keys in the batch update them
+                ResultSet rs = insert.isEmpty() ? EmptyResultSet.DEFAULT : insert.executeWithKeys();
+                if (!update.isEmpty()) {
+                    try {
+                        update.execute();
+                    } catch (RuntimeException e) {
+                        rs.close();
+                        throw e;
+                    }
+                }
+                return rs;
             } else {
                 List<?> ids = getIds();
                 if (!ids.isEmpty()) {
                     // update
-                    SQLUpdateClause update = new SQLUpdateClause(connection, configuration.getTemplates(), entity);
+                    SQLUpdateClause update = new SQLUpdateClause(connection, configuration, entity);
                     populate(update);
                     update.where(ExpressionUtils.in((Expression)getKeys().get(0),ids));
                     return EmptyResultSet.DEFAULT;
                 } else {
                     // insert
-                    SQLInsertClause insert = new SQLInsertClause(connection, configuration.getTemplates(), entity);
+                    SQLInsertClause insert = new SQLInsertClause(connection, configuration, entity);
                     populate(insert);
                     return insert.executeWithKeys();
                 }
@@ -270,10 +317,17 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
         }
     }
 
+    @Override
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
     @Override
     public long execute() {
-        if (configuration.getTemplates().isNativeMerge()) {
+        if (isNativeMerge()) {
             return executeNativeMerge();
+        } else if (!batches.isEmpty()) {
+            return executeBatchedCompositeMerge();
         } else {
             return executeCompositeMerge();
         }
@@ -314,19 +368,176 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
         List<?> ids = getIds();
         if (!ids.isEmpty()) {
             // update
-            SQLUpdateClause update = new SQLUpdateClause(connection, configuration.getTemplates(), entity);
+            SQLUpdateClause update = new SQLUpdateClause(connection, configuration, entity);
             populate(update);
             update.where(ExpressionUtils.in((Expression)getKeys().get(0),ids));
             return update.execute();
         } else {
             // insert
-            SQLInsertClause insert = new SQLInsertClause(connection, configuration.getTemplates(), entity);
+            SQLInsertClause insert = new SQLInsertClause(connection, configuration, entity);
             populate(insert);
             return insert.execute();
 
         }
     }
 
+    private long executeBatchedCompositeMerge() {
+        SQLInsertClause insert = new SQLInsertClause(connection, configuration, entity);
+        SQLUpdateClause update = new SQLUpdateClause(connection, configuration, entity);
+        splitBatches(getExistingKeys(), insert, update);
+        // new rows are inserted first, so that repeated keys in the batch update them
+        long rc = 0;
+        if (!insert.isEmpty()) {
+            rc += insert.execute();
+        }
+        if (!update.isEmpty()) {
+            rc += update.execute();
+        }
+        return rc;
+    }
+
+    private List<? extends Path<?>> getBatchKeys() {
+        List<? extends Path<?>> batchKeys = null;
+        for (SQLMergeBatch batch : batches) {
+            List<? extends Path<?>> k = !batch.getKeys().isEmpty() ? batch.getKeys() : getKeys();
+            if (batchKeys == null) {
+                batchKeys = k;
+            } else if (!batchKeys.equals(k)) {
+                throw new IllegalStateException("All batch items need to use the same keys");
+            }
+        }
+        return batchKeys;
+    }
+
+    /**
+     * Get the key values of the given batch item
+     *
+     * @param batchKeys
+     * @param batch
+     * @return key values or null, if a key is null
+     */
+    @Nullable
+    private static List<Object> getKeyValues(List<? extends Path<?>> batchKeys, SQLMergeBatch batch) {
+        if (batch.getSubQuery() != null) {
+            throw new IllegalStateException("Subqueries are not supported in emulated merge batches");
+        }
+        List<Object> rv = new ArrayList<Object>(batchKeys.size());
+        for (Path<?> key : batchKeys) {
+            int index = batch.getColumns().indexOf(key);
+            if (index < 0) {
+                throw new IllegalStateException("No value for key column " + key);
+            }
+            Expression<?> value = batch.getValues().get(index);
+            if (!(value instanceof Constant)) {
+                throw new IllegalStateException("Key column " + key + " needs a constant value");
+            }
+            Object constant = ((Constant<?>)value).getConstant();
+            if (constant instanceof Null) {
+                return null;
+            }
+            rv.add(constant);
+        }
+        return rv;
+    }
+
+    /**
+     * Create the queries which select the keys of the batch items in chunks
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    List<SQLQuery> createKeyQueries() {
+        List<? extends Path<?>> batchKeys = getBatchKeys();
+        Set<List<Object>> keyValues = new LinkedHashSet<List<Object>>();
+        for (SQLMergeBatch batch : batches) {
+            List<Object> k = getKeyValues(batchKeys, batch);
+            if (k != null) {
+                keyValues.add(k);
+            }
+        }
+        int chunkSize = Math.max(1, Math.min(keyChunkSize,
+                configuration.getTemplates().getMaxParameters() / batchKeys.size()));
+        List<SQLQuery> queries = new ArrayList<SQLQuery>();
+        List<List<Object>> chunk = new ArrayList<List<Object>>(chunkSize);
+        Iterator<List<Object>> it = keyValues.iterator();
+        while (it.hasNext()) {
+            chunk.add(it.next());
+            if (chunk.size() == chunkSize || !it.hasNext()) {
+                Predicate condition;
+                if (batchKeys.size() == 1) {
+                    List<Object> v = new ArrayList<Object>(chunk.size());
+                    for (List<Object> k : chunk) {
+                        v.add(k.get(0));
+                    }
+                    condition = ExpressionUtils.in((Expression)batchKeys.get(0), v);
+                } else {
+                    List<Predicate> rows = new ArrayList<Predicate>(chunk.size());
+                    for (List<Object> k : chunk) {
+                        List<Predicate> columns = new ArrayList<Predicate>(k.size());
+                        for (int i = 0; i < k.size(); i++) {
+                            columns.add(ExpressionUtils.eq((Expression)batchKeys.get(i),
+                                    ConstantImpl.create(k.get(i))));
+                        }
+                        rows.add(ExpressionUtils.allOf(columns));
+                    }
+                    condition = ExpressionUtils.anyOf(rows);
+                }
+                queries.add(new SQLQuery(connection, configuration).from(entity).where(condition));
+                chunk.clear();
+            }
+        }
+        return queries;
+    }
+
+    private Set<List<Object>> getExistingKeys() {
+        Expression<?>[] projection = getBatchKeys().toArray(new Expression<?>[0]);
+        Set<List<Object>> existing = new HashSet<List<Object>>();
+        for (SQLQuery query : createKeyQueries()) {
+            for (Tuple row : query.list(projection)) {
+                existing.add(Arrays.asList(row.toArray()));
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Split the batch items into inserts of new rows and updates of existing rows
+     *
+     * @param existing keys of the existing rows
+     * @param insert
+     * @param update
+     */
+    @SuppressWarnings("unchecked")
+    void splitBatches(Set<List<Object>> existing, SQLInsertClause insert, SQLUpdateClause update) {
+        existing = new HashSet<List<Object>>(existing);
+        List<? extends Path<?>> batchKeys = getBatchKeys();
+        for (SQLMergeBatch batch : batches) {
+            List<Object> k = getKeyValues(batchKeys, batch);
+            if (k == null || existing.add(k)) {
+                insert.columns(batch.getColumns().toArray(new Path<?>[batch.getColumns().size()]));
+                insert.values(batch.getValues().toArray());
+                insert.addBatch();
+            } else {
+                List<Path<?>> columns = new ArrayList<Path<?>>();
+                List<Expression<?>> values = new ArrayList<Expression<?>>();
+                for (int i = 0; i < batch.getColumns().size(); i++) {
+                    if (!batchKeys.contains(batch.getColumns().get(i))) {
+                        columns.add(batch.getColumns().get(i));
+                        values.add(batch.getValues().get(i));
+                    }
+                }
+                if (!columns.isEmpty()) {
+                    update.set(columns, values);
+                    for (int i = 0; i < batchKeys.size(); i++) {
+                        update.where(ExpressionUtils.eq((Expression)batchKeys.get(i),
+                                ConstantImpl.create(k.get(i))));
+                    }
+                    update.addBatch();
+                }
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private void populate(StoreClause<?> clause) {
         for (int i = 0; i < columns.size(); i++) {
@@ -427,6 +638,7 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
         } else {
             stmt = connection.prepareStatement(queryString);
         }
+        SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
         setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
         context.addPreparedStatement(stmt);
         listeners.prepared(context);
@@ -450,6 +662,7 @@ public class SQLMergeClause extends AbstractSQLClause<SQLMergeClause> implements
             } else {
                 stmts = createStatements(false);
                 listeners.notifyMerges(entity, metadata, batches);
+                context.setData(SQLListenerContext.BATCH_SIZE, batches.size());
 
                 listeners.preExecute(context);
                 long rc = executeBatch(stmts);
@@ -41,7 +41,7 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
 
     private static final Logger logger = LoggerFactory.getLogger(SQLInsertClause.class);
 
-    private final Connection connection;
+    private Connection connection;
 
     private final RelationalPath<?> entity;
 
@@ -115,6 +115,7 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
 
         listeners.prePrepare(context);
         PreparedStatement stmt = connection.prepareStatement(queryString);
+        SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
         setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
         context.addPreparedStatement(stmt);
         listeners.prepared(context);
@@ -133,19 +134,32 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
         listeners.rendered(context);
 
         Map<String, PreparedStatement> stmts = Maps.newHashMap();
+        BatchShape<SQLUpdateBatch> shape = new BatchShape<SQLUpdateBatch>(BatchShape.UPDATE, configuration.getTemplates());
 
         // add first batch
         listeners.prePrepare(context);
         PreparedStatement stmt = connection.prepareStatement(queryString);
+        SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
         setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
         stmt.addBatch();
         stmts.put(serializer.toString(), stmt);
         context.addPreparedStatement(stmt);
         listeners.prepared(context);
+        shape.update(batches.get(0), serializer, stmt);
 
 
         // add other batches
         for (int i = 1; i < batches.size(); i++) {
+            List<Object> bindings = shape.bind(batches.get(i));
+            if (bindings != null) {
+                // same shape as the previous batch
+                context.addSQL(shape.getSQL());
+                stmt = shape.getStatement();
+                setParameters(stmt, bindings, shape.getConstantPaths(), metadata.getParams());
+                stmt.addBatch();
+                continue;
+            }
+
             listeners.preRender(context);
             serializer = createSerializer();
             serializer.serializeUpdate(batches.get(i).getMetadata(), entity, batches.get(i).getUpdates());
@@ -156,17 +170,24 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
             if (stmt == null) {
                 listeners.prePrepare(context);
                 stmt = connection.prepareStatement(serializer.toString());
+                SQLWatchdog.setQueryTimeout(stmt, queryTimeout);
                 stmts.put(serializer.toString(), stmt);
                 context.addPreparedStatement(stmt);
                 listeners.prepared(context);
             }
             setParameters(stmt, serializer.getConstants(), serializer.getConstantPaths(), metadata.getParams());
             stmt.addBatch();
+            shape.update(batches.get(i), serializer, stmt);
         }
 
         return stmts.values();
     }
 
+    @Override
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
     @Override
     public long execute() {
         context = startContext(connection, metadata, entity);
@@ -185,6 +206,7 @@ public class SQLUpdateClause extends AbstractSQLClause<SQLUpdateClause> implemen
             } else {
                 stmts = createStatements();
                 listeners.notifyUpdates(entity, batches);
+                context.setData(SQLListenerContext.BATCH_SIZE, batches.size());
 
                 listeners.preExecute(context);
                 long rc = executeBatch(stmts);
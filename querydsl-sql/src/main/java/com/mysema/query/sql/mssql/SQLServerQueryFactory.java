@@ -20,6 +20,7 @@ import javax.inject.Provider;
 import com.mysema.query.sql.AbstractSQLQueryFactory;
 import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.SQLServerTemplates;
+import com.mysema.query.sql.SQLStatementCache;
 import com.mysema.query.sql.SQLTemplates;
 
 /**
@@ -34,6 +35,11 @@ public class SQLServerQueryFactory extends AbstractSQLQueryFactory<SQLServerQuer
         super(configuration, connection);
     }
 
+    public SQLServerQueryFactory(Configuration configuration, Provider<Connection> connection,
+            SQLStatementCache statementCache) {
+        super(configuration, connection, statementCache);
+    }
+
     public SQLServerQueryFactory(Provider<Connection> connection) {
         this(new Configuration(new SQLServerTemplates()), connection);
     }
@@ -22,8 +22,10 @@ import com.mysema.query.sql.AbstractSQLQueryFactory;
 import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.MySQLTemplates;
 import com.mysema.query.sql.RelationalPath;
+import com.mysema.query.sql.SQLStatementCache;
 import com.mysema.query.sql.SQLSubQuery;
 import com.mysema.query.sql.SQLTemplates;
+import com.mysema.query.sql.dml.SQLBulkLoadClause;
 import com.mysema.query.sql.dml.SQLInsertClause;
 import com.mysema.query.types.Expression;
 import com.mysema.query.types.TemplateExpressionImpl;
@@ -40,6 +42,11 @@ public class MySQLQueryFactory extends AbstractSQLQueryFactory<MySQLQuery, SQLSu
         super(configuration, connection);
     }
 
+    public MySQLQueryFactory(Configuration configuration, Provider<Connection> connection,
+            SQLStatementCache statementCache) {
+        super(configuration, connection, statementCache);
+    }
+
     public MySQLQueryFactory(Provider<Connection> connection) {
         this(new Configuration(new MySQLTemplates()), connection);
     }
@@ -48,6 +55,16 @@ public class MySQLQueryFactory extends AbstractSQLQueryFactory<MySQLQuery, SQLSu
         this(new Configuration(templates), connection);
     }
 
+    /**
+     * Create a new bulk load clause which uses LOAD DATA LOCAL INFILE
+     *
+     * @param entity
+     * @return
+     */
+    public SQLBulkLoadClause bulkLoad(RelationalPath<?> entity) {
+        return new SQLBulkLoadClause(connection.get(), configuration, entity);
+    }
+
     public SQLInsertClause insertIgnore(RelationalPath<?> entity) {
         SQLInsertClause insert = insert(entity);
         insert.addFlag(Position.START_OVERRIDE, "insert ignore into ");
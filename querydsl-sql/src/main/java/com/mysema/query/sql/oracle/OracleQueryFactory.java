@@ -20,6 +20,7 @@ import javax.inject.Provider;
 import com.mysema.query.sql.AbstractSQLQueryFactory;
 import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.OracleTemplates;
+import com.mysema.query.sql.SQLStatementCache;
 import com.mysema.query.sql.SQLSubQuery;
 import com.mysema.query.sql.SQLTemplates;
 
@@ -35,6 +36,11 @@ public class OracleQueryFactory extends AbstractSQLQueryFactory<OracleQuery, SQL
         super(configuration, connection);
     }
 
+    public OracleQueryFactory(Configuration configuration, Provider<Connection> connection,
+            SQLStatementCache statementCache) {
+        super(configuration, connection, statementCache);
+    }
+
     public OracleQueryFactory(Provider<Connection> connection) {
         this(new Configuration(new OracleTemplates()), connection);
     }
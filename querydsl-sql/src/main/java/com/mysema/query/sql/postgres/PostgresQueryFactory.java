@@ -20,8 +20,11 @@ import javax.inject.Provider;
 import com.mysema.query.sql.AbstractSQLQueryFactory;
 import com.mysema.query.sql.Configuration;
 import com.mysema.query.sql.PostgresTemplates;
+import com.mysema.query.sql.RelationalPath;
+import com.mysema.query.sql.SQLStatementCache;
 import com.mysema.query.sql.SQLSubQuery;
 import com.mysema.query.sql.SQLTemplates;
+import com.mysema.query.sql.dml.SQLBulkLoadClause;
 
 /**
  * PostgreSQL specific implementation of SQLQueryFactory
@@ -35,6 +38,11 @@ public class PostgresQueryFactory extends AbstractSQLQueryFactory<PostgresQuery,
         super(configuration, connection);
     }
 
+    public PostgresQueryFactory(Configuration configuration, Provider<Connection> connection,
+            SQLStatementCache statementCache) {
+        super(configuration, connection, statementCache);
+    }
+
     public PostgresQueryFactory(Provider<Connection> connection) {
         this(new Configuration(new PostgresTemplates()), connection);
     }
@@ -43,6 +51,16 @@ public class PostgresQueryFactory extends AbstractSQLQueryFactory<PostgresQuery,
         this(new Configuration(templates), connection);
     }
 
+    /**
+     * Create a new bulk load clause which uses COPY FROM STDIN
+     *
+     * @param entity
+     * @return
+     */
+    public SQLBulkLoadClause bulkLoad(RelationalPath<?> entity) {
+        return new SQLBulkLoadClause(connection.get(), configuration, entity);
+    }
+
     public PostgresQuery query() {
         return new PostgresQuery(connection.get(), configuration);
     }
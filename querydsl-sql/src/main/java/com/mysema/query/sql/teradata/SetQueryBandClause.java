@@ -34,7 +34,7 @@ import com.mysema.query.sql.dml.AbstractSQLClause;
  */
 public class SetQueryBandClause extends AbstractSQLClause<SetQueryBandClause> {
 
-    private final Connection connection;
+    private Connection connection;
 
     private boolean forSession = true;
 
@@ -77,6 +77,11 @@ public class SetQueryBandClause extends AbstractSQLClause<SetQueryBandClause> {
         return this;
     }
 
+    @Override
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
     @Override
     public long execute() {
         PreparedStatement stmt = null;
@@ -19,6 +19,7 @@ import javax.inject.Provider;
 
 import com.mysema.query.sql.AbstractSQLQueryFactory;
 import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.SQLStatementCache;
 import com.mysema.query.sql.SQLSubQuery;
 import com.mysema.query.sql.SQLTemplates;
 import com.mysema.query.sql.TeradataTemplates;
@@ -35,6 +36,11 @@ public class TeradataQueryFactory extends AbstractSQLQueryFactory<TeradataQuery,
         super(configuration, connection);
     }
 
+    public TeradataQueryFactory(Configuration configuration, Provider<Connection> connection,
+            SQLStatementCache statementCache) {
+        super(configuration, connection, statementCache);
+    }
+
     public TeradataQueryFactory(Provider<Connection> connection) {
         this(new Configuration(new TeradataTemplates()), connection);
     }
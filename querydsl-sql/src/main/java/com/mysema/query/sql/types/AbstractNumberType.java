@@ -34,5 +34,15 @@ public abstract class AbstractNumberType<T extends Number & Comparable<T>> exten
         Number num = (Number) rs.getObject(startIndex);
         return num != null ? MathUtils.cast(num, getReturnedClass()) : null; 
     }
+
+    @Override
+    public long getLong(ResultSet rs, int startIndex) throws SQLException {
+        return rs.getLong(startIndex);
+    }
+
+    @Override
+    public double getDouble(ResultSet rs, int startIndex) throws SQLException {
+        return rs.getDouble(startIndex);
+    }
     
 }
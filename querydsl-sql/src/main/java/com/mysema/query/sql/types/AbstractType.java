@@ -13,6 +13,9 @@
  */
 package com.mysema.query.sql.types;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 /**
  * Common abstract superclass for Type implementations
  *
@@ -37,4 +40,40 @@ public abstract class AbstractType<T> implements Type<T> {
         return value.toString();
     }
 
+    /**
+     * Get the numeric value from the result set as long without boxing it
+     *
+     * @param rs result set
+     * @param startIndex column index in result set
+     * @return value or zero, if the value is null
+     * @throws SQLException
+     */
+    public long getLong(ResultSet rs, int startIndex) throws SQLException {
+        Number number = getNumber(rs, startIndex);
+        return number != null ? number.longValue() : 0l;
+    }
+
+    /**
+     * Get the numeric value from the result set as double without boxing it
+     *
+     * @param rs result set
+     * @param startIndex column index in result set
+     * @return value or zero, if the value is null
+     * @throws SQLException
+     */
+    public double getDouble(ResultSet rs, int startIndex) throws SQLException {
+        Number number = getNumber(rs, startIndex);
+        return number != null ? number.doubleValue() : 0.0;
+    }
+
+    private Number getNumber(ResultSet rs, int startIndex) throws SQLException {
+        Object value = getValue(rs, startIndex);
+        if (value == null || value instanceof Number) {
+            return (Number)value;
+        } else {
+            throw new IllegalArgumentException("Value of type " + value.getClass().getName()
+                    + " is not numeric");
+        }
+    }
+
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.types;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * BinaryStream is an InputStream of known length, which is bound via
+ * {@link java.sql.PreparedStatement#setBinaryStream(int, InputStream, long)}
+ *
+ * <p>The contents are transferred by the driver in chunks and are never materialized by Querydsl.</p>
+ *
+ * <pre>
+ * insert.columns(document.id, document.content)
+ *     .values(1, new BinaryStream(new FileInputStream(file), file.length()))
+ *     .execute();
+ * </pre>
+ *
+ * @author tiwe
+ *
+ */
+public class BinaryStream extends FilterInputStream {
+
+    private final long length;
+
+    /**
+     * @param in stream to read from
+     * @param length amount of bytes to be read from the stream
+     */
+    public BinaryStream(InputStream in, long length) {
+        super(in);
+        if (length < 0) {
+            throw new IllegalArgumentException("length needs to be non-negative, got " + length);
+        }
+        this.length = length;
+    }
+
+    /**
+     * @return amount of bytes to be read from the stream
+     */
+    public long getLength() {
+        return length;
+    }
+
+}
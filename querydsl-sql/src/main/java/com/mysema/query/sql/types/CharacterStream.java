@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.types;
+
+import java.io.FilterReader;
+import java.io.Reader;
+
+/**
+ * CharacterStream is a Reader of known length, which is bound via
+ * {@link java.sql.PreparedStatement#setCharacterStream(int, Reader, long)}
+ *
+ * <p>The contents are transferred by the driver in chunks and are never materialized by Querydsl.</p>
+ *
+ * @author tiwe
+ *
+ */
+public class CharacterStream extends FilterReader {
+
+    private final long length;
+
+    /**
+     * @param in reader to read from
+     * @param length amount of characters to be read from the reader
+     */
+    public CharacterStream(Reader in, long length) {
+        super(in);
+        if (length < 0) {
+            throw new IllegalArgumentException("length needs to be non-negative, got " + length);
+        }
+        this.length = length;
+    }
+
+    /**
+     * @return amount of characters to be read from the reader
+     */
+    public long getLength() {
+        return length;
+    }
+
+}
@@ -22,6 +22,14 @@ import java.sql.Types;
 /**
  * InputStreamType maps InputStream to InputStream on the JDBC level
  *
+ * <p>The returned streams are streamed from the result set and are only valid until the
+ * cursor is advanced, so they should be consumed via
+ * {@link com.mysema.query.sql.AbstractSQLQuery#iterate(com.mysema.query.types.Expression)}.
+ * {@link BinaryStream} values are bound with their length.</p>
+ *
+ * <p>The type is not registered by default, since it would change how existing InputStream
+ * values are bound. Register it via {@link com.mysema.query.sql.Configuration#register(Type)}.</p>
+ *
  * @author tiwe
  *
  */
@@ -47,7 +55,11 @@ public class InputStreamType extends AbstractType<InputStream> {
 
     @Override
     public void setValue(PreparedStatement ps, int column, InputStream value) throws SQLException {
-        ps.setBinaryStream(column, value);
+        if (value instanceof BinaryStream) {
+            ps.setBinaryStream(column, value, ((BinaryStream)value).getLength());
+        } else {
+            ps.setBinaryStream(column, value);
+        }
     }
 
 }
\ No newline at end of file
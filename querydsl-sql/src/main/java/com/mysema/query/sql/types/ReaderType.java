@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.types;
+
+import java.io.Reader;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * ReaderType maps Reader to Clob on the JDBC level
+ *
+ * <p>The returned readers are streamed from the result set and are only valid until the
+ * cursor is advanced, so they should be consumed via
+ * {@link com.mysema.query.sql.AbstractSQLQuery#iterate(com.mysema.query.types.Expression)}.
+ * {@link CharacterStream} values are bound with their length.</p>
+ *
+ * <p>The type is not registered by default, since it would change how existing Reader
+ * values are bound. Register it via {@link com.mysema.query.sql.Configuration#register(Type)}.</p>
+ *
+ * @author tiwe
+ *
+ */
+public class ReaderType extends AbstractType<Reader> {
+
+    public ReaderType() {
+        super(Types.CLOB);
+    }
+
+    public ReaderType(int type) {
+        super(type);
+    }
+
+    @Override
+    public Class<Reader> getReturnedClass() {
+        return Reader.class;
+    }
+
+    @Override
+    public Reader getValue(ResultSet rs, int column) throws SQLException {
+        return rs.getCharacterStream(column);
+    }
+
+    @Override
+    public void setValue(PreparedStatement ps, int column, Reader value) throws SQLException {
+        if (value instanceof CharacterStream) {
+            ps.setCharacterStream(column, value, ((CharacterStream)value).getLength());
+        } else {
+            ps.setCharacterStream(column, value);
+        }
+    }
+
+}
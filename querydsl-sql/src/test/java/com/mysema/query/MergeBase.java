@@ -125,7 +125,7 @@ public class MergeBase extends AbstractBaseTest{
     }
 
     @Test
-    @IncludeIn(H2)
+    @IncludeIn({H2, MYSQL, POSTGRES, SQLITE})
     public void MergeBatch() {
         SQLMergeClause merge = merge(survey)
             .keys(survey.id)
@@ -145,6 +145,28 @@ public class MergeBase extends AbstractBaseTest{
         assertEquals(1l, query().from(survey).where(survey.name.eq("6")).count());
     }
 
+    @Test
+    @IncludeIn({DERBY, HSQLDB})
+    public void MergeBatch_Repeated_Key_With_Keys() throws SQLException {
+        SQLMergeClause merge = merge(survey)
+            .keys(survey.id)
+            .set(survey.id, 5)
+            .set(survey.name, "5")
+            .addBatch();
+
+        merge
+            .keys(survey.id)
+            .set(survey.id, 5)
+            .set(survey.name, "6")
+            .addBatch();
+
+        ResultSet rs = merge.executeWithKeys();
+        rs.close();
+
+        assertEquals(1l, query().from(survey).where(survey.id.eq(5)).count());
+        assertEquals("6", query().from(survey).where(survey.id.eq(5)).uniqueResult(survey.name));
+    }
+
     @Test
     @IncludeIn(H2)
     public void MergeBatch_Templates() {
@@ -21,7 +21,11 @@ import java.util.List;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class SQLListenersTest
 {
@@ -41,6 +45,20 @@ public class SQLListenersTest
         verify(listener);
     }
 
+    @Test
+    public void Empty_Listeners_Share_Context()
+    {
+        SQLListeners parent = new SQLListeners();
+        SQLListeners listeners = new SQLListeners(parent);
+        QueryMetadata md = new DefaultQueryMetadata();
+        assertTrue(listeners.isEmpty());
+        assertSame(listeners.createContext(md, null, null), listeners.createContext(md, null, null));
+
+        parent.add(createMock(SQLListener.class));
+        assertFalse(listeners.isEmpty());
+        assertNotSame(listeners.createContext(md, null, null), listeners.createContext(md, null, null));
+    }
+
     @Test
     public void NotifyQuery_Parent()
     {
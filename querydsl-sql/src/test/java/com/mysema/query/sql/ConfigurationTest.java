@@ -25,6 +25,7 @@ import com.mysema.query.sql.types.*;
 import org.easymock.EasyMock;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class ConfigurationTest {
 
@@ -86,5 +87,13 @@ public class ConfigurationTest {
         assertEquals(configuration.getJavaType(Types.NUMERIC, "", 19, 0, "", ""), BigInteger.class);
     }
 
+    @Test
+    public void Get_Type() {
+        Configuration configuration = new Configuration(new H2Templates());
+        configuration.register("SURVEY", "NAME", new EncryptedString());
+        assertTrue(configuration.getType(QSurvey.survey.name, String.class) instanceof EncryptedString);
+        assertTrue(configuration.getType(QSurvey.survey.name2, String.class) instanceof StringType);
+        assertTrue(configuration.getType(null, String.class) instanceof StringType);
+    }
 
 }
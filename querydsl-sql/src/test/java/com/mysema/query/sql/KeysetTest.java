@@ -0,0 +1,85 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.OrderSpecifier;
+import com.mysema.query.types.Predicate;
+
+public class KeysetTest {
+
+    private QSurvey survey = QSurvey.survey;
+
+    private String serialize(Predicate predicate) {
+        SQLSerializer serializer = new SQLSerializer(new Configuration(SQLTemplates.DEFAULT));
+        serializer.handle(predicate);
+        return serializer.toString();
+    }
+
+    private String after(boolean rowValues, List<?> values, OrderSpecifier<?>... orderBy) {
+        return serialize(Keyset.after(Arrays.<OrderSpecifier<?>>asList(orderBy), values, rowValues));
+    }
+
+    @Test
+    public void Single_Key() {
+        assertEquals("SURVEY.ID > ?", after(true, Arrays.asList(1), survey.id.asc()));
+        assertEquals("SURVEY.ID < ?", after(false, Arrays.asList(1), survey.id.desc()));
+    }
+
+    @Test
+    public void Row_Value() {
+        assertEquals("(SURVEY.NAME, SURVEY.ID) > (?, ?)",
+                after(true, Arrays.asList("a", 1), survey.name.asc(), survey.id.asc()));
+    }
+
+    @Test
+    public void Expanded() {
+        assertEquals("SURVEY.NAME > ? or SURVEY.NAME = ? and SURVEY.ID > ?",
+                after(false, Arrays.asList("a", 1), survey.name.asc(), survey.id.asc()));
+    }
+
+    @Test
+    public void Mixed_Directions() {
+        assertEquals("SURVEY.NAME > ? or SURVEY.NAME = ? and SURVEY.ID < ?",
+                after(true, Arrays.asList("a", 1), survey.name.asc(), survey.id.desc()));
+    }
+
+    @Test
+    public void Nulls_Last() {
+        assertEquals("SURVEY.NAME > ? or SURVEY.NAME is null or SURVEY.NAME = ? and SURVEY.ID > ?",
+                after(true, Arrays.asList("a", 1), survey.name.asc().nullsLast(), survey.id.asc()));
+        assertEquals("SURVEY.NAME is null and SURVEY.ID > ?",
+                after(true, Arrays.asList(null, 1), survey.name.asc().nullsLast(), survey.id.asc()));
+    }
+
+    @Test
+    public void Nulls_First() {
+        assertEquals("SURVEY.NAME is not null or SURVEY.NAME is null and SURVEY.ID > ?",
+                after(true, Arrays.asList(null, 1), survey.name.asc().nullsFirst(), survey.id.asc()));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void Null_With_Default_Handling() {
+        after(true, Arrays.asList(null, 1), survey.name.asc(), survey.id.asc());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void Wrong_Amount_Of_Values() {
+        after(true, Arrays.asList(1), survey.name.asc(), survey.id.asc());
+    }
+
+    @Test
+    public void SeekAfter() {
+        SQLQuery query = new SQLQuery(new H2Templates());
+        query.from(survey).orderBy(survey.name.asc(), survey.id.asc()).seekAfter("a", 1);
+        query.getMetadata().addProjection(survey.id);
+        assertEquals("select SURVEY.ID from SURVEY SURVEY where (SURVEY.NAME, SURVEY.ID) > (?, ?) "
+                + "order by SURVEY.NAME asc, SURVEY.ID asc", query.toString().replace('\n', ' '));
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.mysema.query.sql;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import com.mysema.query.SearchResults;
+import com.mysema.query.sql.domain.QSurvey;
+
+public class ListResultsTest {
+
+    private static final String PAGE_QUERY = "select SURVEY.ID\nfrom SURVEY SURVEY\nlimit ?";
+
+    private static final String COUNT_QUERY = "select count(*)\nfrom SURVEY SURVEY";
+
+    private final QSurvey survey = QSurvey.survey;
+
+    private final Configuration configuration = new Configuration(new H2Templates());
+
+    private final List<Thread> threads = new ArrayList<Thread>();
+
+    private final Executor threadExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            Thread thread = new Thread(command);
+            threads.add(thread);
+            thread.start();
+        }
+    };
+
+    private static Connection connection(String sql, Object... rows) throws SQLException {
+        ResultSet rs = createNiceMock(ResultSet.class);
+        for (Object row : rows) {
+            expect(rs.next()).andReturn(true);
+            expect(rs.getObject(1)).andReturn(row);
+        }
+        return connection(sql, rs);
+    }
+
+    private static Connection countConnection(long count) throws SQLException {
+        ResultSet rs = createNiceMock(ResultSet.class);
+        expect(rs.next()).andReturn(true);
+        expect(rs.getLong(1)).andReturn(count);
+        return connection(COUNT_QUERY, rs);
+    }
+
+    private static Connection connection(String sql, ResultSet rs) throws SQLException {
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        expect(stmt.executeQuery()).andReturn(rs);
+        Connection conn = createMock(Connection.class);
+        expect(conn.prepareStatement(sql)).andReturn(stmt);
+        replay(rs, stmt, conn);
+        return conn;
+    }
+
+    @Test
+    public void Complete_Page_Skips_Count() throws SQLException {
+        Connection conn = connection(PAGE_QUERY, 1, 2);
+        SearchResults<Integer> results = new SQLQuery(conn, configuration)
+            .from(survey).limit(3).listResults(survey.id);
+        assertEquals(Arrays.asList(1, 2), results.getResults());
+        assertEquals(2l, results.getTotal());
+        verify(conn);
+    }
+
+    @Test
+    public void Concurrent_Count() throws SQLException, InterruptedException {
+        Connection conn = connection(PAGE_QUERY, 1, 2);
+        Connection countConn = countConnection(5l);
+        SQLQuery query = new SQLQuery(conn, configuration).from(survey).limit(2);
+        query.setConcurrentCount(countConn, threadExecutor);
+        SearchResults<Integer> results = query.listResults(survey.id);
+        assertEquals(Arrays.asList(1, 2), results.getResults());
+        assertEquals(5l, results.getTotal());
+        // the count is executed in its own thread on the count connection
+        assertEquals(1, threads.size());
+        threads.get(0).join();
+        verify(conn, countConn);
+    }
+
+    @Test
+    public void Concurrent_Count_Cancelled_For_Complete_Page() throws SQLException {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Connection conn = connection(PAGE_QUERY, 1);
+        Connection countConn = createMock(Connection.class);
+        replay(countConn);
+        SQLQuery query = new SQLQuery(conn, configuration).from(survey).limit(2);
+        query.setConcurrentCount(countConn, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+        SearchResults<Integer> results = query.listResults(survey.id);
+        assertEquals(1l, results.getTotal());
+        // the count was submitted before the page query, but isn't needed
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        verify(conn, countConn);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void Concurrent_Count_Requires_Executor() throws SQLException {
+        new SQLQuery(null, configuration).setConcurrentCount(createMock(Connection.class), null);
+    }
+
+    @Test
+    public void Sequential_Count() throws SQLException {
+        ResultSet page = createNiceMock(ResultSet.class);
+        expect(page.next()).andReturn(true);
+        expect(page.getObject(1)).andReturn(1);
+        ResultSet count = createNiceMock(ResultSet.class);
+        expect(count.next()).andReturn(true);
+        expect(count.getLong(1)).andReturn(3l);
+        PreparedStatement pageStmt = createNiceMock(PreparedStatement.class);
+        expect(pageStmt.executeQuery()).andReturn(page);
+        PreparedStatement countStmt = createNiceMock(PreparedStatement.class);
+        expect(countStmt.executeQuery()).andReturn(count);
+        Connection conn = createMock(Connection.class);
+        expect(conn.prepareStatement(PAGE_QUERY)).andReturn(pageStmt);
+        expect(conn.prepareStatement(COUNT_QUERY)).andReturn(countStmt);
+        replay(page, count, pageStmt, countStmt, conn);
+
+        SearchResults<Integer> results = new SQLQuery(conn, configuration)
+            .from(survey).limit(1).listResults(survey.id);
+        assertEquals(Arrays.asList(1), results.getResults());
+        assertEquals(3l, results.getTotal());
+        verify(conn);
+        assertTrue(threads.isEmpty());
+    }
+
+}
@@ -13,8 +13,17 @@
  */
 package com.mysema.query.sql;
 
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
 import org.junit.Test;
 
 
@@ -47,6 +56,17 @@ public class MySQLTemplatesTest extends AbstractSQLTemplatesTest {
         assertEquals("from SURVEY survey1 order by (case when survey1.NAME is null then 1 else 0 end), survey1.NAME asc", query.toString());
     }
 
+    @Test
+    public void PrepareStreaming() throws SQLException {
+        Connection conn = createMock(Connection.class);
+        PreparedStatement stmt = createMock(PreparedStatement.class);
+        expect(conn.prepareStatement("select 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+            .andReturn(stmt);
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        replay(conn, stmt);
 
+        assertEquals(stmt, new MySQLTemplates().prepareStreaming(conn, "select 1", 100));
+        verify(conn, stmt);
+    }
 
 }
@@ -13,12 +13,28 @@
  */
 package com.mysema.query.sql;
 
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import org.junit.Test;
 
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.ParamNotSetException;
 import com.mysema.query.types.Path;
 import com.mysema.query.types.expr.NumberExpression;
+import com.mysema.query.types.expr.Param;
 import com.mysema.query.types.path.SimplePath;
 import com.mysema.query.types.template.NumberTemplate;
 
@@ -55,5 +71,68 @@ public class PostgresTemplatesTest extends AbstractSQLTemplatesTest{
                 "(select 3)", union.toString());
     }
 
+    @Test
+    public void PrepareStreaming() throws SQLException {
+        Connection conn = createMock(Connection.class);
+        PreparedStatement stmt = createMock(PreparedStatement.class);
+        expect(conn.prepareStatement("select 1", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))
+            .andReturn(stmt);
+        stmt.setFetchSize(1000);
+        replay(conn, stmt);
+
+        assertEquals(stmt, new PostgresTemplates().prepareStreaming(conn, "select 1", 0));
+        verify(conn, stmt);
+    }
+
+    @Test
+    public void Streaming_AutoCommit() throws SQLException {
+        Connection conn = createMock(Connection.class);
+        expect(conn.getAutoCommit()).andReturn(true);
+        conn.setAutoCommit(false);
+        conn.commit();
+        conn.setAutoCommit(true);
+        replay(conn);
+
+        SQLTemplates templates = new PostgresTemplates();
+        assertTrue(templates.beginStreaming(conn));
+        templates.endStreaming(conn);
+        verify(conn);
+    }
+
+    @Test
+    public void Streaming_Failure() throws SQLException {
+        QSurvey survey = QSurvey.survey;
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        Connection conn = createMock(Connection.class);
+        expect(conn.getAutoCommit()).andReturn(true);
+        conn.setAutoCommit(false);
+        expect(conn.prepareStatement("select SURVEY.ID\nfrom SURVEY SURVEY\nwhere SURVEY.ID = ?",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)).andReturn(stmt);
+        conn.commit();
+        conn.setAutoCommit(true);
+        replay(stmt, conn);
+
+        SQLQuery query = new SQLQuery(conn, new PostgresTemplates());
+        query.setStreaming(true);
+        query.from(survey).where(survey.id.eq(new Param<Integer>(Integer.class, "id")));
+        try {
+            query.iterate(survey.id);
+            fail("Expected ParamNotSetException");
+        } catch (ParamNotSetException e) {
+            // expected
+        }
+        // auto commit is restored, though no iterator was returned
+        verify(conn);
+    }
+
+    @Test
+    public void Streaming_Transaction() throws SQLException {
+        Connection conn = createMock(Connection.class);
+        expect(conn.getAutoCommit()).andReturn(false);
+        replay(conn);
+
+        assertFalse(new PostgresTemplates().beginStreaming(conn));
+        verify(conn);
+    }
 
 }
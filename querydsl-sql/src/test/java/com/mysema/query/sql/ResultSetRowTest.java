@@ -0,0 +1,95 @@
+package com.mysema.query.sql;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+import com.mysema.query.sql.types.LongType;
+import com.mysema.query.sql.types.StringType;
+import com.mysema.query.sql.types.Type;
+
+public class ResultSetRowTest {
+
+    private final Configuration configuration = new Configuration(new H2Templates());
+
+    @Test
+    public void Primitives() throws SQLException {
+        ResultSet rs = createMock(ResultSet.class);
+        expect(rs.next()).andReturn(true);
+        expect(rs.getLong(1)).andReturn(0l);
+        expect(rs.wasNull()).andReturn(true);
+        expect(rs.getDouble(1)).andReturn(2.0);
+        expect(rs.getString(2)).andReturn("abc");
+        replay(rs);
+
+        ResultSetRow row = new ResultSetRow(configuration, rs,
+                new Type<?>[]{new LongType(), new StringType()});
+        assertTrue(row.next());
+        assertEquals(2, row.size());
+        assertEquals(0l, row.getLong(0));
+        assertTrue(row.isNull(0));
+        assertEquals(2.0, row.getDouble(0), 0.0);
+        assertEquals("abc", row.get(1, String.class));
+        verify(rs);
+    }
+
+    @Test
+    public void Primitives_Custom_Type() throws SQLException {
+        ResultSet rs = createMock(ResultSet.class);
+        expect(rs.next()).andReturn(true);
+        expect(rs.getObject(1)).andReturn(3);
+        expect(rs.getObject(1)).andReturn(null);
+        replay(rs);
+
+        // types which don't extend AbstractType are read via getValue
+        Type<Object> type = new Type<Object>() {
+            @Override
+            public int[] getSQLTypes() {
+                return new int[0];
+            }
+            @Override
+            public Class<Object> getReturnedClass() {
+                return Object.class;
+            }
+            @Override
+            public String getLiteral(Object value) {
+                return value.toString();
+            }
+            @Override
+            public Object getValue(ResultSet rs, int startIndex) throws SQLException {
+                return rs.getObject(startIndex);
+            }
+            @Override
+            public void setValue(PreparedStatement st, int startIndex, Object value) {}
+        };
+        ResultSetRow row = new ResultSetRow(configuration, rs, new Type<?>[]{type});
+        assertTrue(row.next());
+        assertEquals(3l, row.getLong(0));
+        assertEquals(0.0, row.getDouble(0), 0.0);
+        verify(rs);
+    }
+
+    @Test
+    public void IsNull_Without_Read() throws SQLException {
+        ResultSet rs = createMock(ResultSet.class);
+        expect(rs.next()).andReturn(true);
+        expect(rs.getObject(1)).andReturn(1l);
+        replay(rs);
+
+        ResultSetRow row = new ResultSetRow(configuration, rs, new Type<?>[]{new LongType()});
+        assertTrue(row.next());
+        assertFalse(row.isNull(0));
+        verify(rs);
+    }
+
+}
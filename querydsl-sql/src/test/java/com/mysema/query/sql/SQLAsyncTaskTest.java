@@ -0,0 +1,167 @@
+package com.mysema.query.sql;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import javax.inject.Provider;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.sql.dml.SQLDeleteClause;
+import com.mysema.query.sql.domain.QSurvey;
+
+public class SQLAsyncTaskTest {
+
+    private final SQLListeners listeners = new SQLListeners();
+
+    @Test
+    public void Result() throws InterruptedException, ExecutionException {
+        ListenableFuture<Long> future = SQLAsyncTask.submit(MoreExecutors.directExecutor(),
+                listeners, new Callable<Long>() {
+            @Override
+            public Long call() {
+                return 5l;
+            }
+        });
+        assertEquals(Long.valueOf(5l), future.get());
+    }
+
+    @Test(expected=ExecutionException.class)
+    public void Exception() throws InterruptedException, ExecutionException {
+        SQLAsyncTask.submit(MoreExecutors.directExecutor(), listeners, new Callable<Long>() {
+            @Override
+            public Long call() {
+                throw new IllegalStateException();
+            }
+        }).get();
+    }
+
+    @Test
+    public void Tracker_Removed() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        Callable<Long> work = new Callable<Long>() {
+            @Override
+            public Long call() {
+                return 1l;
+            }
+        };
+        SQLAsyncTask.submit(MoreExecutors.directExecutor(), listeners, work);
+        assertTrue(listeners.isEmpty());
+
+        SQLAsyncTask.submit(executor, listeners, work).cancel(false);
+        assertTrue(listeners.isEmpty());
+    }
+
+    @Test
+    public void Clause_Bound_In_Task() throws SQLException, InterruptedException, ExecutionException {
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        expect(stmt.executeUpdate()).andReturn(2);
+        final Connection connection = createMock(Connection.class);
+        expect(connection.prepareStatement("delete from SURVEY")).andReturn(stmt);
+        replay(stmt, connection);
+
+        Configuration configuration = new Configuration(new H2Templates());
+        SQLQueryFactory queryFactory = new SQLQueryFactory(configuration, new Provider<Connection>() {
+            @Override
+            public Connection get() {
+                return connection;
+            }
+        });
+        SQLDeleteClause delete = new SQLDeleteClause(null, configuration, QSurvey.survey);
+        assertEquals(Long.valueOf(2l), queryFactory.executeAsync(delete).get());
+        verify(connection);
+    }
+
+    @Test
+    public void Connection_Taken_In_Task() throws InterruptedException {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+        Configuration configuration = new Configuration(new H2Templates());
+        configuration.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+        Provider<Connection> provider = new Provider<Connection>() {
+            @Override
+            public Connection get() {
+                threads.add(Thread.currentThread());
+                throw new IllegalStateException();
+            }
+        };
+        QSurvey survey = QSurvey.survey;
+        SQLQueryFactory queryFactory = new SQLQueryFactory(configuration, provider);
+        ListenableFuture<Long> future = queryFactory.countAsync(new SQLQuery(configuration).from(survey));
+        assertTrue(threads.isEmpty());
+
+        Thread thread = new Thread(tasks.get(0));
+        thread.start();
+        thread.join();
+        assertEquals(Collections.singletonList(thread), threads);
+        try {
+            future.get();
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void Cancel_Cancels_Statement() throws SQLException {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        PreparedStatement stmt = createMock(PreparedStatement.class);
+        stmt.cancel();
+        replay(stmt);
+
+        ListenableFuture<Long> future = SQLAsyncTask.submit(executor, listeners, new Callable<Long>() {
+            @Override
+            public Long call() {
+                return 1l;
+            }
+        });
+        SQLListenerContextImpl context = new SQLListenerContextImpl(new DefaultQueryMetadata(),
+                createMock(Connection.class));
+        context.addPreparedStatement(stmt);
+        listeners.prepared(context);
+        future.cancel(true);
+        assertTrue(future.isCancelled());
+        verify(stmt);
+
+        // cancelled tasks are skipped
+        tasks.get(0).run();
+        assertTrue(future.isCancelled());
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.sql.domain.QSurvey;
+
+public class SQLMetricsListenerTest {
+
+    private final SQLMetricsListener listener = new SQLMetricsListener();
+
+    private SQLListenerContextImpl execute(SQLMetricsListener listener, String sql) {
+        SQLListenerContextImpl context = new SQLListenerContextImpl(new DefaultQueryMetadata());
+        listener.start(context);
+        listener.preRender(context);
+        context.addSQL(sql);
+        listener.rendered(context);
+        listener.prePrepare(context);
+        listener.prepared(context);
+        listener.preExecute(context);
+        listener.executed(context);
+        return context;
+    }
+
+    @Test
+    public void Fingerprint() {
+        assertEquals("select * from survey where id in (?) and name = ?",
+                SQLMetricsListener.fingerprint("select * from survey\\nwhere id in (1, 2, 3) and name = 'O''Brien'"
+                        .replace("\\n", "\n")));
+        assertEquals("select col1 from t2 where x = ?",
+                SQLMetricsListener.fingerprint("select col1 from t2 where x = -1.5"));
+        assertEquals("select a from b where c in (?)",
+                SQLMetricsListener.fingerprint("select a from b where c in (?, ?,?)"));
+    }
+
+    @Test
+    public void Phases() {
+        SQLListenerContextImpl context = execute(listener, "select id from survey where id = 1");
+        context.setData(SQLListenerContext.ROW_COUNT, 5);
+        listener.end(context);
+        execute(listener, "select id from survey where id = 2");
+        SQLMetricsListener.QueryMetrics metrics = listener.getMetrics("select id from survey where id = ?");
+        assertEquals(1, listener.getMetrics().size());
+        assertEquals(1, metrics.getTotal().getCount());
+        assertEquals(1, metrics.getRender().getCount());
+        assertEquals(1, metrics.getExecute().getCount());
+        assertEquals(1, metrics.getFetch().getCount());
+        assertEquals(5, metrics.getRows().getMax());
+        assertEquals(0, metrics.getBatchSize().getCount());
+    }
+
+    @Test
+    public void Batches() {
+        SQLListenerContextImpl context = execute(listener, "insert into survey values (?)");
+        context.setEntity(QSurvey.survey);
+        context.setData(SQLListenerContext.BATCH_SIZE, 250);
+        listener.end(context);
+        context = execute(listener, "insert into survey values (?)");
+        context.setEntity(QSurvey.survey);
+        listener.end(context);
+        SQLMetricsListener.QueryMetrics metrics = listener.getMetrics("insert into survey values (?)");
+        // executions without batches aren't recorded
+        assertEquals(2, metrics.getTotal().getCount());
+        assertEquals(1, metrics.getBatchSize().getCount());
+        assertEquals(250, metrics.getBatchSize().getMax());
+    }
+
+    @Test
+    public void Errors() {
+        SQLListenerContextImpl context = execute(listener, "select 1");
+        context.setException(new SQLException());
+        listener.exception(context);
+        listener.end(context);
+        SQLMetricsListener.QueryMetrics metrics = listener.getMetrics("select 1");
+        assertEquals(1, metrics.getErrorCount());
+        assertEquals(0, metrics.getExecute().getCount());
+    }
+
+    @Test
+    public void Sampling() {
+        SQLMetricsListener sampled = new SQLMetricsListener(4);
+        for (int i = 0; i < 10; i++) {
+            sampled.end(execute(sampled, "select 1"));
+        }
+        assertEquals(3, sampled.getMetrics("select 1").getTotal().getCount());
+
+        sampled.setEnabled(false);
+        sampled.clear();
+        sampled.end(execute(sampled, "select 1"));
+        assertNull(sampled.getMetrics("select 1"));
+    }
+
+    @Test
+    public void Fetch_Of_List_Queries_Only() {
+        listener.end(execute(listener, "select 1"));
+        SQLMetricsListener.QueryMetrics metrics = listener.getMetrics("select 1");
+        assertEquals(1, metrics.getExecute().getCount());
+        assertEquals(0, metrics.getFetch().getCount());
+    }
+
+    @Test
+    public void Max_Fingerprints() {
+        SQLMetricsListener limited = new SQLMetricsListener(1, 2);
+        limited.end(execute(limited, "select a from survey"));
+        limited.end(execute(limited, "select b from survey"));
+        limited.end(execute(limited, "select c from survey"));
+        limited.end(execute(limited, "select a from survey"));
+        assertEquals(2, limited.getMetrics().size());
+        assertNull(limited.getMetrics("select c from survey"));
+        assertEquals(2, limited.getMetrics("select a from survey").getTotal().getCount());
+        assertEquals(1, limited.getDroppedCount());
+    }
+
+    @Test
+    public void Histogram() {
+        SQLMetricsListener.Histogram histogram = new SQLMetricsListener.Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.001);
+        assertEquals(63, histogram.getPercentile(0.5));
+        assertEquals(100, histogram.getPercentile(0.99));
+        assertTrue(histogram.getPercentile(0.1) <= 15);
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.mysema.query.sql;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Provider;
+
+import org.junit.Test;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.mysema.query.QueryException;
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.Predicate;
+
+public class SQLPartitionedScanTest {
+
+    private QSurvey survey = QSurvey.survey;
+
+    private Provider<Connection> connection = new Provider<Connection>() {
+        @Override
+        public Connection get() {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private List<String> serialize(List<Predicate> predicates) {
+        List<String> rv = new ArrayList<String>();
+        for (Predicate predicate : predicates) {
+            SQLSerializer serializer = new SQLSerializer(new Configuration(SQLTemplates.DEFAULT));
+            serializer.handle(predicate);
+            rv.add(serializer.toString() + " " + serializer.getConstants());
+        }
+        return rv;
+    }
+
+    private SQLPartitionedScan<Integer> scan(SQLQuery query) {
+        return new SQLPartitionedScan<Integer>(connection, MoreExecutors.directExecutor(),
+                query, survey.id);
+    }
+
+    @Test
+    public void Unordered() {
+        SQLQuery query = new SQLQuery(SQLTemplates.DEFAULT).from(survey);
+        List<String> predicates = serialize(scan(query).partitions(4).bounds(1, 100).getPredicates());
+        assertEquals(4, predicates.size());
+        assertEquals("SURVEY.ID < ? or SURVEY.ID is null [26]", predicates.get(0));
+        assertEquals("SURVEY.ID >= ? and SURVEY.ID < ? [26, 51]", predicates.get(1));
+        assertEquals("SURVEY.ID >= ? and SURVEY.ID < ? [51, 76]", predicates.get(2));
+        assertEquals("SURVEY.ID >= ? [76]", predicates.get(3));
+    }
+
+    @Test
+    public void Ordered_Descending() {
+        SQLQuery query = new SQLQuery(SQLTemplates.DEFAULT).from(survey).orderBy(survey.id.desc());
+        List<String> predicates = serialize(scan(query).partitions(2).bounds(1, 10).getPredicates());
+        assertEquals("SURVEY.ID >= ? or SURVEY.ID is null [6]", predicates.get(0));
+        assertEquals("SURVEY.ID < ? [6]", predicates.get(1));
+    }
+
+    @Test
+    public void Ordered_Ascending_Nulls_First() {
+        SQLQuery query = new SQLQuery(SQLTemplates.DEFAULT).from(survey)
+                .orderBy(survey.id.asc().nullsFirst());
+        List<String> predicates = serialize(scan(query).partitions(2).bounds(1, 10).getPredicates());
+        assertEquals("SURVEY.ID < ? or SURVEY.ID is null [6]", predicates.get(0));
+        assertEquals("SURVEY.ID >= ? [6]", predicates.get(1));
+    }
+
+    @Test
+    public void Small_Range() {
+        SQLQuery query = new SQLQuery(SQLTemplates.DEFAULT).from(survey);
+        assertEquals(3, scan(query).partitions(8).bounds(1, 3).getPredicates().size());
+        assertEquals(1, scan(query).partitions(8).bounds(5, 5).getPredicates().size());
+    }
+
+    @Test
+    public void Connections_Not_Closed() throws SQLException {
+        final Connection conn = createMock(Connection.class);
+        expect(conn.prepareStatement("select SURVEY.ID\nfrom SURVEY SURVEY"))
+            .andThrow(new SQLException("failed"));
+        replay(conn);
+        Provider<Connection> provider = new Provider<Connection>() {
+            @Override
+            public Connection get() {
+                return conn;
+            }
+        };
+        SQLQuery query = new SQLQuery(SQLTemplates.DEFAULT).from(survey);
+        try {
+            new SQLPartitionedScan<Integer>(provider, MoreExecutors.directExecutor(), query, survey.id)
+                .partitions(1).bounds(1, 1).iterate(survey.id).hasNext();
+            fail();
+        } catch (QueryException e) {
+            // a close of the connection would fail the strict mock instead
+            assertTrue(e.getCause() instanceof SQLException);
+        }
+        verify(conn);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void Limit_Not_Supported() {
+        scan(new SQLQuery(SQLTemplates.DEFAULT).from(survey).limit(5));
+    }
+
+}
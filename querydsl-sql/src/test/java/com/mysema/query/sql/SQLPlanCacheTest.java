@@ -0,0 +1,110 @@
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mysema.query.sql.domain.QEmployee;
+import com.mysema.query.sql.domain.QSurvey;
+
+public class SQLPlanCacheTest {
+
+    private QSurvey survey = QSurvey.survey;
+
+    private Configuration configuration;
+
+    private SQLPlanCache cache;
+
+    @Before
+    public void setUp() {
+        configuration = new Configuration(new H2Templates());
+        cache = new SQLPlanCache(2);
+        configuration.setPlanCache(cache);
+    }
+
+    private SQLQuery query() {
+        return new SQLQuery(configuration);
+    }
+
+    private SQLPlan plan(SQLQuery query) {
+        query.getMetadata().addProjection(survey.id);
+        return query.plan(false);
+    }
+
+    @Test
+    public void Constants_Are_Slots() {
+        SQLPlan plan1 = plan(query().from(survey).where(survey.name.eq("Bob"), survey.id.gt(1)));
+        SQLPlan plan2 = plan(query().from(survey).where(survey.name.eq("Ann"), survey.id.gt(2)));
+        assertEquals(plan1.getSQL(), plan2.getSQL());
+        assertEquals(Arrays.asList("Bob", 1), plan1.getConstants());
+        assertEquals(Arrays.asList("Ann", 2), plan2.getConstants());
+        assertEquals(plan1.getConstantPaths(), plan2.getConstantPaths());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void Collections() {
+        SQLPlan plan1 = plan(query().from(survey).where(survey.id.in(1, 2)));
+        SQLPlan plan2 = plan(query().from(survey).where(survey.id.in(3, 4)));
+        SQLPlan plan3 = plan(query().from(survey).where(survey.id.in(5, 6, 7)));
+        assertEquals(Arrays.asList(3, 4), plan2.getConstants());
+        assertEquals(Arrays.asList(5, 6, 7), plan3.getConstants());
+        assertEquals(plan1.getSQL(), plan2.getSQL());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void Modifiers() {
+        SQLPlan plan1 = plan(query().from(survey).where(survey.id.eq(1)).limit(10).offset(20));
+        SQLPlan plan2 = plan(query().from(survey).where(survey.id.eq(2)).limit(10).offset(20));
+        assertEquals(plan1.getSQL(), plan2.getSQL());
+        assertEquals(Arrays.asList(2, 10l, 20l), plan2.getConstants());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void Derived_Constants_Are_Not_Cached() {
+        plan(query().from(survey).where(survey.name.startsWith("A")));
+        SQLPlan plan = plan(query().from(survey).where(survey.name.startsWith("B")));
+        assertEquals(Arrays.asList("B%"), plan.getConstants());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void Tables_With_Same_Alias() {
+        QEmployee employee = new QEmployee("SURVEY");
+        SQLPlan plan1 = plan(query().from(survey).where(survey.id.eq(1)));
+        SQLQuery query = query().from(employee).where(employee.id.eq(1));
+        query.getMetadata().addProjection(employee.id);
+        SQLPlan plan2 = query.plan(false);
+        assertTrue(!plan1.getSQL().equals(plan2.getSQL()));
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void Eviction() {
+        plan(query().from(survey).where(survey.id.eq(1)));
+        plan(query().from(survey).where(survey.name.eq("Bob")));
+        plan(query().from(survey).where(survey.name2.eq("Bob")));
+        assertEquals(2, cache.getSize());
+        plan(query().from(survey).where(survey.id.eq(2)));
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void Overrides_Clear_Cache() {
+        plan(query().from(survey).where(survey.id.eq(1)));
+        configuration.registerTableOverride("SURVEY", "SURVEY2");
+        SQLPlan plan = plan(query().from(survey).where(survey.id.eq(2)));
+        assertTrue(plan.getSQL().contains("SURVEY2"));
+        assertEquals(0, cache.getHitCount());
+    }
+
+}
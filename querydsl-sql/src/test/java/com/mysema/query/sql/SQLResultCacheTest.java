@@ -0,0 +1,231 @@
+package com.mysema.query.sql;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.SearchResults;
+import com.mysema.query.sql.domain.QEmployee;
+import com.mysema.query.sql.dml.SQLMergeClause;
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
+
+public class SQLResultCacheTest {
+
+    private final QSurvey survey = QSurvey.survey;
+
+    private final QEmployee employee = QEmployee.employee;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private SQLResultCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new SQLResultCache(2, 1, TimeUnit.MINUTES);
+    }
+
+    private Object get(Object key, RelationalPath<?>... tables) {
+        List<SchemaAndTable> schemaAndTables = new ArrayList<SchemaAndTable>();
+        for (RelationalPath<?> table : tables) {
+            schemaAndTables.add(table.getSchemaAndTable());
+        }
+        return cache.get(key, schemaAndTables, new Callable<Object>() {
+            @Override
+            public Object call() {
+                return loads.incrementAndGet();
+            }
+        });
+    }
+
+    @Test
+    public void Hits_And_Misses() {
+        assertEquals(1, get("a", survey));
+        assertEquals(1, get("a", survey));
+        assertEquals(2, get("b", survey));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void Null_Results() {
+        Callable<Object> loader = new Callable<Object>() {
+            @Override
+            public Object call() {
+                loads.incrementAndGet();
+                return null;
+            }
+        };
+        List<SchemaAndTable> tables = Collections.singletonList(survey.getSchemaAndTable());
+        assertEquals(null, cache.get("a", tables, loader));
+        assertEquals(null, cache.get("a", tables, loader));
+        assertEquals(1, loads.get());
+    }
+
+    private void executed(RelationalPath<?> entity) {
+        cache.end(new SQLListenerContextImpl(new DefaultQueryMetadata(), null, entity));
+    }
+
+    @Test
+    public void Insert_Invalidates() {
+        get("a", survey);
+        get("b", employee);
+        executed(survey);
+        assertEquals(3, get("a", survey));
+        assertEquals(2, get("b", employee));
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void Delete_Invalidates_Joins() {
+        get("a", survey, employee);
+        executed(employee);
+        assertEquals(2, get("a", survey, employee));
+    }
+
+    @Test
+    public void Queries_Dont_Invalidate() {
+        get("a", survey);
+        cache.end(new SQLListenerContextImpl(new DefaultQueryMetadata(), null));
+        assertEquals(1, get("a", survey));
+    }
+
+    @Test
+    public void Reader_During_Execution() {
+        // the reader loads the old rows after the clause has been notified, but before it is executed
+        cache.notifyInsert(survey, new DefaultQueryMetadata(), Collections.<Path<?>>emptyList(),
+                Collections.<Expression<?>>emptyList(), null);
+        assertEquals(1, get("a", survey));
+        executed(survey);
+        assertEquals(2, get("a", survey));
+    }
+
+    @Test
+    public void Execution_During_Load() {
+        List<SchemaAndTable> tables = Collections.singletonList(survey.getSchemaAndTable());
+        Object loaded = cache.get("a", tables, new Callable<Object>() {
+            @Override
+            public Object call() {
+                // the clause is executed between the load of the rows and the put
+                executed(survey);
+                return loads.incrementAndGet();
+            }
+        });
+        assertEquals(1, loaded);
+        assertEquals(2, get("a", survey));
+    }
+
+    @Test
+    public void Invalidate_All() {
+        get("a", survey);
+        cache.invalidateAll();
+        assertEquals(2, get("a", survey));
+    }
+
+    @Test
+    public void Max_Size() {
+        for (String key : Arrays.asList("a", "b", "c", "d")) {
+            get(key, survey);
+        }
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void Configuration_Registers_Listener() {
+        Configuration configuration = new Configuration(new H2Templates());
+        configuration.setResultCache(cache);
+        get("a", survey);
+        configuration.getListeners().end(new SQLListenerContextImpl(new DefaultQueryMetadata(), null, survey));
+        assertEquals(2, get("a", survey));
+    }
+
+    @Test
+    public void Configuration_Replaces_Listener() {
+        Configuration configuration = new Configuration(new H2Templates());
+        configuration.setResultCache(cache);
+        get("a", survey);
+        configuration.setResultCache(new SQLResultCache(2, 1, TimeUnit.MINUTES));
+        configuration.getListeners().end(new SQLListenerContextImpl(new DefaultQueryMetadata(), null, survey));
+        assertEquals(1, get("a", survey));
+
+        configuration.setResultCache(null);
+        assertNull(configuration.getResultCache());
+        configuration.getListeners().notifyDelete(survey, new DefaultQueryMetadata());
+        configuration.getListeners().end(new SQLListenerContextImpl(new DefaultQueryMetadata(), null, survey));
+        assertEquals(0, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void ListResults_Via_Analytics() throws SQLException {
+        ResultSet rs = createMock(ResultSet.class);
+        expect(rs.next()).andReturn(true);
+        expect(rs.getObject(2)).andReturn(5l);
+        expect(rs.getObject(1)).andReturn(1);
+        expect(rs.next()).andReturn(false);
+        rs.close();
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        expect(stmt.executeQuery()).andReturn(rs);
+        Connection conn = createMock(Connection.class);
+        expect(conn.prepareStatement("select SURVEY.ID, count(*) over() \nfrom SURVEY SURVEY\nlimit ?"))
+            .andReturn(stmt);
+        replay(rs, stmt, conn);
+
+        Configuration configuration = new Configuration(new PostgresTemplates());
+        configuration.setResultCache(cache);
+        for (int i = 0; i < 2; i++) {
+            // the total is cached together with the rows
+            SQLQuery query = new SQLQuery(conn, configuration).from(survey).limit(1);
+            query.setCacheable(true);
+            SearchResults<Integer> results = query.listResults(survey.id);
+            assertEquals(Arrays.asList(1), results.getResults());
+            assertEquals(5l, results.getTotal());
+        }
+        assertEquals(1, cache.getHitCount());
+        verify(conn);
+    }
+
+    @Test
+    public void Composite_Merge_Invalidates() throws SQLException {
+        ResultSet rs = createNiceMock(ResultSet.class);
+        PreparedStatement select = createNiceMock(PreparedStatement.class);
+        expect(select.executeQuery()).andReturn(rs);
+        PreparedStatement insert = createNiceMock(PreparedStatement.class);
+        expect(insert.executeUpdate()).andReturn(1);
+        Connection conn = createMock(Connection.class);
+        expect(conn.prepareStatement("select SURVEY.ID\nfrom SURVEY SURVEY\nwhere SURVEY.NAME = ?"))
+            .andReturn(select);
+        expect(conn.prepareStatement("insert into SURVEY (NAME)\nvalues (?)")).andReturn(insert);
+        replay(rs, select, insert, conn);
+
+        Configuration configuration = new Configuration(new H2Templates() {{
+            setNativeMerge(false);
+        }});
+        configuration.setResultCache(cache);
+        get("a", survey);
+        new SQLMergeClause(conn, configuration, survey).set(survey.name, "A").execute();
+        assertEquals(2, get("a", survey));
+        verify(conn);
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.domain.QEmployee;
+import com.mysema.query.sql.domain.QSurvey;
+
+public class SQLRoutingQueryFactoryTest {
+
+    private static class ConnectionProvider implements Provider<Connection> {
+
+        private final Connection connection;
+
+        private int calls;
+
+        ConnectionProvider(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Connection get() {
+            calls++;
+            return connection;
+        }
+
+    }
+
+    private static final String QUERY = "select SURVEY.ID\nfrom SURVEY SURVEY";
+
+    private final Configuration configuration = new Configuration(new H2Templates());
+
+    private Connection primary, replica1, replica2;
+
+    private ConnectionProvider replica1Provider;
+
+    private SQLRoutingQueryFactory queryFactory;
+
+    @Before
+    public void setUp() {
+        primary = createMock(Connection.class);
+        replica1 = createMock(Connection.class);
+        replica2 = createMock(Connection.class);
+        replica1Provider = new ConnectionProvider(replica1);
+        queryFactory = new SQLRoutingQueryFactory(configuration, new ConnectionProvider(primary),
+                Arrays.asList(replica1Provider, new ConnectionProvider(replica2)));
+    }
+
+    private QueryMetadata metadata(RelationalPath<?> entity) {
+        return new SQLQuery(configuration).from(entity).getMetadata();
+    }
+
+    private void executed(Connection connection, RelationalPath<?> entity) {
+        configuration.getListeners().end(new SQLListenerContextImpl(new DefaultQueryMetadata(),
+                connection, entity));
+    }
+
+    private static void expectQuery(Connection connection) throws SQLException {
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        ResultSet rs = createNiceMock(ResultSet.class);
+        expect(stmt.executeQuery()).andReturn(rs);
+        expect(connection.prepareStatement(QUERY)).andReturn(stmt);
+        replay(rs, stmt, connection);
+    }
+
+    @Test
+    public void Round_Robin() {
+        QueryMetadata md = metadata(QSurvey.survey);
+        assertSame(replica1, queryFactory.route(md).getSecond());
+        assertSame(replica2, queryFactory.route(md).getSecond());
+        assertSame(replica1, queryFactory.route(md).getSecond());
+        assertEquals(1, queryFactory.route(md).getFirst().intValue());
+    }
+
+    @Test
+    public void Stickiness() throws SQLException {
+        queryFactory.setStickiness(1, TimeUnit.MINUTES);
+        executed(primary, QSurvey.survey);
+
+        assertEquals(-1, queryFactory.route(metadata(QSurvey.survey)).getFirst().intValue());
+        assertSame(replica1, queryFactory.route(metadata(QEmployee.employee)).getSecond());
+    }
+
+    @Test
+    public void No_Stickiness() throws SQLException {
+        executed(primary, QSurvey.survey);
+
+        assertSame(replica1, queryFactory.route(metadata(QSurvey.survey)).getSecond());
+    }
+
+    @Test
+    public void Close() throws SQLException {
+        queryFactory.setStickiness(1, TimeUnit.MINUTES);
+        queryFactory.close();
+        executed(primary, QSurvey.survey);
+
+        assertSame(replica1, queryFactory.route(metadata(QSurvey.survey)).getSecond());
+    }
+
+    @Test
+    public void Transaction_Ends_At_Commit() throws SQLException {
+        expect(primary.getAutoCommit()).andReturn(false);
+        expect(primary.isClosed()).andReturn(false);
+        primary.commit();
+        replay(primary);
+        Connection connection = queryFactory.getConnection();
+        executed(connection, QSurvey.survey);
+
+        // pinned while the transaction is open
+        assertSame(primary, queryFactory.route(metadata(QEmployee.employee)).getSecond());
+        connection.commit();
+        assertSame(replica1, queryFactory.route(metadata(QEmployee.employee)).getSecond());
+        verify(primary);
+    }
+
+    @Test
+    public void Transaction_Ends_With_Connection() throws SQLException {
+        expect(primary.getAutoCommit()).andReturn(false);
+        expect(primary.isClosed()).andReturn(true);
+        replay(primary);
+        executed(queryFactory.getConnection(), QSurvey.survey);
+
+        assertSame(replica1, queryFactory.route(metadata(QEmployee.employee)).getSecond());
+        assertSame(replica2, queryFactory.route(metadata(QEmployee.employee)).getSecond());
+        verify(primary);
+    }
+
+    @Test
+    public void Autocommit_Is_Not_Pinned() throws SQLException {
+        expect(primary.getAutoCommit()).andReturn(true);
+        replay(primary);
+        executed(queryFactory.getConnection(), QSurvey.survey);
+
+        assertSame(replica1, queryFactory.route(metadata(QEmployee.employee)).getSecond());
+        verify(primary);
+    }
+
+    @Test
+    public void Lazy_Connection() throws SQLException {
+        expectQuery(replica1);
+        SQLQuery query = queryFactory.query().from(QSurvey.survey);
+        // the connection is resolved when the query is executed
+        assertEquals(0, replica1Provider.calls);
+        query.list(QSurvey.survey.id);
+        assertEquals(1, replica1Provider.calls);
+        verify(replica1);
+    }
+
+    @Test
+    public void Outstanding() throws SQLException {
+        expectQuery(replica1);
+        final List<Integer> outstanding = new ArrayList<Integer>();
+        SQLQuery query = queryFactory.query().from(QSurvey.survey);
+        query.addListener(new SQLListeners() {
+            @Override
+            public void executed(SQLListenerContext context) {
+                outstanding.add(queryFactory.getOutstanding(0));
+                outstanding.add(queryFactory.getOutstanding(1));
+            }
+        });
+        query.list(QSurvey.survey.id);
+        assertEquals(Arrays.asList(1, 0), outstanding);
+        assertEquals(0, queryFactory.getOutstanding(0));
+    }
+
+    @Test
+    public void Least_Outstanding() throws SQLException {
+        expectQuery(replica1);
+        queryFactory.setBalancing(SQLRoutingQueryFactory.Balancing.LEAST_OUTSTANDING);
+        final List<Connection> routed = new ArrayList<Connection>();
+        SQLQuery query = queryFactory.query().from(QSurvey.survey);
+        query.addListener(new SQLListeners() {
+            @Override
+            public void executed(SQLListenerContext context) {
+                // the first replica is busy, round robin would pick it for the second query
+                routed.add(queryFactory.route(metadata(QEmployee.employee)).getSecond());
+                routed.add(queryFactory.route(metadata(QEmployee.employee)).getSecond());
+            }
+        });
+        query.list(QSurvey.survey.id);
+        assertEquals(Arrays.asList(replica2, replica2), routed);
+    }
+
+}
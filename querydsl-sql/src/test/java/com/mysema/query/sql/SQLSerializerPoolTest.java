@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.support.Expressions;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Ops;
+import com.mysema.query.types.Predicate;
+
+public class SQLSerializerPoolTest {
+
+    private final Configuration configuration = new Configuration(new H2Templates());
+
+    private SQLQuery query() {
+        QSurvey s = new QSurvey("s0");
+        SQLQuery query = new SQLQuery(configuration).from(s);
+        for (int i = 1; i <= 10; i++) {
+            QSurvey s2 = new QSurvey("s" + i);
+            query.leftJoin(s2).on(s2.id.eq(s.id), s2.name.ne("n" + i));
+            s = s2;
+        }
+        query.where(s.name.startsWith("A"), s.id.in(1, 2, 3));
+        query.getMetadata().addProjection(s.id);
+        query.getMetadata().addProjection(s.name);
+        return query;
+    }
+
+    @Test
+    public void Reuse() {
+        SQLSerializerPool pool = new SQLSerializerPool(configuration);
+        SQLSerializer serializer = pool.acquire(false);
+        serializer.handle(QSurvey.survey.name.eq("Bob"));
+        pool.release(serializer);
+        assertSame(serializer, pool.acquire(false));
+        assertEquals(0, serializer.getLength());
+        assertEquals(0, serializer.getConstants().size());
+        assertNotSame(serializer, pool.acquire(false));
+        assertTrue(pool.acquire(true).isDml());
+    }
+
+    @Test
+    public void Same_Rendering() {
+        SQLPlan plan1 = query().plan(false);
+        configuration.setReuseSerializers(true);
+        SQLPlan plan2 = query().plan(false);
+        SQLPlan plan3 = query().plan(false);
+        assertEquals(plan1.getSQL(), plan2.getSQL());
+        assertEquals(plan1.getSQL(), plan3.getSQL());
+        assertEquals(plan1.getConstants(), plan3.getConstants());
+        assertEquals(Arrays.asList("n1", "n2"), plan3.getConstants().subList(0, 2));
+    }
+
+    @Test
+    public void Reuse_Restores_Settings() {
+        QSurvey survey = QSurvey.survey;
+        Predicate predicate = survey.id.eq(Expressions.numberOperation(Integer.class, Ops.ADD,
+                ConstantImpl.create(1), ConstantImpl.create(2)));
+        SQLSerializer fresh = new SQLSerializer(configuration);
+        fresh.handle(predicate);
+
+        SQLSerializerPool pool = new SQLSerializerPool(configuration);
+        SQLSerializer serializer = pool.acquire(false);
+        serializer.setNormalize(false);
+        serializer.setStrict(false);
+        serializer.setUseLiterals(true);
+        serializer.handle(predicate);
+        assertEquals("SURVEY.ID = 1 + 2", serializer.toString());
+        pool.release(serializer);
+
+        assertSame(serializer, pool.acquire(false));
+        serializer.handle(predicate);
+        assertEquals(fresh.toString(), serializer.toString());
+        assertEquals(Arrays.<Object>asList(3), serializer.getConstants());
+        assertEquals(fresh.getConstantPaths(), serializer.getConstantPaths());
+    }
+
+}
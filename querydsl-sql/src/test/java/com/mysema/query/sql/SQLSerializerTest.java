@@ -27,6 +27,7 @@ import com.mysema.query.sql.domain.QEmployeeNoPK;
 import com.mysema.query.sql.domain.QSurvey;
 import com.mysema.query.support.Expressions;
 import com.mysema.query.types.Expression;
+import com.mysema.query.types.ExpressionUtils;
 import com.mysema.query.types.Path;
 import com.mysema.query.types.SubQueryExpression;
 import com.mysema.query.types.expr.Wildcard;
@@ -35,6 +36,7 @@ import com.mysema.query.types.path.PathBuilder;
 import com.mysema.query.types.path.StringPath;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class SQLSerializerTest {
 
@@ -324,4 +326,119 @@ public class SQLSerializerTest {
         assertEquals("datediff('year',EMPLOYEE.DATEFIELD,(date '1970-01-01'))", serializer.toString());
     }
 
+    @Test
+    public void In_Array_Parameter() {
+        Configuration conf = new Configuration(new PostgresTemplates());
+        conf.setUseArrayParameters(true);
+        SQLSerializer serializer = new SQLSerializer(conf);
+        serializer.handle(survey.id.in(1, 2, 3).and(survey.name.notIn("a", "b")));
+        assertEquals("SURVEY.ID = any(?) and SURVEY.NAME <> all(?)", serializer.toString());
+        assertEquals(2, serializer.getConstants().size());
+        assertEquals(Arrays.asList(1, 2, 3), Arrays.asList((Object[])serializer.getConstants().get(0)));
+        assertEquals(Integer[].class, serializer.getConstants().get(0).getClass());
+        assertEquals(Arrays.asList(null, null), serializer.getConstantPaths());
+    }
+
+    @Test
+    public void In_Array_Parameter_H2() {
+        Configuration conf = new Configuration(new H2Templates());
+        conf.setUseArrayParameters(true);
+        SQLSerializer serializer = new SQLSerializer(conf);
+        serializer.handle(survey.id.in(1, 2, 3));
+        assertEquals("array_contains(?, SURVEY.ID)", serializer.toString());
+    }
+
+    @Test
+    public void In_Array_Parameter_Not_Supported() {
+        Configuration conf = new Configuration(new MySQLTemplates());
+        conf.setUseArrayParameters(true);
+        SQLSerializer serializer = new SQLSerializer(conf);
+        serializer.handle(survey.id.in(1, 2));
+        assertEquals("SURVEY.ID in (?, ?)", serializer.toString());
+    }
+
+    @Test
+    public void In_Array_Parameter_Mixed_Types() {
+        Configuration conf = new Configuration(new PostgresTemplates());
+        conf.setUseArrayParameters(true);
+        SQLSerializer serializer = new SQLSerializer(conf);
+        serializer.handle(ExpressionUtils.in((Path)survey.id, Arrays.asList(1, 2L)));
+        assertEquals("SURVEY.ID in (?, ?)", serializer.toString());
+    }
+
+    @Test
+    public void In_List_Padding() {
+        Configuration conf = new Configuration(new MySQLTemplates());
+        conf.setInListPadding(true);
+        SQLSerializer serializer = new SQLSerializer(conf);
+        serializer.handle(survey.id.in(1, 2, 3).and(survey.name.notIn("a", "b")));
+        assertEquals("SURVEY.ID in (?, ?, ?, ?) and SURVEY.NAME not in (?, ?)", serializer.toString());
+        assertEquals(Arrays.<Object>asList(1, 2, 3, 3, "a", "b"), serializer.getConstants());
+        assertEquals(Arrays.<Path<?>>asList(survey.id, survey.id, survey.id, survey.id, survey.name, survey.name),
+                serializer.getConstantPaths());
+    }
+
+    @Test
+    public void In_List_Chunks() {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < 1500; i++) {
+            ids.add(i);
+        }
+        Configuration conf = new Configuration(new OracleTemplates());
+        conf.setInListPadding(true);
+        SQLSerializer serializer = new SQLSerializer(conf);
+        serializer.handle(survey.name.isNull().or(survey.id.in(ids)));
+        assertTrue(serializer.toString().startsWith("SURVEY.NAME is null or (SURVEY.ID in (?"));
+        assertTrue(serializer.toString().contains(") or SURVEY.ID in (?"));
+        assertEquals(1512, serializer.getConstants().size());
+        assertEquals(1499, serializer.getConstants().get(1511));
+
+        serializer = new SQLSerializer(conf);
+        serializer.handle(survey.name.isNull().and(survey.id.notIn(ids)));
+        assertTrue(serializer.toString().startsWith("SURVEY.NAME is null and (SURVEY.ID not in (?"));
+        assertTrue(serializer.toString().contains(") and SURVEY.ID not in (?"));
+    }
+
+    @Test
+    public void Large_Predicate() {
+        BooleanBuilder builder = new BooleanBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.or(survey.id.eq(i).and(survey.name.isNotNull()));
+        }
+        SQLSerializer serializer = new SQLSerializer(Configuration.DEFAULT);
+        serializer.handle(builder);
+        assertTrue(serializer.toString().startsWith("SURVEY.ID = ? and SURVEY.NAME is not null " +
+                "or SURVEY.ID = ? and SURVEY.NAME is not null or "));
+        assertEquals(5000, serializer.getConstants().size());
+        assertEquals(4999, serializer.getConstants().get(4999));
+    }
+
+    @Test
+    public void Simplify_Predicates() {
+        Configuration conf = new Configuration(new H2Templates());
+        conf.setSimplifyPredicates(true);
+        SQLQuery query = new SQLQuery(conf);
+        query.from(survey).where(survey.id.eq(1).or(survey.id.eq(2)), survey.name.isNotNull(),
+                survey.name.isNotNull());
+        query.getMetadata().addProjection(survey.name);
+        assertEquals("select SURVEY.NAME\nfrom SURVEY SURVEY\n" +
+                "where SURVEY.ID in (?, ?) and SURVEY.NAME is not null", query.toString());
+
+        query = new SQLQuery(conf);
+        query.from(survey).where(survey.id.eq(1), survey.id.eq(2));
+        query.getMetadata().addProjection(survey.name);
+        assertEquals("select SURVEY.NAME\nfrom SURVEY SURVEY\nwhere 1 = 0", query.toString());
+    }
+
+    @Test
+    public void Provably_Empty() {
+        Configuration conf = new Configuration(new H2Templates());
+        conf.setSimplifyPredicates(true);
+        // not executed, since there is no connection
+        SQLQuery query = new SQLQuery(conf).from(survey).where(survey.id.eq(1), survey.id.eq(2));
+        assertEquals(0, query.list(survey.name).size());
+        assertEquals(false, query.iterate(survey.name).hasNext());
+        assertEquals(0, query.count());
+    }
+
 }
@@ -0,0 +1,110 @@
+package com.mysema.query.sql;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SQLStatementCacheTest {
+
+    private SQLStatementCache cache;
+
+    private Connection conn;
+
+    @Before
+    public void setUp() {
+        cache = new SQLStatementCache(1);
+        conn = createMock(Connection.class);
+    }
+
+    @Test
+    public void Reuse() throws SQLException {
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        expect(conn.prepareStatement("select 1")).andReturn(stmt);
+        replay(conn, stmt);
+
+        Connection wrapped = cache.wrap(conn);
+        PreparedStatement stmt1 = wrapped.prepareStatement("select 1");
+        stmt1.close();
+        assertTrue(stmt1.isClosed());
+        PreparedStatement stmt2 = wrapped.prepareStatement("select 1");
+        assertFalse(stmt2.isClosed());
+        assertSame(wrapped, stmt2.getConnection());
+        stmt2.close();
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        verify(conn);
+    }
+
+    @Test
+    public void Concurrent_Use() throws SQLException {
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        expect(conn.prepareStatement("select 1")).andReturn(stmt).times(2);
+        replay(conn, stmt);
+
+        Connection wrapped = cache.wrap(conn);
+        PreparedStatement stmt1 = wrapped.prepareStatement("select 1");
+        PreparedStatement stmt2 = wrapped.prepareStatement("select 1");
+        stmt1.close();
+        stmt2.close();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void Generated_Keys_Mode_Is_Part_Of_Key() throws SQLException {
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        expect(conn.prepareStatement("insert")).andReturn(stmt);
+        expect(conn.prepareStatement("insert", Statement.RETURN_GENERATED_KEYS)).andReturn(stmt);
+        replay(conn, stmt);
+
+        Connection wrapped = cache.wrap(conn);
+        wrapped.prepareStatement("insert").close();
+        wrapped.prepareStatement("insert", Statement.RETURN_GENERATED_KEYS).close();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void Close_Releases_Connection() throws SQLException {
+        PreparedStatement stmt = createMock(PreparedStatement.class);
+        expect(conn.prepareStatement("select 1")).andReturn(stmt);
+        stmt.clearParameters();
+        stmt.clearBatch();
+        stmt.close();
+        conn.close();
+        replay(conn, stmt);
+
+        Connection wrapped = cache.wrap(conn);
+        assertEquals(1, cache.getConnectionCount());
+        wrapped.prepareStatement("select 1").close();
+        wrapped.close();
+        assertEquals(0, cache.getConnectionCount());
+        verify(conn, stmt);
+    }
+
+    @Test(expected=SQLException.class)
+    public void Closed_Statement_Is_Unusable() throws SQLException {
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        expect(conn.prepareStatement("select 1")).andReturn(stmt);
+        replay(conn, stmt);
+
+        PreparedStatement stmt1 = cache.wrap(conn).prepareStatement("select 1");
+        stmt1.close();
+        stmt1.executeQuery();
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SQLWatchdogTest {
+
+    private final Configuration configuration = new Configuration(new H2Templates());
+
+    private SQLResultIterator<Integer> iterator(PreparedStatement stmt, ResultSet rs) {
+        return new SQLResultIterator<Integer>(configuration, stmt, rs) {
+            @Override
+            protected Integer produceNext(ResultSet rs) throws Exception {
+                return rs.getInt(1);
+            }
+        };
+    }
+
+    @Test
+    public void SetQueryTimeout() throws SQLException {
+        PreparedStatement stmt = createMock(PreparedStatement.class);
+        stmt.setQueryTimeout(2);
+        expectLastCall();
+        replay(stmt);
+        SQLWatchdog.setQueryTimeout(stmt, 1500);
+        SQLWatchdog.setQueryTimeout(stmt, 0);
+        verify(stmt);
+    }
+
+    @Test
+    public void Schedule() throws Exception {
+        PreparedStatement stmt = createMock(PreparedStatement.class);
+        stmt.cancel();
+        expectLastCall();
+        replay(stmt);
+        Future<?> future = SQLWatchdog.schedule(stmt, 10);
+        future.get(5, TimeUnit.SECONDS);
+        verify(stmt);
+    }
+
+    @Test
+    public void Close_Partially_Read() throws SQLException {
+        PreparedStatement stmt = createMock(PreparedStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+        expect(rs.next()).andReturn(true);
+        expect(rs.getInt(1)).andReturn(1);
+        stmt.cancel();
+        expectLastCall();
+        rs.close();
+        expectLastCall();
+        stmt.close();
+        expectLastCall();
+        replay(stmt, rs);
+
+        SQLResultIterator<Integer> iterator = iterator(stmt, rs);
+        iterator.setCancelOnClose(true);
+        assertEquals(Integer.valueOf(1), iterator.next());
+        iterator.close();
+        verify(stmt, rs);
+    }
+
+    @Test
+    public void Close_Fully_Read() throws SQLException {
+        PreparedStatement stmt = createMock(PreparedStatement.class);
+        ResultSet rs = createMock(ResultSet.class);
+        expect(rs.next()).andReturn(false);
+        rs.close();
+        expectLastCall();
+        stmt.close();
+        expectLastCall();
+        replay(stmt, rs);
+
+        SQLResultIterator<Integer> iterator = iterator(stmt, rs);
+        iterator.setCancelOnClose(true);
+        assertEquals(false, iterator.hasNext());
+        // no cancel expected
+        iterator.close();
+        verify(stmt, rs);
+    }
+
+}
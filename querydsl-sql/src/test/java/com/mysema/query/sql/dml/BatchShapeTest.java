@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.dml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.mysema.query.DefaultQueryMetadata;
+import com.mysema.query.JoinType;
+import com.mysema.query.QueryMetadata;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+import com.mysema.query.sql.SQLSerializer;
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.ConstantImpl;
+import com.mysema.query.types.Expression;
+import com.mysema.query.types.Path;
+import com.mysema.query.types.Predicate;
+
+public class BatchShapeTest {
+
+    private final Configuration configuration = new Configuration(new H2Templates());
+
+    private final QSurvey survey = QSurvey.survey;
+
+    private SQLInsertBatch insert(Object id, Object name) {
+        return new SQLInsertBatch(
+                Arrays.<Path<?>>asList(survey.id, survey.name),
+                Arrays.<Expression<?>>asList(ConstantImpl.create(id), ConstantImpl.create(name)), null);
+    }
+
+    private QueryMetadata delete(Predicate where) {
+        QueryMetadata metadata = new DefaultQueryMetadata();
+        metadata.addJoin(JoinType.DEFAULT, survey);
+        metadata.addWhere(where);
+        return metadata;
+    }
+
+    private SQLSerializer serialize(SQLInsertBatch batch) {
+        SQLSerializer serializer = new SQLSerializer(configuration, true);
+        serializer.serializeInsert(new DefaultQueryMetadata(), survey, batch.getColumns(),
+                batch.getValues(), batch.getSubQuery());
+        return serializer;
+    }
+
+    private SQLSerializer serialize(QueryMetadata metadata) {
+        SQLSerializer serializer = new SQLSerializer(configuration, true);
+        serializer.serializeDelete(metadata, survey);
+        return serializer;
+    }
+
+    @Test
+    public void Insert_Same_Shape() {
+        BatchShape<SQLInsertBatch> shape = new BatchShape<SQLInsertBatch>(BatchShape.INSERT, configuration.getTemplates());
+        SQLInsertBatch first = insert(1, "Bob");
+        assertNull(shape.bind(first));
+        SQLSerializer serializer = serialize(first);
+        shape.update(first, serializer, null);
+        assertEquals(serializer.toString(), shape.getSQL());
+
+        List<Object> bindings = shape.bind(insert(2, "Ann"));
+        assertEquals(Arrays.<Object>asList(2, "Ann"), bindings);
+        assertEquals(serialize(insert(2, "Ann")).getConstants(), bindings);
+    }
+
+    @Test
+    public void Insert_Different_Shape() {
+        BatchShape<SQLInsertBatch> shape = new BatchShape<SQLInsertBatch>(BatchShape.INSERT, configuration.getTemplates());
+        SQLInsertBatch first = insert(1, "Bob");
+        shape.update(first, serialize(first), null);
+        assertNull(shape.bind(insert("1", "Bob")));
+        assertNull(shape.bind(new SQLInsertBatch(
+                Arrays.<Path<?>>asList(survey.id),
+                Arrays.<Expression<?>>asList(ConstantImpl.create(1)), null)));
+    }
+
+    @Test
+    public void Delete_Same_Shape() {
+        BatchShape<QueryMetadata> shape = new BatchShape<QueryMetadata>(BatchShape.DELETE, configuration.getTemplates());
+        QueryMetadata first = delete(survey.id.in(1, 2).and(survey.name.eq("Bob")));
+        shape.update(first, serialize(first), null);
+        assertEquals(Arrays.<Object>asList(3, 4, "Ann"),
+                shape.bind(delete(survey.id.in(3, 4).and(survey.name.eq("Ann")))));
+        assertNull(shape.bind(delete(survey.id.in(3, 4, 5).and(survey.name.eq("Ann")))));
+        assertNull(shape.bind(delete(survey.id.in(3, 4).or(survey.name.eq("Ann")))));
+    }
+
+    @Test
+    public void Derived_Constants_Are_Not_Bound() {
+        BatchShape<QueryMetadata> shape = new BatchShape<QueryMetadata>(BatchShape.DELETE, configuration.getTemplates());
+        QueryMetadata first = delete(survey.name.startsWith("A"));
+        shape.update(first, serialize(first), null);
+        assertNull(shape.getSQL());
+        assertNull(shape.bind(delete(survey.name.startsWith("B"))));
+    }
+
+    @Test
+    public void Transformed_Constants_Are_Not_Bound() {
+        BatchShape<QueryMetadata> shape = new BatchShape<QueryMetadata>(BatchShape.DELETE, configuration.getTemplates());
+        // lower casing is the identity for the first item
+        QueryMetadata first = delete(survey.name.equalsIgnoreCase("abc"));
+        shape.update(first, serialize(first), null);
+        assertNull(shape.getSQL());
+        assertNull(shape.bind(delete(survey.name.equalsIgnoreCase("XYZ"))));
+    }
+
+    @Test
+    public void Escaped_Constants_Are_Not_Bound() {
+        BatchShape<QueryMetadata> shape = new BatchShape<QueryMetadata>(BatchShape.DELETE, configuration.getTemplates());
+        QueryMetadata first = delete(survey.name.like("A%"));
+        shape.update(first, serialize(first), null);
+        assertNull(shape.bind(delete(survey.name.like("B\\%"))));
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.mysema.query.sql.dml;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.joda.time.LocalDateTime;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+import com.mysema.query.sql.MySQLTemplates;
+import com.mysema.query.sql.PostgresTemplates;
+import com.mysema.query.sql.domain.QSurvey;
+import com.mysema.query.types.Path;
+
+public class SQLBulkLoadClauseTest {
+
+    private final QSurvey survey = QSurvey.survey;
+
+    private final Configuration configuration = new Configuration(new PostgresTemplates());
+
+    private final List<Path<?>> columns = Arrays.<Path<?>>asList(survey.id, survey.name);
+
+    private String encode(boolean copyFormat, Object[]... rows) throws IOException {
+        Iterator<Object[]> iterator = Arrays.asList(rows).iterator();
+        InputStream in = new BulkLoadInputStream(configuration, columns, iterator, copyFormat);
+        return new String(ByteStreams.toByteArray(in), "UTF-8");
+    }
+
+    @Test
+    public void Encode() throws IOException {
+        assertEquals("1\tabc\n2\t\\N\n", encode(true,
+                new Object[]{1, "abc"}, new Object[]{2, null}));
+    }
+
+    @Test
+    public void Encode_Escapes() throws IOException {
+        assertEquals("1\ta\\tb\\nc\\\\d\n", encode(true, new Object[]{1, "a\tb\nc\\d"}));
+    }
+
+    @Test
+    public void Encode_Bytes() throws IOException {
+        assertEquals("1\t\\\\x00ff\n", encode(true, new Object[]{1, new byte[]{0, (byte)0xff}}));
+        assertEquals("1\t\\0a\n", encode(false, new Object[]{1, new byte[]{0, 'a'}}));
+    }
+
+    @Test
+    public void Encode_Booleans() throws IOException {
+        assertEquals("1\t\\N\n", encode(true, new Object[]{true, null}));
+        assertEquals("0\t\\N\n", encode(false, new Object[]{false, null}));
+    }
+
+    @Test
+    public void Encode_Temporals() throws IOException {
+        Timestamp timestamp = Timestamp.valueOf("2014-01-02 03:04:05.123456789");
+        assertEquals("1\t2014-01-02 03:04:05.123456789\n", encode(true, new Object[]{1, timestamp}));
+        Time time = new Time(Timestamp.valueOf("1970-01-01 03:04:05.123").getTime());
+        assertEquals("1\t03:04:05.123\n", encode(true, new Object[]{1, time}));
+        java.util.Date date = new java.util.Date(Timestamp.valueOf("2014-01-02 03:04:05.120").getTime());
+        assertEquals("1\t2014-01-02 03:04:05.120\n", encode(true, new Object[]{1, date}));
+        assertEquals("1\t2014-01-02 03:04:05.007\n", encode(true,
+                new Object[]{1, new LocalDateTime(2014, 1, 2, 3, 4, 5, 7)}));
+        assertEquals("1\t2014-01-02\n", encode(true, new Object[]{1, java.sql.Date.valueOf("2014-01-02")}));
+    }
+
+    @Test
+    public void Encode_Large() throws IOException {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        String value = new String(chars);
+        assertEquals("1\t" + value + "\n", encode(true, new Object[]{1, value}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Encode_Wrong_Row_Size() throws IOException {
+        encode(true, new Object[]{1});
+    }
+
+    @Test
+    public void GetSQL_Batch_Fallback() {
+        SQLBulkLoadClause clause = new SQLBulkLoadClause(null, new H2Templates(), survey);
+        clause.columns(survey.id, survey.name);
+        assertEquals("insert into SURVEY (ID, NAME)\nvalues (?, ?)", clause.toString());
+    }
+
+    @Test
+    public void GetSQL_Batch_Fallback_MySQL() {
+        // no statements are opened for rendering
+        Connection connection = createMock(Connection.class);
+        replay(connection);
+        SQLBulkLoadClause clause = new SQLBulkLoadClause(connection, new MySQLTemplates(), survey);
+        clause.columns(survey.id, survey.name);
+        assertEquals("insert into SURVEY (ID, NAME)\nvalues (?, ?)", clause.toString());
+        verify(connection);
+    }
+
+}
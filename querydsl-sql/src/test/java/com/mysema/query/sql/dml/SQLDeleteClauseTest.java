@@ -1,10 +1,20 @@
 package com.mysema.query.sql.dml;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
 import com.google.common.collect.ImmutableList;
+import com.mysema.query.sql.H2Templates;
 import com.mysema.query.sql.KeyAccessorsTest.QEmployee;
 import com.mysema.query.sql.SQLBindings;
 import com.mysema.query.sql.SQLTemplates;
+import com.mysema.query.sql.domain.QSurvey;
 import org.junit.Test;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 
 public class SQLDeleteClauseTest {
@@ -28,4 +38,23 @@ public class SQLDeleteClauseTest {
         assertEquals(ImmutableList.of(1), sql.getBindings());
     }
 
+    @Test
+    public void Batch_Ignore_Case() throws SQLException {
+        QSurvey survey = QSurvey.survey;
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        stmt.setString(1, "abc");
+        stmt.setString(1, "xyz");
+        expect(stmt.executeBatch()).andReturn(new int[]{1, 1});
+        Connection connection = createNiceMock(Connection.class);
+        expect(connection.prepareStatement("delete from SURVEY\nwhere lower(SURVEY.NAME) = ?")).andReturn(stmt);
+        replay(stmt, connection);
+
+        SQLDeleteClause delete = new SQLDeleteClause(connection, new H2Templates(), survey);
+        delete.where(survey.name.equalsIgnoreCase("abc")).addBatch();
+        delete.where(survey.name.equalsIgnoreCase("XYZ")).addBatch();
+        assertEquals(2, delete.execute());
+        // the constants of each batch item are lower cased
+        verify(stmt, connection);
+    }
+
 }
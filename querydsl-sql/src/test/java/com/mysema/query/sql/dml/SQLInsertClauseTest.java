@@ -1,10 +1,30 @@
 package com.mysema.query.sql.dml;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import com.google.common.collect.ImmutableList;
 import com.mysema.query.sql.KeyAccessorsTest.QEmployee;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+import com.mysema.query.sql.OracleTemplates;
 import com.mysema.query.sql.SQLBindings;
+import com.mysema.query.sql.SQLMetricsListener;
 import com.mysema.query.sql.SQLTemplates;
+import com.mysema.query.sql.SQLiteTemplates;
+import com.mysema.query.sql.domain.QSurvey;
 import org.junit.Test;
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 
 public class SQLInsertClauseTest {
@@ -20,4 +40,133 @@ public class SQLInsertClauseTest {
         assertEquals(ImmutableList.of(1), sql.getBindings());
     }
 
+    @Test
+    public void GetSQL_Bulk() {
+        QSurvey survey = QSurvey.survey;
+        SQLInsertClause insert = new SQLInsertClause(null, new H2Templates(), survey);
+        insert.setBatchToBulk(true);
+        insert.setBulkChunkSize(2);
+        for (int i = 0; i < 5; i++) {
+            insert.set(survey.id, i).set(survey.name, "n" + i).addBatch();
+        }
+
+        List<SQLBindings> sql = insert.getSQL();
+        assertEquals(3, sql.size());
+        assertEquals("insert into SURVEY (ID, NAME)\nvalues (?, ?), (?, ?)", sql.get(0).getSQL());
+        assertEquals(sql.get(0).getSQL(), sql.get(1).getSQL());
+        assertEquals("insert into SURVEY (ID, NAME)\nvalues (?, ?)", sql.get(2).getSQL());
+        assertEquals(ImmutableList.of(2, "n2", 3, "n3"), sql.get(1).getBindings());
+    }
+
+    @Test
+    public void ExecuteWithKeys_Bulk() throws SQLException {
+        QSurvey survey = QSurvey.survey;
+        String[] keyColumns = new String[]{"ID"};
+        ResultSet keys1 = createNiceMock(ResultSet.class);
+        expect(keys1.next()).andReturn(true);
+        expect(keys1.next()).andReturn(true);
+        expect(keys1.getObject(1)).andReturn(1);
+        expect(keys1.getObject(1)).andReturn(2);
+        ResultSet keys2 = createNiceMock(ResultSet.class);
+        expect(keys2.next()).andReturn(true);
+        expect(keys2.getObject(1)).andReturn(3);
+        PreparedStatement stmt1 = createNiceMock(PreparedStatement.class);
+        expect(stmt1.executeUpdate()).andReturn(2);
+        expect(stmt1.getGeneratedKeys()).andReturn(keys1);
+        PreparedStatement stmt2 = createNiceMock(PreparedStatement.class);
+        expect(stmt2.executeUpdate()).andReturn(1);
+        expect(stmt2.getGeneratedKeys()).andReturn(keys2);
+        Connection connection = createNiceMock(Connection.class);
+        expect(connection.prepareStatement(eq("insert into SURVEY (NAME)\nvalues (?), (?)"),
+                aryEq(keyColumns))).andReturn(stmt1);
+        expect(connection.prepareStatement(eq("insert into SURVEY (NAME)\nvalues (?)"),
+                aryEq(keyColumns))).andReturn(stmt2);
+        replay(keys1, keys2, stmt1, stmt2, connection);
+
+        SQLInsertClause insert = new SQLInsertClause(connection, new H2Templates(), survey);
+        insert.setBatchToBulk(true);
+        insert.setBulkChunkSize(2);
+        for (int i = 0; i < 3; i++) {
+            insert.set(survey.name, "n" + i).addBatch();
+        }
+        // the keys of each chunk are read after its own execution
+        assertEquals(Arrays.asList(1, 2, 3), insert.executeWithKeys(survey.id));
+        verify(stmt1, stmt2, connection);
+    }
+
+    @Test
+    public void Execute_Batch_Metrics() throws SQLException {
+        QSurvey survey = QSurvey.survey;
+        PreparedStatement stmt = createNiceMock(PreparedStatement.class);
+        expect(stmt.executeBatch()).andReturn(new int[]{1, 1, 1});
+        Connection connection = createNiceMock(Connection.class);
+        expect(connection.prepareStatement("insert into SURVEY (ID, NAME)\nvalues (?, ?)")).andReturn(stmt);
+        replay(stmt, connection);
+
+        Configuration configuration = new Configuration(new H2Templates());
+        SQLMetricsListener metrics = new SQLMetricsListener();
+        configuration.addListener(metrics);
+        SQLInsertClause insert = new SQLInsertClause(connection, configuration, survey);
+        for (int i = 0; i < 3; i++) {
+            insert.set(survey.id, i).set(survey.name, "n" + i).addBatch();
+        }
+        assertEquals(3, insert.execute());
+        // the rows of the batch, not the statements
+        assertEquals(3, metrics.getMetrics("insert into SURVEY (ID, NAME) values (?, ?)").getBatchSize().getMax());
+        verify(stmt, connection);
+    }
+
+    @Test
+    public void GetSQL_Bulk_Remainder_Shapes() {
+        QSurvey survey = QSurvey.survey;
+        SQLInsertClause insert = new SQLInsertClause(null, new H2Templates(), survey);
+        insert.setBatchToBulk(true);
+        insert.setBulkChunkSize(8);
+        for (int i = 0; i < 15; i++) {
+            insert.set(survey.id, i).addBatch();
+        }
+        List<Integer> rows = new ArrayList<Integer>();
+        for (SQLBindings bindings : insert.getSQL()) {
+            rows.add(bindings.getBindings().size());
+        }
+        assertEquals(Arrays.asList(8, 4, 2, 1), rows);
+    }
+
+    @Test
+    public void GetSQL_Bulk_Max_Parameters() {
+        QSurvey survey = QSurvey.survey;
+        SQLInsertClause insert = new SQLInsertClause(null, new SQLiteTemplates(), survey);
+        insert.setBatchToBulk(true);
+        insert.setBulkChunkSize(1000);
+        for (int i = 0; i < 400; i++) {
+            insert.set(survey.id, i).set(survey.name, "a").set(survey.name2, "b").addBatch();
+        }
+        List<SQLBindings> sql = insert.getSQL();
+        assertEquals(999, sql.get(0).getBindings().size());
+    }
+
+    @Test
+    public void GetSQL_Bulk_Column_Change() {
+        QSurvey survey = QSurvey.survey;
+        SQLInsertClause insert = new SQLInsertClause(null, new H2Templates(), survey);
+        insert.setBatchToBulk(true);
+        insert.set(survey.id, 1).addBatch();
+        insert.set(survey.id, 2).addBatch();
+        insert.set(survey.name, "a").addBatch();
+        List<SQLBindings> sql = insert.getSQL();
+        assertEquals(2, sql.size());
+        assertEquals("insert into SURVEY (ID)\nvalues (?), (?)", sql.get(0).getSQL());
+        assertEquals("insert into SURVEY (NAME)\nvalues (?)", sql.get(1).getSQL());
+    }
+
+    @Test
+    public void GetSQL_Bulk_Not_Supported() {
+        QSurvey survey = QSurvey.survey;
+        SQLInsertClause insert = new SQLInsertClause(null, new OracleTemplates(), survey);
+        insert.setBatchToBulk(true);
+        insert.set(survey.id, 1).addBatch();
+        insert.set(survey.id, 2).addBatch();
+        assertEquals(2, insert.getSQL().size());
+    }
+
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014, Mysema Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mysema.query.sql.dml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.mysema.query.types.Path;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+import com.mysema.query.sql.MySQLTemplates;
+import com.mysema.query.sql.PostgresTemplates;
+import com.mysema.query.sql.SQLBindings;
+import com.mysema.query.sql.SQLQuery;
+import com.mysema.query.sql.SQLiteTemplates;
+import com.mysema.query.sql.domain.QSurvey;
+
+public class SQLMergeClauseTest {
+
+    private final QSurvey survey = QSurvey.survey;
+
+    private final Configuration configuration = new Configuration(new H2Templates() {{
+        setNativeMerge(false);
+    }});
+
+    private SQLMergeClause merge() {
+        SQLMergeClause merge = new SQLMergeClause(null, configuration, survey);
+        merge.keys(survey.id).set(survey.id, 1).set(survey.name, "A").addBatch();
+        merge.keys(survey.id).set(survey.id, 2).set(survey.name, "B").addBatch();
+        merge.keys(survey.id).set(survey.id, 3).set(survey.name, "C").addBatch();
+        merge.keys(survey.id).set(survey.id, 1).set(survey.name, "D").addBatch();
+        return merge;
+    }
+
+    @Test
+    public void Key_Queries() {
+        SQLMergeClause merge = merge();
+        merge.setKeyChunkSize(2);
+        List<SQLQuery> queries = merge.createKeyQueries();
+        assertEquals(2, queries.size());
+        assertEquals("from SURVEY SURVEY\nwhere SURVEY.ID in (?, ?)", queries.get(0).toString());
+        assertEquals(Arrays.<Object>asList(1, 2), queries.get(0).getSQL(survey.id).getBindings());
+        assertEquals("from SURVEY SURVEY\nwhere SURVEY.ID = ?", queries.get(1).toString());
+        assertEquals(Arrays.<Object>asList(3), queries.get(1).getSQL(survey.id).getBindings());
+    }
+
+    @Test
+    public void Key_Queries_Composite_Keys() {
+        SQLMergeClause merge = new SQLMergeClause(null, configuration, survey);
+        merge.keys(survey.id, survey.name).set(survey.id, 1).set(survey.name, "A").addBatch();
+        merge.keys(survey.id, survey.name).set(survey.id, 2).set(survey.name, "B").addBatch();
+        List<SQLQuery> queries = merge.createKeyQueries();
+        assertEquals(1, queries.size());
+        assertEquals("from SURVEY SURVEY\n" +
+                "where SURVEY.ID = ? and SURVEY.NAME = ? or SURVEY.ID = ? and SURVEY.NAME = ?",
+                queries.get(0).toString());
+    }
+
+    @Test
+    public void Split_Batches() {
+        SQLInsertClause insert = new SQLInsertClause(null, configuration, survey);
+        SQLUpdateClause update = new SQLUpdateClause(null, configuration, survey);
+        merge().splitBatches(ImmutableSet.of(Arrays.<Object>asList(2)), insert, update);
+
+        List<SQLBindings> inserts = insert.getSQL();
+        assertEquals(2, inserts.size());
+        assertEquals("insert into SURVEY (ID, NAME)\nvalues (?, ?)", inserts.get(0).getSQL());
+        assertEquals(Arrays.<Object>asList(1, "A"), inserts.get(0).getBindings());
+        assertEquals(Arrays.<Object>asList(3, "C"), inserts.get(1).getBindings());
+
+        List<SQLBindings> updates = update.getSQL();
+        assertEquals(2, updates.size());
+        assertEquals("update SURVEY\nset NAME = ?\nwhere SURVEY.ID = ?", updates.get(0).getSQL());
+        assertEquals(Arrays.<Object>asList("B", 2), updates.get(0).getBindings());
+        assertEquals(Arrays.<Object>asList("D", 1), updates.get(1).getBindings());
+    }
+
+    @Test
+    public void Split_Batches_Without_Existing_Rows() {
+        SQLInsertClause insert = new SQLInsertClause(null, configuration, survey);
+        SQLUpdateClause update = new SQLUpdateClause(null, configuration, survey);
+        merge().splitBatches(Collections.<List<Object>>emptySet(), insert, update);
+        assertEquals(3, insert.getSQL().size());
+        assertEquals(1, update.getSQL().size());
+    }
+
+    @Test
+    public void Upsert_Postgres() {
+        SQLMergeClause merge = new SQLMergeClause(null, PostgresTemplates.builder().nativeMerge().build(), survey);
+        merge.keys(survey.id).set(survey.id, 1).set(survey.name, "A").set(survey.name2, "B");
+        assertEquals("insert into SURVEY (ID, NAME, NAME2)\n" +
+                "values (?, ?, ?)\n" +
+                "on conflict (ID) do update set NAME = excluded.NAME, NAME2 = excluded.NAME2",
+                merge.toString());
+    }
+
+    @Test
+    public void Upsert_Postgres_Primary_Key() {
+        SQLMergeClause merge = new SQLMergeClause(null, PostgresTemplates.builder().nativeMerge().build(), survey);
+        merge.set(survey.id, 1);
+        assertEquals("insert into SURVEY (ID)\n" +
+                "values (?)\n" +
+                "on conflict (ID) do nothing", merge.toString());
+    }
+
+    @Test
+    public void Upsert_MySQL() {
+        SQLMergeClause merge = new SQLMergeClause(null, MySQLTemplates.builder().nativeMerge().build(), survey);
+        merge.keys(survey.id).set(survey.id, 1).set(survey.name, "A");
+        assertEquals("insert into SURVEY (ID, NAME)\n" +
+                "values (?, ?)\n" +
+                "on duplicate key update NAME = values(NAME)", merge.toString());
+    }
+
+    @Test
+    public void Upsert_MySQL_No_Columns() {
+        SQLMergeClause merge = new SQLMergeClause(null, MySQLTemplates.builder().nativeMerge().build(), survey);
+        assertTrue(merge.toString().endsWith("\non duplicate key update ID = ID"));
+    }
+
+    @Test
+    public void Upsert_MySQL_Non_Primary_Key() {
+        SQLMergeClause merge = new SQLMergeClause(null, MySQLTemplates.builder().nativeMerge().build(), survey);
+        merge.keys(survey.name).set(survey.id, 1).set(survey.name, "A");
+        assertFalse(MySQLTemplates.builder().nativeMerge().build().isNativeMerge(survey,
+                Arrays.<Path<?>>asList(survey.name), Arrays.<Path<?>>asList(survey.id, survey.name)));
+        // emulated merge
+        assertEquals("merge into SURVEY (ID, NAME) key(NAME) \n" +
+                "values (?, ?) ", merge.toString());
+    }
+
+    @Test
+    public void Upsert_SQLite_Batch() {
+        SQLMergeClause merge = new SQLMergeClause(null, SQLiteTemplates.builder().nativeMerge().build(), survey);
+        merge.keys(survey.id).set(survey.id, 1).set(survey.name, "A").addBatch();
+        merge.keys(survey.id).set(survey.id, 2).set(survey.name, "B").addBatch();
+        List<SQLBindings> sql = merge.getSQL();
+        assertEquals(2, sql.size());
+        assertEquals("insert into SURVEY (ID, NAME)\n" +
+                "values (?, ?)\n" +
+                "on conflict (ID) do update set NAME = excluded.NAME", sql.get(1).getSQL());
+        assertEquals(Arrays.<Object>asList(2, "B"), sql.get(1).getBindings());
+    }
+
+    @Test
+    public void Upsert_Opt_In() {
+        List<Path<?>> keys = Arrays.<Path<?>>asList(survey.id);
+        List<Path<?>> columns = Arrays.<Path<?>>asList(survey.id, survey.name);
+        assertFalse(new PostgresTemplates().isNativeMerge(survey, keys, columns));
+        assertFalse(new SQLiteTemplates().isNativeMerge(survey, keys, columns));
+        assertFalse(new MySQLTemplates().isNativeMerge(survey, keys, columns));
+        SQLMergeClause merge = new SQLMergeClause(null, new SQLiteTemplates(), survey);
+        merge.keys(survey.id).set(survey.id, 1).set(survey.name, "A");
+        assertEquals("merge into SURVEY (ID, NAME) key(ID) \n" +
+                "values (?, ?) ", merge.toString());
+    }
+
+    @Test
+    public void Upsert_Postgres_Non_Primary_Key() {
+        SQLMergeClause merge = new SQLMergeClause(null, PostgresTemplates.builder().nativeMerge().build(), survey);
+        merge.keys(survey.name).set(survey.id, 1).set(survey.name, "A");
+        // no unique index is known for the conflict target
+        assertEquals("merge into SURVEY (ID, NAME) key(NAME) \n" +
+                "values (?, ?) ", merge.toString());
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.mysema.query.sql.h2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+import com.mysema.query.sql.SQLQuery;
+import com.mysema.query.sql.domain.QSurvey;
+
+public class KeysetPagesH2Test {
+
+    private final QSurvey survey = new QSurvey("survey");
+
+    private final Configuration configuration = new Configuration(new H2Templates());
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws ClassNotFoundException, SQLException {
+        Class.forName("org.h2.Driver");
+        conn = DriverManager.getConnection("jdbc:h2:mem:keyset", "sa", "");
+        Statement stmt = conn.createStatement();
+        try {
+            stmt.execute("create table SURVEY(ID int primary key, NAME varchar(30), NAME2 varchar(30))");
+            for (int i = 1; i <= 7; i++) {
+                stmt.execute("insert into SURVEY(ID, NAME) values (" + i + ", 'survey" + i + "')");
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void Pages() {
+        Iterator<List<Integer>> pages = new SQLQuery(conn, configuration).from(survey)
+            .orderBy(survey.id.asc())
+            .pages(survey.id, 3);
+        assertEquals(Arrays.asList(1, 2, 3), pages.next());
+        assertEquals(Arrays.asList(4, 5, 6), pages.next());
+        assertEquals(Arrays.asList(7), pages.next());
+        assertFalse(pages.hasNext());
+    }
+
+    @Test
+    public void Pages_With_Offset() {
+        Iterator<List<Integer>> pages = new SQLQuery(conn, configuration).from(survey)
+            .orderBy(survey.id.asc())
+            .offset(2)
+            .pages(survey.id, 2);
+        assertEquals(Arrays.asList(3, 4), pages.next());
+        assertEquals(Arrays.asList(5, 6), pages.next());
+        assertEquals(Arrays.asList(7), pages.next());
+        assertFalse(pages.hasNext());
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.mysema.query.sql.h2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.mysema.query.Tuple;
+import com.mysema.query.sql.ColumnMetadata;
+import com.mysema.query.sql.Configuration;
+import com.mysema.query.sql.H2Templates;
+import com.mysema.query.sql.RelationalPathBase;
+import com.mysema.query.sql.SQLQuery;
+import com.mysema.query.sql.dml.SQLInsertClause;
+import com.mysema.query.sql.types.BinaryStream;
+import com.mysema.query.sql.types.CharacterStream;
+import com.mysema.query.sql.types.InputStreamType;
+import com.mysema.query.sql.types.ReaderType;
+import com.mysema.query.types.PathMetadataFactory;
+import com.mysema.query.types.path.NumberPath;
+import com.mysema.query.types.path.SimplePath;
+
+public class StreamTypesH2Test {
+
+    public static class QStreams extends RelationalPathBase<QStreams> {
+
+        private static final long serialVersionUID = 3275393546187236932L;
+
+        public final NumberPath<Integer> id = createNumber("id", Integer.class);
+
+        public final SimplePath<InputStream> data = createSimple("data", InputStream.class);
+
+        public final SimplePath<Reader> text = createSimple("text", Reader.class);
+
+        public QStreams(String path) {
+            super(QStreams.class, PathMetadataFactory.forVariable(path), "PUBLIC", "STREAMS");
+            addMetadata(id, ColumnMetadata.named("ID"));
+            addMetadata(data, ColumnMetadata.named("DATA"));
+            addMetadata(text, ColumnMetadata.named("TEXT"));
+        }
+
+    }
+
+    private final QStreams streams = new QStreams("streams");
+
+    private final Configuration configuration = new Configuration(new H2Templates());
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws ClassNotFoundException, SQLException {
+        Class.forName("org.h2.Driver");
+        conn = DriverManager.getConnection("jdbc:h2:mem:streams", "sa", "");
+        Statement stmt = conn.createStatement();
+        try {
+            stmt.execute("create table STREAMS(ID int primary key, DATA blob, TEXT clob)");
+        } finally {
+            stmt.close();
+        }
+        configuration.register(new InputStreamType());
+        configuration.register(new ReaderType());
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void Round_Trip() throws IOException {
+        // only the given length is read from the streams
+        new SQLInsertClause(conn, configuration, streams)
+            .columns(streams.id, streams.data, streams.text)
+            .values(1, new BinaryStream(new ByteArrayInputStream(new byte[]{1, 2, 3, 4}), 3),
+                       new CharacterStream(new StringReader("abcd"), 2))
+            .execute();
+
+        CloseableIterator<Tuple> rows = new SQLQuery(conn, configuration).from(streams)
+            .iterate(streams.data, streams.text);
+        try {
+            assertTrue(rows.hasNext());
+            Tuple row = rows.next();
+            InputStream data = row.get(streams.data);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int b = data.read(); b != -1; b = data.read()) {
+                bytes.write(b);
+            }
+            assertEquals(3, bytes.size());
+            assertEquals(3, bytes.toByteArray()[2]);
+            Reader text = row.get(streams.text);
+            StringBuilder chars = new StringBuilder();
+            for (int c = text.read(); c != -1; c = text.read()) {
+                chars.append((char) c);
+            }
+            assertEquals("ab", chars.toString());
+            assertFalse(rows.hasNext());
+        } finally {
+            rows.close();
+        }
+    }
+
+}
@@ -13,6 +13,8 @@
  */
 package com.mysema.query.sql.types;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -93,6 +95,10 @@ public class TypeTest implements InvocationHandler{
 
         valueAndType.add(Pair.of(EasyMock.createNiceMock(Blob.class), new BlobType()));
         valueAndType.add(Pair.of(EasyMock.createNiceMock(Clob.class), new ClobType()));
+        valueAndType.add(Pair.of(new ByteArrayInputStream(new byte[0]), new InputStreamType()));
+        valueAndType.add(Pair.of(new BinaryStream(new ByteArrayInputStream(new byte[2]), 2), new InputStreamType()));
+        valueAndType.add(Pair.of(new StringReader(""), new ReaderType()));
+        valueAndType.add(Pair.of(new CharacterStream(new StringReader("ab"), 2), new ReaderType()));
 
         valueAndType.add(Pair.of(UUID.randomUUID(),   new UtilUUIDType(true)));
         valueAndType.add(Pair.of(UUID.randomUUID(),   new UtilUUIDType(false)));